@@ -45,7 +45,9 @@ public class Boot {
         ConfigurableApplicationContext appCtx = new AnnotationConfigApplicationContext(AppConfiguration.class);
         ApplicationContextProvider.setApplicationContext(appCtx);
 
-        final Vertx vertx = Vertx.vertx(new VertxOptions());
+        final Vertx vertx = Vertx.vertx(getVertxOptions(appCtx));
+
+        LOG.info("Native transport " + (vertx.isNativeTransportEnabled() ? "enabled" : "disabled"));
 
         DependentVerticleDeployer dependentVerticleDeployer = new DependentVerticleDeployer();
         dependentVerticleDeployer.setDependentsDeployment(getDependentsDeployment(appCtx));
@@ -60,6 +62,19 @@ public class Boot {
         });
     }
 
+    /**
+     * Returns the options of the Vertx instance. If the vertx.prefer.native.transport property is true, the native
+     * transport (epoll on Linux) is used when available, falling back to the NIO transport otherwise
+     * @param appCtx The ApplicationContext from which to get the application properties
+     * @return The VertxOptions object
+     */
+    private static VertxOptions getVertxOptions(ApplicationContext appCtx) {
+        Properties appProperties = appCtx.getBean("applicationProperties", Properties.class);
+
+        return new VertxOptions().setPreferNativeTransport(
+            Boolean.parseBoolean(appProperties.getProperty("vertx.prefer.native.transport", "false").trim()));
+    }
+
     /**
      * Returns a DependentsDeployment object obtained from the verticles.configuration property
      * @param appCtx The ApplicationContext from which to get the application properties
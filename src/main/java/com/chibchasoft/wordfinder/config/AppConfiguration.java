@@ -12,6 +12,9 @@
  */
 package com.chibchasoft.wordfinder.config;
 
+import com.chibchasoft.wordfinder.model.CachingWordFinder;
+import com.chibchasoft.wordfinder.model.QueryPlanner;
+import com.chibchasoft.wordfinder.model.WordFinder;
 import com.chibchasoft.wordfinder.util.Util;
 import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonObject;
@@ -19,6 +22,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.PropertiesFactoryBean;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
@@ -40,6 +44,18 @@ public class AppConfiguration {
     @Value("${letter.points}")
     private String letterPointsJson;
 
+    @Value("${word.finder:dictionary}")
+    private String wordFinderName;
+
+    @Value("${planner.engines:anagramIndex,trie}")
+    private String plannerEngines;
+
+    @Value("${cache.engine:queryPlanner}")
+    private String cacheEngine;
+
+    @Value("${cache.max.words:1000000}")
+    private long cacheMaxWords;
+
     /**
      * Provides the points assigned to letters used to determine the score of words
      * @return an array of bytes with the points for each letter, indexed by the character position in the range 'a'-'z'
@@ -71,6 +87,46 @@ public class AppConfiguration {
         return letterPoints;
     }
 
+    /**
+     * Provides the {@link WordFinder} used by the verticles, which is the bean named by the word.finder property
+     * @param context the application context
+     * @return the WordFinder
+     */
+    @Bean(name="wordFinder")
+    public WordFinder wordFinder(ApplicationContext context) {
+        LOG.info("Using WordFinder[" + wordFinderName + "]");
+
+        return context.getBean(wordFinderName, WordFinder.class);
+    }
+
+    /**
+     * Provides a {@link QueryPlanner} whose engines are the beans named (separated by commas) by the
+     * planner.engines property
+     * @param context the application context
+     * @return the QueryPlanner
+     */
+    @Bean(name="queryPlanner")
+    public QueryPlanner queryPlanner(ApplicationContext context) {
+        QueryPlanner planner = new QueryPlanner();
+        for (String name : plannerEngines.split(",")) {
+            if (!name.trim().isEmpty())
+                planner.addEngine(name.trim(), context.getBean(name.trim(), WordFinder.class));
+        }
+
+        return planner;
+    }
+
+    /**
+     * Provides a {@link CachingWordFinder} that caches the words found by the bean named by the cache.engine property,
+     * keeping up to the number of words set by the cache.max.words property
+     * @param context the application context
+     * @return the CachingWordFinder
+     */
+    @Bean(name="cachingWordFinder")
+    public CachingWordFinder cachingWordFinder(ApplicationContext context) {
+        return new CachingWordFinder(context.getBean(cacheEngine.trim(), WordFinder.class)).setMaxWords(cacheMaxWords);
+    }
+
     @Bean
     public static PropertySourcesPlaceholderConfigurer propertySourcesPlaceholderConfigurer() {
         return new PropertySourcesPlaceholderConfigurer();
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.chibchasoft.wordfinder.util.Util.FIRST_LETTER;
+import static com.chibchasoft.wordfinder.util.Util.LETTERS_SIZE;
+import static com.chibchasoft.wordfinder.util.Util.index;
+import static com.chibchasoft.wordfinder.util.Util.validLetter;
+
+/**
+ * An implementation of WordFinder that stores the words in a HashMap whose key is the anagram key of the words,
+ * that is, their letters in alphabetical order (e.g. "aht" for "hat" and "tha"), and whose value is the group of
+ * words with that key.
+ *
+ * Words are found by generating every distinct combination (sub-multiset) of the letters, each one already in
+ * alphabetical order, and looking it up in the map. The number of combinations grows exponentially with the
+ * number of letters, so this is meant for short inputs, where it is cheaper than scanning all the words (as
+ * {@link Dictionary} does) or walking a {@link Trie}. The words using all the letters (anagrams) are found with a
+ * single lookup using {@link #getAnagrams(String)}.
+ *
+ * Like {@link Dictionary}, words are converted to lowercase before storing them and characters not in the range
+ * 'a'-'z' are ignored when searching but the word itself is not modified.
+ */
+@Component("anagramIndex")
+public class AnagramIndex implements WordFinder, CostEstimator {
+    private static final Logger LOG = LoggerFactory.getLogger(AnagramIndex.class);
+
+    // The estimated cost of looking up a combination of letters, in nanoseconds
+    protected static final double NANOS_PER_LOOKUP = 80;
+
+    // The groups of words per anagram key
+    protected final Map<String, Group> groups = new HashMap<>();
+
+    // The length of the longest anagram key, no combination of letters longer than this can be a word
+    protected int maxKeyLength = 0;
+
+    // The points assigned to letter
+    protected byte[] letterPoints = new byte[LETTERS_SIZE];
+
+    public AnagramIndex() {
+
+    }
+
+    @Override
+    public AnagramIndex add(String word) {
+        LOG.debug("Adding word[" + word +"]");
+
+        word = word.toLowerCase();
+
+        String key = key(word);
+
+        // If there are no valid letters do nothing
+        if (key.isEmpty())
+            return this;
+
+        Group group = groups.computeIfAbsent(key, k -> new Group(calculateScore(k)));
+        if (!group.words.contains(word))
+            group.words.add(word);
+
+        maxKeyLength = Math.max(maxKeyLength, key.length());
+
+        LOG.debug("Added word[" + word +"]");
+
+        return this;
+    }
+
+    @Override
+    public List<String> getWords(String letters) {
+        return getWords(letters, 0);
+    }
+
+    @Override
+    public List<String> getWords(String letters, int limit) {
+        return getWords(letters, null, limit, null);
+    }
+
+    /**
+     * Using the provided letters find the best words meeting the conditions of the filter, up to the limit. Every
+     * combination of letters generated asks the collector of words whether to stop (see {@link TopWords#shouldStop()}),
+     * so once the deadline expires the search unwinds and the best words found so far are returned. The conditions of
+     * the filter are checked on the words found, so all of them are kept when there is a filter
+     * @param letters the string with the letters to use to find words
+     * @param filter the conditions the words must meet, null for none
+     * @param limit the maximum number of words to return, 0 or less to return all of them
+     * @param deadline the deadline of the search, null for none
+     * @return the list of words
+     */
+    @Override
+    public List<String> getWords(String letters, WordFilter filter, int limit, Deadline deadline) {
+        LOG.debug("Finding all possible words using [" + letters +"]");
+
+        boolean filtered = filter != null && !filter.isEmpty();
+
+        // if no letter or empty return an empty list
+        if (letters == null || letters.isEmpty())
+            return Collections.emptyList();
+
+        byte[] letterCount = new byte[LETTERS_SIZE];
+        int total = 0;
+        for (char c : letters.toLowerCase().toCharArray()) {
+            if (validLetter(c)) {
+                letterCount[index(c)]++;
+                total++;
+            }
+        }
+
+        // The words found and their total score, keeping only the best ones if there is a limit
+        TopWords words = new TopWords(filtered ? 0 : limit, deadline);
+
+        findWords(letterCount, 0, new char[Math.min(total, maxKeyLength)], 0, words);
+
+        LOG.debug("Found [" + words.size() + "] words for [" +letters + "]");
+
+        // The words sorted (descending) based on their score
+        return filtered ? filter.filter(words.toList(), limit) : words.toList();
+    }
+
+    /**
+     * Estimates the cost as the number of combinations of letters looked up, which is the product of the number
+     * of instances of each letter plus one
+     * @param letterCount the number of instances of each letter, indexed by the character position in the range 'a'-'z'
+     * @return the estimated cost, in nanoseconds
+     */
+    @Override
+    public double estimateCost(byte[] letterCount) {
+        double lookups = 1;
+        for (byte count : letterCount)
+            lookups *= count + 1;
+
+        return lookups * NANOS_PER_LOOKUP;
+    }
+
+    /**
+     * Returns the words made using exactly all the letters
+     * @param letters the string with the letters
+     * @return the words, in the order in which they were added
+     */
+    public List<String> getAnagrams(String letters) {
+        if (letters == null)
+            return Collections.emptyList();
+
+        Group group = groups.get(key(letters.toLowerCase()));
+
+        return group == null ? Collections.emptyList() : new ArrayList<>(group.words);
+    }
+
+    /**
+     * Generates the combinations of letters that take from 0 up to letterCount[i] instances of the letter at each
+     * index i from the index forward, appending them to the key, and adds the words of those combinations that are
+     * in the map. Because letters are appended in alphabetical order, the key is always an anagram key
+     * @param letterCount the number of instances of each letter available
+     * @param index       the index of the next letter to take
+     * @param key         the buffer with the letters taken so far
+     * @param length      the number of letters taken so far
+     * @param words       the collector to which to add the found words
+     */
+    protected void findWords(byte[] letterCount, int index, char[] key, int length, TopWords words) {
+        if (words.shouldStop())
+            return;
+
+        // Skip the letters that are not available
+        while (index < LETTERS_SIZE && letterCount[index] == 0)
+            index++;
+
+        if (index == LETTERS_SIZE) {
+            if (length == 0)
+                return;
+
+            Group group = groups.get(new String(key, 0, length));
+            if (group != null && words.accepts(group.score)) {
+                for (String word : group.words)
+                    words.add(word, group.score);
+            }
+
+            return;
+        }
+
+        // Take each possible number of instances of the letter, as long as the key can still be a word
+        char c = (char) (index + FIRST_LETTER);
+        for (int n = 0; n <= letterCount[index] && length + n <= key.length; n++) {
+            if (n > 0)
+                key[length + n - 1] = c;
+
+            findWords(letterCount, index + 1, key, length + n, words);
+        }
+    }
+
+    /**
+     * Calculates the score for a word using {@link #getLetterPoints()}
+     * @param key the anagram key of the word
+     * @return the score
+     */
+    protected int calculateScore(String key) {
+        int score = 0;
+        for (char c : key.toCharArray())
+            score += letterPoints[index(c)];
+
+        return score;
+    }
+
+    /**
+     * Returns the anagram key of a word, that is, its letters in the range 'a'-'z' in alphabetical order
+     * @param word the word
+     * @return the anagram key
+     */
+    protected static String key(String word) {
+        byte[] letterCount = new byte[LETTERS_SIZE];
+        int total = 0;
+        for (char c : word.toCharArray()) {
+            if (validLetter(c)) {
+                letterCount[index(c)]++;
+                total++;
+            }
+        }
+
+        char[] key = new char[total];
+        for (int i = 0, k = 0; i < LETTERS_SIZE; i++) {
+            for (int n = 0; n < letterCount[i]; n++)
+                key[k++] = (char) (i + FIRST_LETTER);
+        }
+
+        return new String(key);
+    }
+
+    /**
+     * Get the points assigned to letters which will be used to determine the score of a word
+     * @return an array of bytes with the points for each letter, indexed by the character position in the range 'a'-'z'
+     */
+    public byte[] getLetterPoints() {
+        return letterPoints;
+    }
+
+    /**
+     * Set the points assigned to letters which will be used to determine the score of a word
+     * @param letterPoints an array of bytes with the points for each letter,
+     * indexed by the character position in the range 'a'-'z'
+     */
+    @Resource(name = "letterPoints")
+    public void setLetterPoints(byte[] letterPoints) {
+        this.letterPoints = letterPoints;
+    }
+
+    /**
+     * The words with the same anagram key, which all have the same score
+     */
+    protected static class Group {
+        protected final int score;
+        protected final List<String> words = new ArrayList<>(1);
+
+        public Group(int score) {
+            this.score = score;
+        }
+    }
+}
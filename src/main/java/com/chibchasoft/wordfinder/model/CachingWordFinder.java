@@ -0,0 +1,428 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.chibchasoft.wordfinder.util.Util.FIRST_LETTER;
+import static com.chibchasoft.wordfinder.util.Util.LETTERS_SIZE;
+import static com.chibchasoft.wordfinder.util.Util.index;
+import static com.chibchasoft.wordfinder.util.Util.isWildcard;
+import static com.chibchasoft.wordfinder.util.Util.sortedLetters;
+import static com.chibchasoft.wordfinder.util.Util.validLetter;
+
+/**
+ * A WordFinder that caches the words found by another WordFinder (the engine), keeping the most recently used
+ * results up to a maximum number of words (see {@link #getMaxWords()}). Results are cached by the letters in
+ * alphabetical order, with the count of each letter clamped to the largest count any word added needs, the limit and
+ * the conditions of the filter.
+ *
+ * When the result for the letters is not cached, the cache looks for the result of all the words (no limit and no
+ * filter) for the same letters or for the letters plus one more letter (a superset). Since every word made using
+ * the letters is also made using the superset, the result is derived by keeping the words of the superset that do
+ * not use the extra letter more times than the letters have it, still ordered by their score. Only when no
+ * superset is cached is the engine searched. Letters with wildcards are only looked up by their own key, since their
+ * words score differently depending on the letters the wildcards stand for.
+ *
+ * The results returned are unmodifiable. Words must be added through this WordFinder, so the cache is cleared.
+ * Results truncated by their {@link Deadline} are not cached.
+ */
+public class CachingWordFinder implements WordFinder {
+    private static final Logger LOG = LoggerFactory.getLogger(CachingWordFinder.class);
+
+    // The WordFinder searched when the result is not cached
+    protected final WordFinder engine;
+
+    // The results by their key, from the least to the most recently used
+    private final LinkedHashMap<String, List<String>> results = new LinkedHashMap<>(16, 0.75f, true);
+
+    // The largest count of each letter needed by any word, and the length of the longest word
+    private final byte[] maxLetterCount = new byte[LETTERS_SIZE];
+    private int maxLength = 0;
+
+    private long maxWords = 1000000;
+    private long words = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder derivedHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache of the words found by the engine
+     * @param engine the engine
+     */
+    public CachingWordFinder(WordFinder engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public CachingWordFinder add(String word) {
+        engine.add(word);
+
+        byte[] letterCount = new byte[LETTERS_SIZE];
+        int length = 0;
+        for (char c : word.toLowerCase().toCharArray()) {
+            if (validLetter(c)) {
+                letterCount[index(c)]++;
+                length++;
+            }
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < LETTERS_SIZE; i++)
+                maxLetterCount[i] = (byte) Math.max(maxLetterCount[i], letterCount[i]);
+
+            maxLength = Math.max(maxLength, length);
+
+            if (!results.isEmpty())
+                clear();
+        }
+
+        return this;
+    }
+
+    @Override
+    public List<String> getWords(String letters) {
+        return getWords(letters, 0);
+    }
+
+    @Override
+    public List<String> getWords(String letters, int limit) {
+        return getWords(letters, null, limit);
+    }
+
+    @Override
+    public List<String> getWords(String letters, WordFilter filter, int limit) {
+        return getWords(letters, filter, limit, null);
+    }
+
+    @Override
+    public List<String> getWords(String letters, WordFilter filter, int limit, Deadline deadline) {
+        if (letters == null || letters.isEmpty())
+            return Collections.emptyList();
+
+        if (filter != null && filter.isEmpty())
+            filter = null;
+
+        byte[] letterCount = new byte[LETTERS_SIZE];
+        int wildcards = countLetters(letters, letterCount);
+
+        String key = key(letterCount, wildcards, filter, limit);
+
+        List<String> words = lookup(key, letterCount, wildcards, filter, limit);
+        if (words != null)
+            return words;
+
+        misses.increment();
+
+        words = Collections.unmodifiableList(engine.getWords(letters, filter, limit, deadline));
+        if (deadline == null || !deadline.isTruncated())
+            put(key, words);
+
+        return words;
+    }
+
+    @Override
+    public boolean supportsWildcards() {
+        return engine.supportsWildcards();
+    }
+
+    /**
+     * Returns the words of each rack from the cache, sending the racks not cached to the engine as a single batch,
+     * with the deadline. The words found are not cached if the deadline truncated the batch
+     * @param racks The groups of letters, null elements are ignored
+     * @param limit The maximum number of words to return for each rack, 0 or less to return all of them
+     * @param deadline The deadline of the search, null for none
+     * @return the list of words of each rack (ordered in descending mode by their score), in the order of the racks
+     */
+    @Override
+    public Map<String, List<String>> getWordsBatch(Collection<String> racks, int limit, Deadline deadline) {
+        Map<String, List<String>> words = new LinkedHashMap<>();
+
+        // The key of each rack not cached
+        Map<String, String> missing = new LinkedHashMap<>();
+        for (String letters : racks) {
+            if (letters == null || words.containsKey(letters))
+                continue;
+
+            byte[] letterCount = new byte[LETTERS_SIZE];
+            int wildcards = countLetters(letters, letterCount);
+
+            String key = key(letterCount, wildcards, null, limit);
+
+            List<String> rackWords = letters.isEmpty() ?
+                Collections.emptyList() : lookup(key, letterCount, wildcards, null, limit);
+
+            words.put(letters, rackWords);
+            if (rackWords == null)
+                missing.put(letters, key);
+        }
+
+        if (!missing.isEmpty()) {
+            misses.add(missing.size());
+
+            Map<String, List<String>> found = engine.getWordsBatch(missing.keySet(), limit, deadline);
+            boolean truncated = deadline != null && deadline.isTruncated();
+
+            for (Map.Entry<String, List<String>> rack : found.entrySet()) {
+                List<String> rackWords = Collections.unmodifiableList(rack.getValue());
+                if (!truncated)
+                    put(missing.get(rack.getKey()), rackWords);
+                words.put(rack.getKey(), rackWords);
+            }
+        }
+
+        return words;
+    }
+
+    /**
+     * Counts the letters, clamping the count of each one to the largest count any word needs and the number of
+     * wildcards to the length of the longest word, if any word has been added
+     * @param letters the letters
+     * @param letterCount the count of each letter, indexed by the character position in the range 'a'-'z'
+     * @return the number of wildcards
+     */
+    private int countLetters(String letters, byte[] letterCount) {
+        int wildcards = 0;
+        for (char c : letters.toLowerCase().toCharArray()) {
+            if (validLetter(c))
+                letterCount[index(c)]++;
+            else if (isWildcard(c))
+                wildcards++;
+        }
+
+        synchronized (this) {
+            if (maxLength > 0) {
+                for (int i = 0; i < LETTERS_SIZE; i++)
+                    letterCount[i] = (byte) Math.min(letterCount[i], maxLetterCount[i]);
+
+                wildcards = Math.min(wildcards, maxLength);
+            }
+        }
+
+        return wildcards;
+    }
+
+    /**
+     * Returns the cached result for the key or, if there are no wildcards, the result derived from a superset
+     * @param key the key
+     * @param letterCount the count of each letter, clamped
+     * @param wildcards the number of wildcards
+     * @param filter the conditions the words must meet, null for none
+     * @param limit the maximum number of words, 0 or less for all of them
+     * @return the words, null if neither the result nor a superset is cached
+     */
+    private List<String> lookup(String key, byte[] letterCount, int wildcards, WordFilter filter, int limit) {
+        List<String> words = get(key);
+        if (words != null) {
+            hits.increment();
+            return words;
+        }
+
+        words = wildcards == 0 ? derive(letterCount, filter, limit) : null;
+        if (words != null) {
+            derivedHits.increment();
+            put(key, words);
+        }
+
+        return words;
+    }
+
+    /**
+     * Derives the words from the cached result of all the words for the same letters or for the letters plus one
+     * more letter, keeping the words meeting the conditions of the filter up to the limit
+     * @param letterCount the count of each letter, clamped
+     * @param filter the conditions the words must meet, null for none
+     * @param limit the maximum number of words, 0 or less for all of them
+     * @return the words, null if no superset is cached
+     */
+    private List<String> derive(byte[] letterCount, WordFilter filter, int limit) {
+        List<String> superset = null;
+        int extra = -1;
+
+        // The result of all the words for the same letters is a superset too
+        String letters = sortedLetters(letterCount, 0);
+        if (filter != null || limit > 0)
+            superset = get(letters + "|0");
+
+        // The key of the letters plus one more is built inserting it where its instances end in the sorted letters
+        StringBuilder key = new StringBuilder(letters.length() + 3);
+        for (int i = 0, end = 0; superset == null && i < LETTERS_SIZE; i++) {
+            end += letterCount[i];
+
+            // Adding a letter whose count is already the largest needed gives the same key
+            if (letterCount[i] >= maxLetterCount[i])
+                continue;
+
+            key.setLength(0);
+            key.append(letters, 0, end).append((char) (i + FIRST_LETTER)).append(letters, end, letters.length());
+            superset = get(key.append("|0").toString());
+
+            extra = i;
+        }
+
+        if (superset == null)
+            return null;
+
+        List<String> words = new ArrayList<>();
+        for (String word : superset) {
+            if (extra >= 0 && count(word, extra) > letterCount[extra])
+                continue;
+
+            if (filter != null && !filter.matches(word))
+                continue;
+
+            words.add(word);
+            if (words.size() == limit)
+                break;
+        }
+
+        LOG.debug("Derived [" + words.size() + "] words from [" + superset.size() + "] words");
+
+        return Collections.unmodifiableList(words);
+    }
+
+    private static int count(String word, int index) {
+        int count = 0;
+        for (int i = 0; i < word.length(); i++) {
+            char c = Character.toLowerCase(word.charAt(i));
+            if (validLetter(c) && index(c) == index)
+                count++;
+        }
+
+        return count;
+    }
+
+    private static String key(byte[] letterCount, int wildcards, WordFilter filter, int limit) {
+        String key = sortedLetters(letterCount, wildcards) + "|" + Math.max(limit, 0);
+
+        return filter != null ? key + "|" + filter.getKey() : key;
+    }
+
+    private synchronized List<String> get(String key) {
+        return results.get(key);
+    }
+
+    private synchronized void put(String key, List<String> result) {
+        long size = result.size() + 1L;
+        if (size > maxWords)
+            return;
+
+        List<String> previous = results.put(key, result);
+        if (previous != null)
+            words -= previous.size() + 1L;
+
+        words += size;
+
+        for (Iterator<List<String>> it = results.values().iterator(); words > maxWords; ) {
+            words -= it.next().size() + 1L;
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Removes all the results cached
+     */
+    public synchronized void clear() {
+        results.clear();
+        words = 0;
+    }
+
+    /**
+     * Returns the WordFinder searched when the result is not cached
+     * @return the engine
+     */
+    public WordFinder getEngine() {
+        return engine;
+    }
+
+    /**
+     * Returns the number of results cached
+     * @return the number of results
+     */
+    public synchronized int getSize() {
+        return results.size();
+    }
+
+    /**
+     * Returns the number of searches whose result was cached
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of searches whose result was derived from the cached result for a superset of the letters
+     * @return the number of derived hits
+     */
+    public long getDerivedHits() {
+        return derivedHits.sum();
+    }
+
+    /**
+     * Returns the number of searches sent to the engine
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of results evicted to keep the cache under its limit
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Gets the maximum number of words (counting one more for each result) of the results cached
+     * @return the maximum number of words
+     */
+    public synchronized long getMaxWords() {
+        return maxWords;
+    }
+
+    /**
+     * Sets the maximum number of words (counting one more for each result) of the results cached, 0 to cache nothing
+     * @param maxWords the maximum number of words
+     * @return itself so it can fluent
+     */
+    public synchronized CachingWordFinder setMaxWords(long maxWords) {
+        this.maxWords = maxWords;
+
+        if (words > maxWords)
+            clear();
+
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "CachingWordFinder{size=" + getSize() + ", hits=" + getHits() + ", derivedHits=" + getDerivedHits() +
+               ", misses=" + getMisses() + ", evictions=" + getEvictions() + "}";
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.chibchasoft.wordfinder.util.Util.LETTERS_SIZE;
+import static com.chibchasoft.wordfinder.util.Util.SIGNATURE_SIZE;
+import static com.chibchasoft.wordfinder.util.Util.fitsIn;
+import static com.chibchasoft.wordfinder.util.Util.index;
+import static com.chibchasoft.wordfinder.util.Util.packLettersCount;
+import static com.chibchasoft.wordfinder.util.Util.validLetter;
+
+/**
+ * An implementation of WordFinder that stores the words in columns (struct of arrays) instead of one object per
+ * word:
+ * <ul>
+ *     <li>The (UTF-8) text of all words in a single byte array, with an array of offsets to where each word starts</li>
+ *     <li>The number of instances of each letter of all words in a single byte array, {@link
+ *     com.chibchasoft.wordfinder.util.Util#LETTERS_SIZE} bytes per word</li>
+ *     <li>The packed signatures (see {@link com.chibchasoft.wordfinder.util.Util#packLettersCount(byte[], long[])})
+ *     of all words in a single long array, which is what is scanned when searching. The number of instances of each
+ *     letter is only compared for the few words whose counts do not fit in a signature</li>
+ *     <li>The score of all words in a single int array</li>
+ * </ul>
+ * Words are kept ordered by their number of distinct letters, so the words with the same number of distinct letters
+ * are a range of indices of the arrays.
+ *
+ * Words are appended as they are added and are (re)ordered the first time words are searched after adding words.
+ * Like {@link Dictionary}, words are converted to lowercase before storing them and characters not in the range
+ * 'a'-'z' are ignored when searching but the word itself is not modified.
+ */
+@Component("columnarDictionary")
+public class ColumnarDictionary implements WordFinder {
+    private static final Logger LOG = LoggerFactory.getLogger(ColumnarDictionary.class);
+
+    // The columns with the words
+    protected volatile Columns columns = new Columns();
+
+    // The columns of the words added since the last time words were ordered, null if none
+    protected volatile Columns added;
+
+    // The points assigned to letter
+    protected byte[] letterPoints = new byte[LETTERS_SIZE];
+
+    public ColumnarDictionary() {
+
+    }
+
+    @Override
+    public synchronized ColumnarDictionary add(String word) {
+        LOG.debug("Adding word[" + word +"]");
+
+        word = word.toLowerCase();
+
+        byte[] letterCount = new byte[LETTERS_SIZE];
+        int distinct = 0;
+        int score = 0;
+        for (char c : word.toCharArray()) {
+            if (!validLetter(c))
+                continue;
+
+            int i = index(c);
+            if (letterCount[i]++ == 0)
+                distinct++;
+
+            score += letterPoints[i];
+        }
+
+        // If the distinct letter count is 0 do nothing
+        if (distinct == 0)
+            return this;
+
+        if (added == null)
+            added = new Columns();
+
+        added.add(word.getBytes(StandardCharsets.UTF_8), letterCount, distinct, score);
+
+        LOG.debug("Added word[" + word +"]");
+
+        return this;
+    }
+
+    @Override
+    public List<String> getWords(String letters) {
+        return getWords(letters, 0);
+    }
+
+    @Override
+    public List<String> getWords(String letters, int limit) {
+        return getWords(letters, null, limit, null);
+    }
+
+    /**
+     * Using the provided letters find the best words meeting the conditions of the filter, up to the limit. Every
+     * word checked asks the collector of words whether to stop (see {@link TopWords#shouldStop()}), so once the
+     * deadline expires the scan ends and the best words found so far are returned. The conditions of the filter are
+     * checked on the words found, so all of them are kept when there is a filter
+     * @param letters the string with the letters to use to find words
+     * @param filter the conditions the words must meet, null for none
+     * @param limit the maximum number of words to return, 0 or less to return all of them
+     * @param deadline the deadline of the search, null for none
+     * @return the list of words
+     */
+    @Override
+    public List<String> getWords(String letters, WordFilter filter, int limit, Deadline deadline) {
+        LOG.debug("Finding all possible words using [" + letters +"]");
+
+        boolean filtered = filter != null && !filter.isEmpty();
+
+        // if no letter or empty return an empty list
+        if (letters == null || letters.isEmpty())
+            return Collections.emptyList();
+
+        Columns columns = getColumns();
+
+        byte[] letterCount = new byte[LETTERS_SIZE];
+        int distinct = 0;
+        for (char c : letters.toLowerCase().toCharArray()) {
+            if (validLetter(c) && letterCount[index(c)]++ == 0)
+                distinct++;
+        }
+
+        // The words found and their total score, keeping only the best ones if there is a limit
+        TopWords words = new TopWords(filtered ? 0 : limit, deadline);
+
+        long[] signature = new long[SIGNATURE_SIZE];
+        packLettersCount(letterCount, signature);
+        long lettersLow = signature[0];
+        long lettersHigh = signature[1];
+
+        // Words with up to the number of distinct letters in "letters" are a single range
+        int end = columns.bucketStart[distinct + 1];
+        long[] signatures = columns.signatures;
+
+        for (int w = 0, k = 0; w < end && !words.shouldStop(); w++, k += SIGNATURE_SIZE) {
+            long low = signatures[k];
+
+            boolean ok = low == Columns.OVERFLOW ?
+                columns.fitsIn(w, letterCount) : fitsIn(low, signatures[k + 1], lettersLow, lettersHigh);
+
+            // The text is only decoded for the words that are kept
+            if (ok && words.accepts(columns.scores[w]))
+                words.add(columns.word(w), columns.scores[w]);
+        }
+
+        LOG.debug("Found [" + words.size() + "] words for [" +letters + "]");
+
+        // The words sorted (descending) based on their score
+        return filtered ? filter.filter(words.toList(), limit) : words.toList();
+    }
+
+    /**
+     * Returns the columns to search, merging first any words added since the last time they were merged.
+     * @return the columns
+     */
+    protected Columns getColumns() {
+        Columns columns = this.columns;
+        if (added == null)
+            return columns;
+
+        synchronized (this) {
+            if (added != null) {
+                this.columns = columns = this.columns.merge(added);
+                added = null;
+
+                LOG.info("Ordered [" + columns.size + "] words in columns using [" + columns.text.length +
+                         "] bytes for text");
+            }
+
+            return columns;
+        }
+    }
+
+    /**
+     * Get the points assigned to letters which will be used to determine the score of a word
+     * @return an array of bytes with the points for each letter, indexed by the character position in the range 'a'-'z'
+     */
+    public byte[] getLetterPoints() {
+        return letterPoints;
+    }
+
+    /**
+     * Set the points assigned to letters which will be used to determine the score of a word
+     * @param letterPoints an array of bytes with the points for each letter,
+     * indexed by the character position in the range 'a'-'z'
+     */
+    @Resource(name = "letterPoints")
+    public void setLetterPoints(byte[] letterPoints) {
+        this.letterPoints = letterPoints;
+    }
+
+    /**
+     * The words stored as columns. The word at index w has its text in text[offsets[w]..offsets[w+1]), its letter
+     * count in counts[w * LETTERS_SIZE..(w + 1) * LETTERS_SIZE), its score in scores[w] and its number of distinct
+     * letters in distinct[w]. Its packed signature is in signatures[w * SIGNATURE_SIZE..(w + 1) * SIGNATURE_SIZE)
+     * or {@link #OVERFLOW} if its letter count does not fit. Once ordered, the words with d distinct letters are those with index in
+     * [bucketStart[d], bucketStart[d + 1]).
+     */
+    protected static class Columns {
+        /**
+         * Marks a word whose letter count does not fit in a packed signature
+         */
+        public static final long OVERFLOW = -1L;
+
+        protected byte[] text = new byte[0];
+        protected int[] offsets = new int[1];
+        protected byte[] counts = new byte[0];
+        protected long[] signatures = new long[0];
+        protected int[] scores = new int[0];
+        protected byte[] distinct = new byte[0];
+        protected final int[] bucketStart = new int[LETTERS_SIZE + 2];
+        protected int size = 0;
+        protected int textSize = 0;
+
+        /**
+         * Appends a word to the columns. The bucket starts are not updated.
+         * @param word the text of the word
+         * @param letterCount the number of instances of each letter in the word
+         * @param distinctLetters the number of distinct letters in the word
+         * @param score the score of the word
+         */
+        public void add(byte[] word, byte[] letterCount, int distinctLetters, int score) {
+            if (size == scores.length) {
+                int capacity = Math.max(16, size * 2);
+                offsets = Arrays.copyOf(offsets, capacity + 1);
+                counts = Arrays.copyOf(counts, capacity * LETTERS_SIZE);
+                signatures = Arrays.copyOf(signatures, capacity * SIGNATURE_SIZE);
+                scores = Arrays.copyOf(scores, capacity);
+                distinct = Arrays.copyOf(distinct, capacity);
+            }
+
+            if (textSize + word.length > text.length)
+                text = Arrays.copyOf(text, Math.max(textSize + word.length, text.length * 2));
+
+            System.arraycopy(word, 0, text, textSize, word.length);
+            textSize += word.length;
+            offsets[size + 1] = textSize;
+
+            System.arraycopy(letterCount, 0, counts, size * LETTERS_SIZE, LETTERS_SIZE);
+            long[] signature = new long[SIGNATURE_SIZE];
+            if (!packLettersCount(letterCount, signature))
+                signature[0] = OVERFLOW;
+            System.arraycopy(signature, 0, signatures, size * SIGNATURE_SIZE, SIGNATURE_SIZE);
+            scores[size] = score;
+            distinct[size] = (byte) distinctLetters;
+
+            size++;
+        }
+
+        /**
+         * Returns new columns with the words of this and the other columns, ordered by their number of distinct
+         * letters (words with the same number of distinct letters keep the order in which they were added) and with
+         * arrays trimmed to their size.
+         * @param other the other columns
+         * @return the new columns
+         */
+        public Columns merge(Columns other) {
+            Columns merged = new Columns();
+            int total = size + other.size;
+
+            merged.text = new byte[textSize + other.textSize];
+            merged.offsets = new int[total + 1];
+            merged.counts = new byte[total * LETTERS_SIZE];
+            merged.signatures = new long[total * SIGNATURE_SIZE];
+            merged.scores = new int[total];
+            merged.distinct = new byte[total];
+
+            // Count the words per number of distinct letters so each number gets its range
+            for (Columns columns : Arrays.asList(this, other)) {
+                for (int w = 0; w < columns.size; w++)
+                    merged.bucketStart[columns.distinct[w] + 1]++;
+            }
+
+            for (int d = 1; d < merged.bucketStart.length; d++)
+                merged.bucketStart[d] += merged.bucketStart[d - 1];
+
+            // Place the words at the next index for their number of distinct letters. Text is placed first
+            // in a temporary order and copied in index order afterwards so the text of each range is contiguous
+            int[] next = Arrays.copyOf(merged.bucketStart, merged.bucketStart.length);
+            int[] source = new int[total];
+            for (Columns columns : Arrays.asList(this, other)) {
+                for (int w = 0; w < columns.size; w++) {
+                    int m = next[columns.distinct[w]]++;
+                    System.arraycopy(columns.counts, w * LETTERS_SIZE, merged.counts, m * LETTERS_SIZE, LETTERS_SIZE);
+                    System.arraycopy(columns.signatures, w * SIGNATURE_SIZE, merged.signatures, m * SIGNATURE_SIZE,
+                                     SIGNATURE_SIZE);
+                    merged.scores[m] = columns.scores[w];
+                    merged.distinct[m] = columns.distinct[w];
+                    source[m] = columns == this ? w : size + w;
+                }
+            }
+
+            for (int m = 0; m < total; m++) {
+                Columns columns = source[m] < size ? this : other;
+                int w = source[m] < size ? source[m] : source[m] - size;
+                int length = columns.offsets[w + 1] - columns.offsets[w];
+
+                System.arraycopy(columns.text, columns.offsets[w], merged.text, merged.textSize, length);
+                merged.textSize += length;
+                merged.offsets[m + 1] = merged.textSize;
+            }
+
+            merged.size = total;
+
+            return merged;
+        }
+
+        /**
+         * Indicates whether the word at the index can be made using the letters
+         * @param w the index
+         * @param letterCount the number of instances of each letter in the letters
+         * @return true if the word fits in the letters
+         */
+        public boolean fitsIn(int w, byte[] letterCount) {
+            for (int j = 0, base = w * LETTERS_SIZE; j < LETTERS_SIZE; j++) {
+                if (counts[base + j] > letterCount[j])
+                    return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * Returns the text of the word at the index
+         * @param w the index
+         * @return the word
+         */
+        public String word(int w) {
+            return new String(text, offsets[w], offsets[w + 1] - offsets[w], StandardCharsets.UTF_8);
+        }
+    }
+}
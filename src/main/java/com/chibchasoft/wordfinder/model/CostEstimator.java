@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+/**
+ * Implemented by the WordFinders that can estimate how long it takes them to find the words for some letters, so
+ * {@link QueryPlanner} can choose the cheapest of them for each query.
+ */
+public interface CostEstimator {
+    /**
+     * Estimates the cost of finding the words that can be made using the letters
+     * @param letterCount the number of instances of each letter, indexed by the character position in the range 'a'-'z'
+     * @return the estimated cost, in nanoseconds
+     */
+    double estimateCost(byte[] letterCount);
+
+    /**
+     * Estimates the cost of finding the words that can be made using the letters and some wildcards. By default,
+     * the wildcards are not taken into account, which is only right for WordFinders not supporting them (see
+     * {@link WordFinder#supportsWildcards()})
+     * @param letterCount the number of instances of each letter, indexed by the character position in the range 'a'-'z'
+     * @param wildcards the number of wildcards
+     * @return the estimated cost, in nanoseconds
+     */
+    default double estimateCost(byte[] letterCount, int wildcards) {
+        return estimateCost(letterCount);
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.chibchasoft.wordfinder.util.Util.FIRST_LETTER;
+import static com.chibchasoft.wordfinder.util.Util.LETTERS_SIZE;
+import static com.chibchasoft.wordfinder.util.Util.validLetter;
+
+/**
+ * An implementation of WordFinder that stores the words in a minimized directed acyclic word graph (see {@link
+ * DawgBuilder}). Unlike a {@link Trie}, words sharing a suffix share the nodes for that suffix, so a node can not
+ * hold the total points of the chain from the root to it. The score of the words is calculated instead while
+ * searching, adding the points of each letter as it is used.
+ *
+ * Words added in sorted order are added to the graph as they come. Words added out of order are kept aside and the
+ * graph is rebuilt, with all the words, the first time words are searched after adding them. Like {@link Trie},
+ * words are added using the lowercase for its characters and invalid characters are ignored.
+ */
+@Component("dawg")
+public class Dawg implements WordFinder {
+    private static final Logger LOG = LoggerFactory.getLogger(Dawg.class);
+
+    // The graph to search
+    protected volatile Graph graph = new DawgBuilder().build();
+
+    // The builder where words are added in order, null once its graph has been built
+    protected DawgBuilder builder = new DawgBuilder();
+
+    // The words added out of order (or after building the graph), null if none
+    protected List<String> added;
+
+    // Whether words have been added since the graph was built
+    protected volatile boolean dirty = false;
+
+    // The points assigned to letter
+    protected byte[] letterPoints = new byte[LETTERS_SIZE];
+
+    public Dawg() {
+
+    }
+
+    @Override
+    public synchronized Dawg add(String word) {
+        LOG.debug("Adding word[" + word +"]");
+
+        StringBuilder letters = new StringBuilder(word.length());
+        for (char c : word.toLowerCase().toCharArray()) {
+            if (validLetter(c))
+                letters.append(c);
+        }
+
+        if (letters.length() == 0)
+            return this;
+
+        String normalized = letters.toString();
+        if (builder != null && builder.accepts(normalized)) {
+            builder.add(normalized);
+        } else {
+            if (added == null)
+                added = new ArrayList<>();
+
+            added.add(normalized);
+        }
+
+        dirty = true;
+
+        LOG.debug("Added word[" + word +"]");
+
+        return this;
+    }
+
+    @Override
+    public List<String> getWords(String letters) {
+        return getWords(letters, 0);
+    }
+
+    @Override
+    public List<String> getWords(String letters, int limit) {
+        return getWords(letters, null, limit, null);
+    }
+
+    /**
+     * Using the provided letters find the best words meeting the conditions of the filter, up to the limit. Every
+     * node visited asks the collector of words whether to stop (see {@link TopWords#shouldStop()}), so once the
+     * deadline expires the search unwinds and the best words found so far are returned. The conditions of the filter
+     * are checked on the words found, so all of them are kept when there is a filter
+     * @param letters the string with the letters to use to find words
+     * @param filter the conditions the words must meet, null for none
+     * @param limit the maximum number of words to return, 0 or less to return all of them
+     * @param deadline the deadline of the search, null for none
+     * @return the list of words
+     */
+    @Override
+    public List<String> getWords(String letters, WordFilter filter, int limit, Deadline deadline) {
+        LOG.debug("Finding all possible words using [" + letters +"]");
+
+        boolean filtered = filter != null && !filter.isEmpty();
+
+        if (letters == null || letters.isEmpty())
+            return Collections.emptyList();
+
+        Graph graph = getGraph();
+
+        Trie.LetterIndices letterIndices = new Trie.LetterIndices();
+        letterIndices.calculateIndices(letters.toLowerCase());
+
+        TopWords words = new TopWords(filtered ? 0 : limit, deadline);
+
+        graph.findWords(Graph.ROOT, letterIndices, letterPoints, new char[letterIndices.total], 0, 0, words);
+
+        LOG.debug("Found [" + words.size() + "] words for [" +letters + "]");
+
+        // The words sorted (descending) based on their total points
+        return filtered ? filter.filter(words.toList(), limit) : words.toList();
+    }
+
+    /**
+     * Returns the graph to search, building it first if words were added since the last time it was built.
+     * @return the graph
+     */
+    protected Graph getGraph() {
+        if (!dirty)
+            return graph;
+
+        synchronized (this) {
+            if (dirty) {
+                Graph built = builder != null ? builder.build() : graph;
+                builder = null;
+
+                if (added != null) {
+                    List<String> words = built.words();
+                    words.addAll(added);
+                    Collections.sort(words);
+
+                    DawgBuilder rebuilder = new DawgBuilder();
+                    words.forEach(rebuilder::add);
+                    built = rebuilder.build();
+
+                    added = null;
+                }
+
+                graph = built;
+                dirty = false;
+
+                LOG.info("Built graph with [" + graph.size + "] nodes and [" + graph.edges.length + "] edges");
+            }
+
+            return graph;
+        }
+    }
+
+    public byte[] getLetterPoints() {
+        return letterPoints;
+    }
+
+    @Resource(name = "letterPoints")
+    public void setLetterPoints(byte[] letterPoints) {
+        this.letterPoints = letterPoints;
+    }
+
+    /**
+     * A directed acyclic word graph stored in parallel arrays. For the node n:
+     * <ul>
+     *     <li>childMask[n] has the bit i set if there is an edge for the letter at index i</li>
+     *     <li>edges[firstEdge[n]..firstEdge[n + 1]) are the nodes the edges point to, ordered by their letter</li>
+     *     <li>isFinal[n] indicates whether a chain from the root to this node makes a word</li>
+     * </ul>
+     * The graph is immutable.
+     */
+    public static class Graph {
+        /**
+         * The number of the root node
+         */
+        public static final int ROOT = 0;
+
+        protected final int[] childMask;
+        protected final int[] firstEdge;
+        protected final boolean[] isFinal;
+        protected final int[] edges;
+        protected final int size;
+
+        public Graph(int[] childMask, int[] firstEdge, boolean[] isFinal, int[] edges) {
+            this.childMask = childMask;
+            this.firstEdge = firstEdge;
+            this.isFinal = isFinal;
+            this.edges = edges;
+            this.size = childMask.length;
+        }
+
+        /**
+         * Returns the node the edge for the letter at index points to
+         * @param node the node
+         * @param index the index of the letter
+         * @return the node, -1 if there is no edge for the letter
+         */
+        public int child(int node, int index) {
+            int mask = childMask[node];
+            if ((mask & (1 << index)) == 0)
+                return -1;
+
+            return edges[firstEdge[node] + Integer.bitCount(mask & ((1 << index) - 1))];
+        }
+
+        /**
+         * Indicates whether the graph has the word
+         * @param word the word, made only of lowercase letters
+         * @return true if the word is in the graph
+         */
+        public boolean contains(String word) {
+            int node = ROOT;
+            for (int i = 0; i < word.length() && node >= 0; i++)
+                node = child(node, word.charAt(i) - FIRST_LETTER);
+
+            return node >= 0 && isFinal[node];
+        }
+
+        /**
+         * Find words that are matched from the node forward according to the supplied letters.
+         * Words found are added to the results parameters
+         *
+         * @param node          the node
+         * @param letterIndices The letters to look for
+         * @param letterPoints  the points for each letter
+         * @param word          the letters of the chain from the root to this node
+         * @param depth         the number of letters of the chain from the root to this node
+         * @param score         the points of the chain from the root to this node
+         * @param words         the collector to which to add the found words
+         */
+        public void findWords(int node, Trie.LetterIndices letterIndices, byte[] letterPoints, char[] word, int depth,
+                              int score, TopWords words) {
+            if (words.shouldStop())
+                return;
+
+            if (isFinal[node] && words.accepts(score))
+                words.add(new String(word, 0, depth), score);
+
+            if (letterIndices.isEmpty())
+                return;
+
+            // Only follow the edges whose letter is present
+            int mask = childMask[node];
+            for (int present = mask & letterIndices.getMask(); present != 0; present &= present - 1) {
+                int i = Integer.numberOfTrailingZeros(present);
+                int edge = firstEdge[node] + Integer.bitCount(mask & ((1 << i) - 1));
+
+                word[depth] = (char) (i + FIRST_LETTER);
+
+                letterIndices.decrementForIndex(i);
+
+                findWords(edges[edge], letterIndices, letterPoints, word, depth + 1, score + letterPoints[i], words);
+
+                letterIndices.incrementForIndex(i);
+            }
+        }
+
+        /**
+         * Returns all the words of the graph, in sorted order
+         * @return the words
+         */
+        public List<String> words() {
+            List<String> words = new ArrayList<>();
+            collect(ROOT, new StringBuilder(), words);
+            return words;
+        }
+
+        private void collect(int node, StringBuilder prefix, List<String> words) {
+            if (isFinal[node])
+                words.add(prefix.toString());
+
+            int edge = firstEdge[node];
+            for (int mask = childMask[node]; mask != 0; mask &= mask - 1, edge++) {
+                prefix.append((char) (Integer.numberOfTrailingZeros(mask) + FIRST_LETTER));
+                collect(edges[edge], prefix, words);
+                prefix.setLength(prefix.length() - 1);
+            }
+        }
+    }
+}
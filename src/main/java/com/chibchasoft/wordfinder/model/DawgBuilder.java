@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.chibchasoft.wordfinder.util.Util.index;
+
+/**
+ * Builds a minimized <a href="https://en.wikipedia.org/wiki/Deterministic_acyclic_finite_state_automaton">directed
+ * acyclic word graph</a> from words added in sorted order, using the incremental algorithm by Daciuk, Mihov, Watson
+ * and Watson. Every time a word is added, the nodes of the previous word that are not part of the prefix shared
+ * with the new word can not change anymore, so they are replaced by an equivalent node (same finality and same
+ * children) already built, if any, or kept as the representative for their equivalence class. The graph is
+ * therefore minimal at all times except for the nodes of the last word.
+ *
+ * Words must be made only of lowercase letters in the range 'a'-'z'. A builder can only be used to build one graph.
+ */
+public class DawgBuilder {
+    // The root of the graph
+    private final Node root = new Node();
+
+    // The representative of each equivalence class of nodes
+    private final Map<Node, Node> register = new HashMap<>();
+
+    // The nodes for the letters of the last word added, not yet checked against the register
+    private final List<Node> unchecked = new ArrayList<>();
+
+    // The last word added
+    private String previous = "";
+
+    private boolean built = false;
+
+    /**
+     * Indicates whether the word can be added, that is, the graph has not been built and the word is not
+     * before the last word added
+     * @param word the word
+     * @return true if the word can be added
+     */
+    public boolean accepts(String word) {
+        return !built && word.compareTo(previous) >= 0;
+    }
+
+    /**
+     * Adds a word to the graph. Adding the same word as the last word added has no effect.
+     * @param word the word, made only of lowercase letters
+     * @return itself so it can fluent
+     * @throws IllegalStateException if the graph has already been built
+     * @throws IllegalArgumentException if the word is before the last word added
+     */
+    public DawgBuilder add(String word) {
+        if (built)
+            throw new IllegalStateException("The graph has already been built");
+
+        int cmp = word.compareTo(previous);
+        if (cmp < 0)
+            throw new IllegalArgumentException("Words must be added in order, [" + word + "] is before [" + previous + "]");
+
+        if (cmp == 0)
+            return this;
+
+        int prefix = commonPrefix(previous, word);
+
+        // The nodes of the previous word after the shared prefix are final
+        minimize(prefix);
+
+        Node node = prefix == 0 ? root : unchecked.get(prefix - 1);
+        for (int i = prefix; i < word.length(); i++) {
+            Node child = new Node();
+            node.addChild(index(word.charAt(i)), child);
+            unchecked.add(child);
+            node = child;
+        }
+
+        node.isFinal = true;
+        previous = word;
+
+        return this;
+    }
+
+    /**
+     * Builds the graph with the words added so far. Nodes are numbered in breadth-first order starting with the root.
+     * @return the graph
+     */
+    public Dawg.Graph build() {
+        if (built)
+            throw new IllegalStateException("The graph has already been built");
+
+        built = true;
+        minimize(0);
+
+        int size = register.size() + 1;
+        int[] childMask = new int[size];
+        int[] firstEdge = new int[size + 1];
+        boolean[] isFinal = new boolean[size];
+        int[] edges = new int[Math.max(16, size)];
+
+        Node[] nodes = new Node[size];
+        nodes[0] = root;
+        root.id = 0;
+
+        int next = 1;
+        int edgeCount = 0;
+        for (int n = 0; n < next; n++) {
+            Node node = nodes[n];
+
+            childMask[n] = node.mask;
+            isFinal[n] = node.isFinal;
+            firstEdge[n] = edgeCount;
+
+            for (int c = 0; c < node.count; c++) {
+                Node child = node.children[c];
+                if (child.id < 0) {
+                    child.id = next;
+                    nodes[next++] = child;
+                }
+
+                if (edgeCount == edges.length)
+                    edges = Arrays.copyOf(edges, edges.length * 2);
+
+                edges[edgeCount++] = child.id;
+            }
+        }
+
+        firstEdge[size] = edgeCount;
+
+        return new Dawg.Graph(childMask, firstEdge, isFinal, Arrays.copyOf(edges, edgeCount));
+    }
+
+    /**
+     * Replaces (or registers) the unchecked nodes deeper than the depth, starting with the deepest one
+     * @param depth the depth
+     */
+    private void minimize(int depth) {
+        for (int i = unchecked.size() - 1; i >= depth; i--) {
+            Node child = unchecked.remove(i);
+            Node parent = i == 0 ? root : unchecked.get(i - 1);
+
+            Node registered = register.putIfAbsent(child, child);
+            if (registered != null)
+                parent.children[parent.count - 1] = registered;
+        }
+    }
+
+    private static int commonPrefix(String s1, String s2) {
+        int length = Math.min(s1.length(), s2.length());
+        int i = 0;
+        while (i < length && s1.charAt(i) == s2.charAt(i))
+            i++;
+
+        return i;
+    }
+
+    /**
+     * A node while building the graph. Two nodes are equal if both are (or not) final and they have the same
+     * children for the same letters. Children are compared by identity because they are already registered.
+     */
+    private static class Node {
+        boolean isFinal = false;
+        int mask = 0;
+        Node[] children = new Node[2];
+        int count = 0;
+        int id = -1;
+
+        void addChild(int index, Node child) {
+            if (count == children.length)
+                children = Arrays.copyOf(children, count * 2);
+
+            mask |= 1 << index;
+            children[count++] = child;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+
+            if (!(o instanceof Node))
+                return false;
+
+            Node other = (Node) o;
+            if (isFinal != other.isFinal || mask != other.mask)
+                return false;
+
+            for (int c = 0; c < count; c++) {
+                if (children[c] != other.children[c])
+                    return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = mask * 31 + (isFinal ? 1 : 0);
+            for (int c = 0; c < count; c++)
+                hash = hash * 31 + System.identityHashCode(children[c]);
+
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time budget of a search, which can also be cancelled (e.g. when the client is gone). WordFinders supporting
+ * it check it while searching (see {@link #shouldStop()}) and, once it expires, stop and return the words found so
+ * far, still ordered by their score, marking the deadline as truncated (see {@link #isTruncated()}).
+ *
+ * A deadline is meant for a single search. It can be cancelled from any thread.
+ */
+public class Deadline {
+    // When it expires, as System.nanoTime, if it has a timeout
+    private final long expiresAt;
+    private final boolean timed;
+
+    private volatile boolean cancelled = false;
+    private volatile boolean truncated = false;
+
+    /**
+     * Creates a deadline expiring after the timeout
+     * @param timeout the timeout, 0 or less for none, so it only expires if cancelled
+     * @param unit the unit of the timeout
+     */
+    public Deadline(long timeout, TimeUnit unit) {
+        this.timed = timeout > 0;
+        this.expiresAt = timed ? System.nanoTime() + unit.toNanos(timeout) : 0;
+    }
+
+    /**
+     * Indicates whether the deadline expired or was cancelled
+     * @return true if expired or cancelled
+     */
+    public boolean isExpired() {
+        return cancelled || (timed && System.nanoTime() - expiresAt >= 0);
+    }
+
+    /**
+     * Indicates whether the search must stop because the deadline expired or was cancelled, in which case the
+     * deadline is marked as truncated
+     * @return true if the search must stop
+     */
+    public boolean shouldStop() {
+        if (!isExpired())
+            return false;
+
+        truncated = true;
+        return true;
+    }
+
+    /**
+     * Cancels the deadline, so searches checking it stop
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Indicates whether a search stopped because of the deadline, so its result has only the words found until then
+     * @return true if the result is truncated
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Returns the time left until the deadline expires
+     * @param unit the unit of the time
+     * @return the time left, 0 if expired or cancelled and {@link Long#MAX_VALUE} if it has no timeout
+     */
+    public long getRemaining(TimeUnit unit) {
+        if (cancelled)
+            return 0;
+
+        if (!timed)
+            return Long.MAX_VALUE;
+
+        return unit.convert(Math.max(0, expiresAt - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline{remaining=" + getRemaining(TimeUnit.MILLISECONDS) + "ms, cancelled=" + cancelled +
+               ", truncated=" + truncated + "}";
+    }
+}
@@ -14,19 +14,30 @@ package com.chibchasoft.wordfinder.model;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import static com.chibchasoft.wordfinder.util.Util.LETTERS_SIZE;
+import static com.chibchasoft.wordfinder.util.Util.SIGNATURE_SIZE;
+import static com.chibchasoft.wordfinder.util.Util.countWildcards;
+import static com.chibchasoft.wordfinder.util.Util.deficit;
+import static com.chibchasoft.wordfinder.util.Util.fitsIn;
 import static com.chibchasoft.wordfinder.util.Util.index;
 import static com.chibchasoft.wordfinder.util.Util.getLettersCount;
+import static com.chibchasoft.wordfinder.util.Util.letterMask;
+import static com.chibchasoft.wordfinder.util.Util.packLettersCount;
 import static com.chibchasoft.wordfinder.util.Util.validLetter;
 
 /**
@@ -38,14 +49,45 @@ import static com.chibchasoft.wordfinder.util.Util.validLetter;
  *
  * Words are converted to lowercase before storing them and characters not in the range 'a'-'z' are ignored when
  * searching but the word itself is not modified.
+ *
+ * In addition, for each list of triplets a list of packed signatures is kept (see
+ * {@link com.chibchasoft.wordfinder.util.Util#packLettersCount(Byte[], long[])}) so that, when
+ * {@link #isPackedSignatures()} is enabled, the letter counts of a word can be compared against the letters
+ * using a couple of long operations instead of one Byte comparison per letter. A mask of the letters used by
+ * each word is also kept so that words using any letter not present in the letters are discarded with a single
+ * operation before comparing their letter counts.
+ *
+ * When there are at least {@link #getParallelThreshold()} words to check, they are split in chunks which are
+ * checked in parallel by the threads of the common {@link ForkJoinPool}.
+ *
+ * The letters can include wildcards ('?' or '_'). A word can then be made if the number of its letters missing from
+ * the letters (see {@link com.chibchasoft.wordfinder.util.Util#deficit(long, long, long, long)}) is not greater than
+ * the number of wildcards, the missing letters scoring no points.
+ *
+ * The conditions of a {@link WordFilter} are checked from the cheapest to the most expensive one: the buckets of
+ * words with fewer distinct letters than the letters required or than the maximum length are never checked, and the
+ * words are discarded by their mask (when missing a letter required), by their length and by their packed signature
+ * (when missing instances of a letter required) before comparing their prefix and suffix.
  */
 @Component("dictionary")
-public class Dictionary implements WordFinder {
+public class Dictionary implements WordFinder, CostEstimator {
     private static final Logger LOG = LoggerFactory.getLogger(Dictionary.class);
 
+    // The estimated cost of checking whether a word can be made using the letters, in nanoseconds
+    protected static final double NANOS_PER_WORD = 3;
+
     // the map to store the dictionary words as well as the statistics
     protected final Map<Byte, List<Triplet<String, Byte[], Integer>>> wordsPerLength = new HashMap<>();
 
+    // the packed signatures and letter masks for the words, kept in the same order as the triplets in wordsPerLength
+    protected final Map<Byte, Signatures> signaturesPerLength = new HashMap<>();
+
+    // Whether to use the packed signatures when finding words
+    protected boolean packedSignatures = true;
+
+    // The minimum number of words to check for the check to be split among threads, 0 or less to never split it
+    protected int parallelThreshold = 50000;
+
     // The points assigned to letter
     protected byte[] letterPoints = new byte[LETTERS_SIZE];
 
@@ -79,11 +121,54 @@ public class Dictionary implements WordFinder {
         // Add a new triplet for the word, distinct letter count and score
         listLetterCount.add(new Triplet<>(word, letterCount.getFirst(), calculateScore(word)));
 
+        // And its packed signature
+        signaturesPerLength.computeIfAbsent(letterCount.getSecond(), k -> new Signatures())
+                           .add(letterCount.getFirst());
+
         LOG.debug("Added word[" + word +"]");
 
         return this;
     }
 
+    /**
+     * Estimates the cost as the number of words checked, which are all the words with up to as many distinct
+     * letters as the letters, divided among the threads of the pool if they are checked in parallel
+     * @param letterCount the number of instances of each letter, indexed by the character position in the range 'a'-'z'
+     * @return the estimated cost, in nanoseconds
+     */
+    @Override
+    public double estimateCost(byte[] letterCount) {
+        return estimateCost(letterCount, 0);
+    }
+
+    /**
+     * Estimates the cost like {@link #estimateCost(byte[])}, the words checked having up to as many distinct letters
+     * as the letters plus the wildcards
+     * @param letterCount the number of instances of each letter, indexed by the character position in the range 'a'-'z'
+     * @param wildcards the number of wildcards
+     * @return the estimated cost, in nanoseconds
+     */
+    @Override
+    public double estimateCost(byte[] letterCount, int wildcards) {
+        int distinct = wildcards;
+        for (byte count : letterCount) {
+            if (count > 0)
+                distinct++;
+        }
+
+        long words = 0;
+        for (byte i = 1; i <= distinct && i <= LETTERS_SIZE; i++) {
+            List<Triplet<String, Byte[], Integer>> listLetterCount = wordsPerLength.get(i);
+            if (listLetterCount != null)
+                words += listLetterCount.size();
+        }
+
+        if (isParallel(words))
+            return words * NANOS_PER_WORD / ForkJoinPool.getCommonPoolParallelism();
+
+        return words * NANOS_PER_WORD;
+    }
+
     /**
      * Calculates the score for a word using {@link #getLetterPoints()}
      * @param word the word
@@ -104,54 +189,253 @@ public class Dictionary implements WordFinder {
 
     @Override
     public List<String> getWords(String letters) {
-        LOG.debug("Finding all possible words using [" + letters +"]");
+        return getWords(letters, 0);
+    }
+
+    @Override
+    public boolean supportsWildcards() {
+        return true;
+    }
+
+    @Override
+    public List<String> getWords(String letters, int limit) {
+        return getWords(letters, null, limit);
+    }
+
+    @Override
+    public List<String> getWords(String letters, WordFilter filter, int limit) {
+        return getWords(letters, filter, limit, null);
+    }
+
+    /**
+     * Finds the best words meeting the conditions of the filter, up to the limit. The words are checked in slices of
+     * {@link TopWords#CHECK_INTERVAL} words, checking the deadline before each one, so once the deadline expires the
+     * best words found so far are returned
+     * @param letters The letters
+     * @param filter The conditions the words must meet, null for none
+     * @param limit The maximum number of words to return, 0 or less to return all of them
+     * @param deadline The deadline of the search, null for none
+     * @return the list of words ordered in descending mode by their score
+     */
+    @Override
+    public List<String> getWords(String letters, WordFilter filter, int limit, Deadline deadline) {
+        LOG.debug("Finding all possible words using [" + letters +"]" + (filter == null ? "" : " and " + filter));
 
         // if no letter or empty return an empty list
         if (letters == null || letters.isEmpty())
             return Collections.emptyList();
 
-        // A list of pairs whose first object is the word found and the second its total score
-        List<Pair<String, Integer>> words = new ArrayList<>();
-
         // Get the distinct letter count for the word
         Pair<Byte[], Byte> letterCount = getLettersCount(letters);
 
-        // Iterate up to the number of distinct letters in "letters"
-        // Start with 1 because we don't care about 0 words
-        for (byte i=1; i<=letterCount.getSecond(); i++) {
-            // Find out if there are words whose number of distinct letters match the number of letters for this iteration
-            List<Triplet<String, Byte[], Integer>> listLetterCount = wordsPerLength.get(i);
+        Scan scan = new Scan(letterCount.getFirst(), letterCount.getSecond(), countWildcards(letters),
+                             filter == null || filter.isEmpty() ? null : filter, deadline);
+
+        // The words found and their total score, keeping only the best ones if there is a limit. Scanning many
+        // words is split among the threads of the pool
+        TopWords words;
+        if (isParallel(scan.size())) {
+            words = ForkJoinPool.commonPool().invoke(new ScanTask(scan, limit, 0, scan.size()));
+        } else {
+            words = new TopWords(limit);
+            scan.scan(0, scan.size(), words);
+        }
+
+        LOG.debug("Found [" + words.size() + "] words for [" +letters + "]");
+
+        // The words sorted (descending) based on their score
+        return words.toList();
+    }
+
+    /**
+     * Finds the words for all the racks with a single scan of the words. The racks having each letter are kept as a
+     * bit set, so the racks a word is checked against (those having all the letters of the word and at least as
+     * many distinct letters as the word) are found with a few bitwise operations instead of checking every rack.
+     * Racks with wildcards are searched one by one. The deadline is checked every {@link TopWords#CHECK_INTERVAL}
+     * words of the scan, so once it expires all the racks scanned have only the words found until then
+     * @param racks The groups of letters, null elements are ignored
+     * @param limit The maximum number of words to return for each rack, 0 or less to return all of them
+     * @param deadline The deadline of the search, null for none
+     * @return the list of words of each rack (ordered in descending mode by their score), in the order of the racks
+     */
+    @Override
+    public Map<String, List<String>> getWordsBatch(Collection<String> racks, int limit, Deadline deadline) {
+        LOG.debug("Finding all possible words for [" + racks.size() + "] racks");
+
+        Map<String, List<String>> results = new LinkedHashMap<>();
+
+        // A scan and a collector for each distinct rack with letters
+        List<String> scanned = new ArrayList<>();
+        List<Scan> scans = new ArrayList<>();
+        for (String letters : racks) {
+            if (letters == null || results.containsKey(letters))
+                continue;
+
+            results.put(letters, Collections.emptyList());
 
-            // If no words, continue with the next iteration
+            if (countWildcards(letters) > 0) {
+                if (deadline == null || !deadline.isTruncated())
+                    results.put(letters, getWords(letters, null, limit, deadline));
+                continue;
+            }
+
+            Pair<Byte[], Byte> letterCount = getLettersCount(letters);
+            if (letterCount.getSecond() == 0)
+                continue;
+
+            scanned.add(letters);
+            scans.add(new Scan(letterCount.getFirst(), letterCount.getSecond()));
+        }
+
+        TopWords[] found = new TopWords[scans.size()];
+
+        // The racks having each letter and the racks having at least each number of distinct letters
+        int blocks = (scans.size() + Long.SIZE - 1) / Long.SIZE;
+        long[][] racksPerLetter = new long[LETTERS_SIZE][blocks];
+        long[][] racksPerDistinct = new long[LETTERS_SIZE + 1][blocks];
+        byte maxDistinct = 0;
+        int union = 0;
+        for (int r = 0; r < scans.size(); r++) {
+            Scan scan = scans.get(r);
+            found[r] = new TopWords(limit);
+
+            for (int m = scan.mask; m != 0; m &= m - 1)
+                racksPerLetter[Integer.numberOfTrailingZeros(m)][r / Long.SIZE] |= 1L << r;
+
+            for (int i = 1; i <= scan.distinct; i++)
+                racksPerDistinct[i][r / Long.SIZE] |= 1L << r;
+
+            maxDistinct = (byte) Math.max(maxDistinct, scan.distinct);
+            union |= scan.mask;
+        }
+
+        long[] candidates = new long[blocks];
+        boolean stopped = false;
+        for (byte i = 1; i <= maxDistinct && !stopped; i++) {
+            List<Triplet<String, Byte[], Integer>> listLetterCount = wordsPerLength.get(i);
             if (listLetterCount == null)
                 continue;
 
-            listLetterCount.forEach(triple -> {
-                // For each word iterate over its distinct letters and if the letter exist in the "letters"
-                // and the number of times of that letter is less or equal to the number of times of that letter
-                // which is being compare, then a match is found
-                boolean ok = true;
+            Signatures signatures = signaturesPerLength.get(i);
+            for (int j = 0; j < signatures.size; j++) {
+                if (deadline != null && (j & (TopWords.CHECK_INTERVAL - 1)) == 0 && deadline.shouldStop()) {
+                    stopped = true;
+                    break;
+                }
 
-                Byte[] lc = triple.getSecond();
+                // Discard the words that use letters not present in any of the racks
+                int mask = signatures.masks[j];
+                if ((mask & ~union) != 0)
+                    continue;
 
-                for( int j=0; j<lc.length; j++) {
-                    if (lc[j] != null && (letterCount.getFirst()[j] == null || lc[j] > letterCount.getFirst()[j])) {
-                        ok = false;
-                        break;
+                System.arraycopy(racksPerDistinct[i], 0, candidates, 0, blocks);
+                for (int m = mask; m != 0; m &= m - 1) {
+                    long[] withLetter = racksPerLetter[Integer.numberOfTrailingZeros(m)];
+                    for (int b = 0; b < blocks; b++)
+                        candidates[b] &= withLetter[b];
+                }
+
+                for (int b = 0; b < blocks; b++) {
+                    for (long c = candidates[b]; c != 0; c &= c - 1) {
+                        int r = b * Long.SIZE + Long.numberOfTrailingZeros(c);
+                        if (scans.get(r).fits(listLetterCount, signatures, j)) {
+                            Triplet<String, Byte[], Integer> triple = listLetterCount.get(j);
+                            found[r].add(triple.getFirst(), triple.getThird());
+                        }
                     }
                 }
+            }
+        }
+
+        for (int r = 0; r < scans.size(); r++)
+            results.put(scanned.get(r), found[r].toList());
 
-                if (ok)
-                    words.add(new Pair<>(triple.getFirst(), triple.getThird()));
-            });
+        LOG.debug("Found words for [" + results.size() + "] distinct racks");
+
+        return results;
+    }
+
+    /**
+     * Adds to the words the triplets, from index from to index to, whose packed signature fits in the signature
+     * of the letters. Words whose letter counts do not fit in a packed signature are compared using their letter
+     * count.
+     * @param listLetterCount the triplets for a number of distinct letters
+     * @param signatures the packed signatures of the triplets
+     * @param from the index of the first triplet (inclusive)
+     * @param to the index of the last triplet (exclusive)
+     * @param letterCount the letter count of the letters
+     * @param mask the mask of the letters present in the letters
+     * @param signature the packed signature of the letters
+     * @param words the collector to which to add the found words
+     */
+    protected void findWords(List<Triplet<String, Byte[], Integer>> listLetterCount, Signatures signatures, int from,
+                             int to, Byte[] letterCount, int mask, long[] signature, TopWords words) {
+        long lettersLow = signature[0];
+        long lettersHigh = signature[1];
+        long[] packed = signatures.packed;
+        int[] masks = signatures.masks;
+        int notPresent = ~mask;
+
+        for (int j = from, k = from * SIGNATURE_SIZE; j < to; j++, k += SIGNATURE_SIZE) {
+            long low = packed[k];
+
+            // The words that use letters not present are discarded by their mask. Both checks are combined without
+            // branching as, unlike comparing letter counts one by one, comparing the signatures is as cheap
+            boolean ok = ((masks[j] & notPresent) == 0) & (low == Signatures.OVERFLOW ?
+                fitsIn(listLetterCount.get(j).getSecond(), letterCount) : fitsIn(low, packed[k + 1], lettersLow, lettersHigh));
+
+            if (ok) {
+                Triplet<String, Byte[], Integer> triple = listLetterCount.get(j);
+                words.add(triple.getFirst(), triple.getThird());
+            }
         }
+    }
+
+    /**
+     * Indicates whether the words are checked in parallel, which requires as many words as the threshold and a
+     * pool with more than one thread
+     * @param words the number of words to check
+     * @return true if the words are checked in parallel
+     */
+    protected boolean isParallel(long words) {
+        return parallelThreshold > 0 && words >= parallelThreshold && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
 
-        // We need to sort (descending) the words based on their score
-        words.sort((r1, r2) -> Integer.compare(r2.getSecond(), r1.getSecond()));
+    /**
+     * Gets the minimum number of words to check for the check to be split among the threads of the common
+     * {@link ForkJoinPool}. Defaults to 50000
+     * @return the minimum number of words, 0 or less if words are always checked by the calling thread
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
 
-        LOG.debug("Found [" + words.size() + "] words for [" +letters + "]");
+    /**
+     * Sets the minimum number of words to check for the check to be split among the threads of the common
+     * {@link ForkJoinPool}
+     * @param parallelThreshold the minimum number of words, 0 or less if words are always checked by the calling thread
+     */
+    @Value("${dictionary.parallel.threshold:50000}")
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Indicates whether the packed signatures are used when finding words. Defaults to true
+     * @return true if the packed signatures are used
+     */
+    public boolean isPackedSignatures() {
+        return packedSignatures;
+    }
 
-        return words.stream().map(Pair::getFirst).collect(Collectors.toList());
+    /**
+     * Sets whether the packed signatures are used when finding words. When not used, the letter count of each
+     * word is compared one letter at a time.
+     * @param packedSignatures true if the packed signatures should be used
+     */
+    @Value("${dictionary.packed.signatures:true}")
+    public void setPackedSignatures(boolean packedSignatures) {
+        this.packedSignatures = packedSignatures;
     }
 
     /**
@@ -171,4 +455,333 @@ public class Dictionary implements WordFinder {
     public void setLetterPoints(byte[] letterPoints) {
         this.letterPoints = letterPoints;
     }
+
+    /**
+     * The words to check for some letters, which are those of the buckets from 1 up to the number of distinct
+     * letters in the letters (plus the number of wildcards, each of which can add a distinct letter), seen as a
+     * single range of indices in the order of the buckets. With a filter, the buckets whose words can not meet
+     * its conditions are left empty
+     */
+    protected class Scan {
+        private final Byte[] letterCount;
+        private final int mask;
+        private final long[] signature = new long[SIGNATURE_SIZE];
+        private final byte distinct;
+        private final int wildcards;
+
+        // The conditions of the words, null if none, the letters required (their count, mask and packed signature,
+        // which is only used if exact) and the length bounds
+        private final WordFilter filter;
+        private final Byte[] requiredCount = new Byte[LETTERS_SIZE];
+        private final int requiredMask;
+        private final long[] requiredSignature = new long[SIGNATURE_SIZE];
+        private final boolean requiredPacked;
+        private final int minLength;
+        private final int maxLength;
+
+        // The deadline of the search, null if none
+        private final Deadline deadline;
+
+        // The number of buckets to check
+        private final int buckets;
+
+        // The index where the words for each number of distinct letters start, the range for i distinct letters
+        // being [starts[i], starts[i + 1])
+        private final int[] starts;
+
+        public Scan(Byte[] letterCount, byte distinct) {
+            this(letterCount, distinct, 0);
+        }
+
+        public Scan(Byte[] letterCount, byte distinct, int wildcards) {
+            this(letterCount, distinct, wildcards, null);
+        }
+
+        public Scan(Byte[] letterCount, byte distinct, int wildcards, WordFilter filter) {
+            this(letterCount, distinct, wildcards, filter, null);
+        }
+
+        public Scan(Byte[] letterCount, byte distinct, int wildcards, WordFilter filter, Deadline deadline) {
+            this.letterCount = letterCount;
+            this.deadline = deadline;
+            this.distinct = distinct;
+            this.wildcards = wildcards;
+            this.filter = filter;
+
+            if (filter != null) {
+                byte[] required = filter.getLetterCount();
+                for (int i = 0; i < LETTERS_SIZE; i++) {
+                    if (required[i] > 0)
+                        requiredCount[i] = required[i];
+                }
+
+                minLength = filter.getRequiredLength();
+                maxLength = filter.getMaxLength();
+            } else {
+                minLength = 0;
+                maxLength = Integer.MAX_VALUE;
+            }
+
+            requiredMask = letterMask(requiredCount);
+            requiredPacked = packLettersCount(requiredCount, requiredSignature);
+
+            // A word has at least as many letters as distinct letters
+            this.buckets = Math.min(Math.min(distinct + wildcards, LETTERS_SIZE), maxLength);
+
+            // Counts that do not fit are clamped, which is fine as words whose counts do not fit are compared
+            // using their letter count
+            packLettersCount(letterCount, signature);
+
+            mask = letterMask(letterCount);
+
+            // The words with fewer distinct letters than the letters required are not checked
+            int firstBucket = Integer.bitCount(requiredMask);
+
+            starts = new int[buckets + 2];
+            for (byte i = 1; i <= buckets; i++) {
+                List<Triplet<String, Byte[], Integer>> listLetterCount = wordsPerLength.get(i);
+                starts[i + 1] = starts[i] + (listLetterCount == null || i < firstBucket ? 0 : listLetterCount.size());
+            }
+        }
+
+        /**
+         * Indicates whether the word at index j of the bucket can be made using the letters
+         * @param listLetterCount the triplets of the bucket
+         * @param signatures the packed signatures and masks of the bucket
+         * @param j the index of the word in the bucket
+         * @return true if the word can be made using the letters
+         */
+        public boolean fits(List<Triplet<String, Byte[], Integer>> listLetterCount, Signatures signatures, int j) {
+            if ((signatures.masks[j] & ~mask) != 0)
+                return false;
+
+            long low = signatures.packed[j * SIGNATURE_SIZE];
+            if (packedSignatures && low != Signatures.OVERFLOW)
+                return fitsIn(low, signatures.packed[j * SIGNATURE_SIZE + 1], signature[0], signature[1]);
+
+            return fitsIn(listLetterCount.get(j).getSecond(), letterCount);
+        }
+
+        /**
+         * Returns the number of words to check
+         * @return the number of words
+         */
+        public int size() {
+            return starts[buckets + 1];
+        }
+
+        /**
+         * Adds to the words those, from index from to index to, that can be made using the letters
+         * @param from the index of the first word (inclusive)
+         * @param to the index of the last word (exclusive)
+         * @param words the collector to which to add the found words
+         */
+        public void scan(int from, int to, TopWords words) {
+            for (byte i = 1; i <= buckets && starts[i] < to; i++) {
+                int start = Math.max(from, starts[i]) - starts[i];
+                int end = Math.min(to, starts[i + 1]) - starts[i];
+                if (start >= end)
+                    continue;
+
+                List<Triplet<String, Byte[], Integer>> listLetterCount = wordsPerLength.get(i);
+                Signatures signatures = signaturesPerLength.get(i);
+
+                // Without a deadline the bucket is checked in one go, or else in slices, checking the deadline
+                // before each one
+                int slice = deadline == null ? end - start : TopWords.CHECK_INTERVAL;
+                for (int j = start; j < end; j += slice) {
+                    if (deadline != null && deadline.shouldStop())
+                        return;
+
+                    scan(listLetterCount, signatures, j, Math.min(end, j + slice), words);
+                }
+            }
+        }
+
+        /**
+         * Adds to the words the triplets of a bucket, from index from to index to, that can be made using the letters
+         * @param listLetterCount the triplets of the bucket
+         * @param signatures the packed signatures and masks of the bucket
+         * @param from the index of the first triplet (inclusive)
+         * @param to the index of the last triplet (exclusive)
+         * @param words the collector to which to add the found words
+         */
+        private void scan(List<Triplet<String, Byte[], Integer>> listLetterCount, Signatures signatures, int from,
+                          int to, TopWords words) {
+            if (wildcards > 0 || filter != null) {
+                scanFiltered(listLetterCount, signatures, from, to, words);
+                return;
+            }
+
+            if (packedSignatures) {
+                findWords(listLetterCount, signatures, from, to, letterCount, mask, signature, words);
+                return;
+            }
+
+            for (int j = from; j < to; j++) {
+                // Discard the words that use letters not present
+                if ((signatures.masks[j] & ~mask) != 0)
+                    continue;
+
+                Triplet<String, Byte[], Integer> triple = listLetterCount.get(j);
+                if (fitsIn(triple.getSecond(), letterCount))
+                    words.add(triple.getFirst(), triple.getThird());
+            }
+        }
+
+        /**
+         * Adds to the words the triplets of a bucket, from index from to index to, that can be made using the
+         * letters and the wildcards, which is the case if the number of letters of the word missing from the letters
+         * is not greater than the number of wildcards, and meet the conditions of the filter. The missing letters are
+         * taken by wildcards and score no points
+         * @param listLetterCount the triplets of the bucket
+         * @param signatures the packed signatures, masks and lengths of the bucket
+         * @param from the index of the first triplet (inclusive)
+         * @param to the index of the last triplet (exclusive)
+         * @param words the collector to which to add the found words
+         */
+        private void scanFiltered(List<Triplet<String, Byte[], Integer>> listLetterCount, Signatures signatures,
+                                  int from, int to, TopWords words) {
+            boolean affixes = filter != null && !(filter.getPrefix().isEmpty() && filter.getSuffix().isEmpty());
+
+            for (int j = from, k = from * SIGNATURE_SIZE; j < to; j++, k += SIGNATURE_SIZE) {
+                // Each letter not present takes at least a wildcard and every letter required must be present
+                int wordMask = signatures.masks[j];
+                if (Integer.bitCount(wordMask & ~mask) > wildcards || (wordMask & requiredMask) != requiredMask)
+                    continue;
+
+                int length = signatures.lengths[j];
+                if (length < minLength || length > maxLength)
+                    continue;
+
+                Triplet<String, Byte[], Integer> triple = listLetterCount.get(j);
+
+                long low = signatures.packed[k];
+                boolean packed = packedSignatures && low != Signatures.OVERFLOW;
+                int missing = packed ?
+                    deficit(low, signatures.packed[k + 1], signature[0], signature[1]) :
+                    deficit(triple.getSecond(), letterCount);
+
+                if (missing > wildcards)
+                    continue;
+
+                if (filter != null) {
+                    // The letters required must fit in the word
+                    boolean required = packed && requiredPacked ?
+                        fitsIn(requiredSignature[0], requiredSignature[1], low, signatures.packed[k + 1]) :
+                        fitsIn(requiredCount, triple.getSecond());
+
+                    if (!required || (affixes && !filter.matches(triple.getFirst())))
+                        continue;
+                }
+
+                int score = missing == 0 ? triple.getThird() : triple.getThird() - blankPoints(triple.getSecond());
+                if (words.accepts(score))
+                    words.add(triple.getFirst(), score);
+            }
+        }
+
+        /**
+         * Returns the points of the letters of the word missing from the letters
+         * @param wordCount the letter count of the word
+         * @return the points of the missing letters
+         */
+        private int blankPoints(Byte[] wordCount) {
+            int points = 0;
+            for (int j = 0; j < LETTERS_SIZE; j++) {
+                if (wordCount[j] != null)
+                    points += Math.max(0, wordCount[j] - (letterCount[j] == null ? 0 : letterCount[j])) * letterPoints[j];
+            }
+
+            return points;
+        }
+    }
+
+    /**
+     * Checks a range of the words of a {@link Scan}, splitting it in halves (checked in parallel) until the range
+     * is small enough. The words found in both halves are merged keeping the order in which they would be found
+     * by checking the whole range, so the result is the same as checking it with a single thread
+     */
+    protected static class ScanTask extends RecursiveTask<TopWords> {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The number of words below which the range is not split
+         */
+        public static final int CHUNK_SIZE = 8192;
+
+        private final Scan scan;
+        private final int limit;
+        private final int from;
+        private final int to;
+
+        public ScanTask(Scan scan, int limit, int from, int to) {
+            this.scan = scan;
+            this.limit = limit;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TopWords compute() {
+            if (to - from <= CHUNK_SIZE) {
+                TopWords words = new TopWords(limit);
+                scan.scan(from, to, words);
+                return words;
+            }
+
+            int middle = (from + to) >>> 1;
+            ScanTask right = new ScanTask(scan, limit, middle, to);
+            right.fork();
+
+            TopWords words = new ScanTask(scan, limit, from, middle).compute();
+            words.addAll(right.join());
+
+            return words;
+        }
+    }
+
+    /**
+     * A growable list of packed signatures, {@link com.chibchasoft.wordfinder.util.Util#SIGNATURE_SIZE} longs per
+     * word, letter masks and lengths (number of letters), one int per word. Words with a letter count that does not
+     * fit in a signature are stored as {@link #OVERFLOW}.
+     */
+    protected static class Signatures {
+        /**
+         * Marks a word whose letter count does not fit in a packed signature. It can never be a valid
+         * signature because signatures never have the guard bits set.
+         */
+        public static final long OVERFLOW = -1L;
+
+        protected long[] packed = new long[16 * SIGNATURE_SIZE];
+        protected int[] masks = new int[16];
+        protected int[] lengths = new int[16];
+        protected int size = 0;
+
+        /**
+         * Adds the packed signature, letter mask and length for the letter count
+         * @param letterCount the letter count of the word
+         */
+        public void add(Byte[] letterCount) {
+            if (size == masks.length) {
+                packed = Arrays.copyOf(packed, packed.length * 2);
+                masks = Arrays.copyOf(masks, masks.length * 2);
+                lengths = Arrays.copyOf(lengths, lengths.length * 2);
+            }
+
+            masks[size] = letterMask(letterCount);
+
+            for (Byte count : letterCount) {
+                if (count != null)
+                    lengths[size] += count;
+            }
+
+            long[] signature = new long[SIGNATURE_SIZE];
+            if (!packLettersCount(letterCount, signature))
+                signature[0] = OVERFLOW;
+
+            System.arraycopy(signature, 0, packed, size * SIGNATURE_SIZE, SIGNATURE_SIZE);
+            size++;
+        }
+    }
 }
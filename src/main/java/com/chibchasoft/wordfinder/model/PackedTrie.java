@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.chibchasoft.wordfinder.util.Util.FIRST_LETTER;
+import static com.chibchasoft.wordfinder.util.Util.LETTERS_SIZE;
+import static com.chibchasoft.wordfinder.util.Util.index;
+import static com.chibchasoft.wordfinder.util.Util.validLetter;
+
+/**
+ * A trie, like {@link Trie}, whose nodes are stored in parallel primitive arrays instead of one object (with an
+ * array of 26 children) per node. Nodes are numbered in breadth-first order, so all the children of a node have
+ * consecutive numbers (ordered by their letter) and a node only needs to store a 26-bit mask of the letters of its
+ * children and the number of its first child. The child for a letter is found by counting the bits set in the mask
+ * below the letter.
+ *
+ * Because nodes can not be inserted in the middle of the arrays, words are kept aside as they are added and the
+ * arrays are (re)built the first time words are searched after adding words. Like {@link Trie}, words are added
+ * using the lowercase for its characters and invalid characters are ignored.
+ */
+@Component("packedTrie")
+public class PackedTrie implements WordFinder {
+    private static final Logger LOG = LoggerFactory.getLogger(PackedTrie.class);
+
+    // The nodes of the trie
+    protected volatile Nodes nodes = new Nodes(new String[0], new byte[LETTERS_SIZE]);
+
+    // The words added since the last time the nodes were built, null if none
+    protected volatile List<String> added;
+
+    // The points assigned to letter
+    protected byte[] letterPoints = new byte[LETTERS_SIZE];
+
+    public PackedTrie() {
+
+    }
+
+    @Override
+    public synchronized PackedTrie add(String word) {
+        LOG.debug("Adding word[" + word +"]");
+
+        StringBuilder letters = new StringBuilder(word.length());
+        for (char c : word.toLowerCase().toCharArray()) {
+            if (validLetter(c))
+                letters.append(c);
+        }
+
+        if (letters.length() > 0) {
+            if (added == null)
+                added = new ArrayList<>();
+
+            added.add(letters.toString());
+        }
+
+        LOG.debug("Added word[" + word +"]");
+
+        return this;
+    }
+
+    @Override
+    public List<String> getWords(String letters) {
+        return getWords(letters, 0);
+    }
+
+    @Override
+    public List<String> getWords(String letters, int limit) {
+        return getWords(letters, null, limit, null);
+    }
+
+    /**
+     * Using the provided letters find the best words meeting the conditions of the filter, up to the limit. Every
+     * node visited asks the collector of words whether to stop (see {@link TopWords#shouldStop()}), so once the
+     * deadline expires the search unwinds and the best words found so far are returned. The conditions of the filter
+     * are checked on the words found, so all of them are kept when there is a filter
+     * @param letters the string with the letters to use to find words
+     * @param filter the conditions the words must meet, null for none
+     * @param limit the maximum number of words to return, 0 or less to return all of them
+     * @param deadline the deadline of the search, null for none
+     * @return the list of words
+     */
+    @Override
+    public List<String> getWords(String letters, WordFilter filter, int limit, Deadline deadline) {
+        LOG.debug("Finding all possible words using [" + letters +"]");
+
+        boolean filtered = filter != null && !filter.isEmpty();
+
+        if (letters == null || letters.isEmpty())
+            return Collections.emptyList();
+
+        Nodes nodes = getNodes();
+
+        Trie.LetterIndices letterIndices = new Trie.LetterIndices();
+        letterIndices.calculateIndices(letters.toLowerCase());
+
+        TopWords words = new TopWords(filtered ? 0 : limit, deadline);
+
+        nodes.findWords(Nodes.ROOT, letterIndices, new char[letterIndices.total], 0, words);
+
+        LOG.debug("Found [" + words.size() + "] words for [" +letters + "]");
+
+        // The words sorted (descending) based on their total points
+        return filtered ? filter.filter(words.toList(), limit) : words.toList();
+    }
+
+    /**
+     * Returns the nodes to search, building them first if words were added since the last time they were built.
+     * @return the nodes
+     */
+    protected Nodes getNodes() {
+        if (added == null)
+            return nodes;
+
+        synchronized (this) {
+            if (added != null) {
+                List<String> words = nodes.words();
+                words.addAll(added);
+
+                nodes = new Nodes(words.toArray(new String[words.size()]), letterPoints);
+                added = null;
+
+                LOG.info("Built [" + nodes.size + "] nodes for [" + words.size() + "] words");
+            }
+
+            return nodes;
+        }
+    }
+
+    public byte[] getLetterPoints() {
+        return letterPoints;
+    }
+
+    @Resource(name = "letterPoints")
+    public void setLetterPoints(byte[] letterPoints) {
+        this.letterPoints = letterPoints;
+    }
+
+    /**
+     * The nodes of the trie, in breadth-first order, stored in parallel arrays. For the node n:
+     * <ul>
+     *     <li>childMask[n] has the bit i set if there is a child for the letter at index i</li>
+     *     <li>firstChild[n] is the number of its first child, the rest of children follow it</li>
+     *     <li>totalPoints[n] is the total points for the chain from the root to this node</li>
+     *     <li>isWord[n] indicates whether the chain from the root to this node makes a word</li>
+     * </ul>
+     * The nodes are immutable once built.
+     */
+    protected static class Nodes {
+        /**
+         * The number of the root node
+         */
+        public static final int ROOT = 0;
+
+        protected final int[] childMask;
+        protected final int[] firstChild;
+        protected final int[] totalPoints;
+        protected final boolean[] isWord;
+        protected final int size;
+
+        /**
+         * Builds the nodes for the words
+         * @param words the words, made only of valid lowercase letters
+         * @param letterPoints the points for each letter
+         */
+        public Nodes(String[] words, byte[] letterPoints) {
+            Arrays.sort(words);
+
+            // Each distinct prefix is a node, so count them to size the arrays
+            int count = 1;
+            for (int w = 0; w < words.length; w++)
+                count += words[w].length() - (w == 0 ? 0 : commonPrefix(words[w - 1], words[w]));
+
+            childMask = new int[count];
+            firstChild = new int[count];
+            totalPoints = new int[count];
+            isWord = new boolean[count];
+
+            // Breadth-first, each entry of the queue being a node and the range of words sharing its prefix.
+            // All the children of a node are numbered when the node is taken from the queue, so they are consecutive
+            int[] queue = new int[count * 3];
+            int head = 0;
+            int tail = 0;
+            int next = ROOT + 1;
+
+            queue[tail++] = ROOT;
+            queue[tail++] = 0;
+            queue[tail++] = words.length;
+
+            int depth = 0;
+            int depthEnd = tail;
+            while (head < tail) {
+                if (head == depthEnd) {
+                    depth++;
+                    depthEnd = tail;
+                }
+
+                int node = queue[head++];
+                int from = queue[head++];
+                int to = queue[head++];
+
+                // Words are sorted, so if the prefix is a word itself, it is the first one (or more if the word
+                // was added more than once) of the range
+                while (from < to && words[from].length() == depth) {
+                    isWord[node] = true;
+                    from++;
+                }
+
+                firstChild[node] = next;
+
+                while (from < to) {
+                    char c = words[from].charAt(depth);
+                    int end = from + 1;
+                    while (end < to && words[end].charAt(depth) == c)
+                        end++;
+
+                    int child = next++;
+                    childMask[node] |= 1 << index(c);
+                    totalPoints[child] = totalPoints[node] + letterPoints[index(c)];
+
+                    queue[tail++] = child;
+                    queue[tail++] = from;
+                    queue[tail++] = end;
+
+                    from = end;
+                }
+            }
+
+            size = next;
+        }
+
+        /**
+         * Returns the number of the child of the node for the letter at index
+         * @param node the node
+         * @param index the index of the letter
+         * @return the number of the child
+         */
+        public int child(int node, int index) {
+            return firstChild[node] + Integer.bitCount(childMask[node] & ((1 << index) - 1));
+        }
+
+        /**
+         * Find words that are matched from the node forward according to the supplied letters.
+         * Words found are added to the results parameters
+         *
+         * @param node          the node
+         * @param letterIndices The letters to look for
+         * @param word          the letters of the chain from the root to this node
+         * @param depth         the number of letters of the chain from the root to this node
+         * @param words         the collector to which to add the found words
+         */
+        public void findWords(int node, Trie.LetterIndices letterIndices, char[] word, int depth, TopWords words) {
+            if (words.shouldStop())
+                return;
+
+            if (isWord[node] && words.accepts(totalPoints[node]))
+                words.add(new String(word, 0, depth), totalPoints[node]);
+
+            if (letterIndices.isEmpty())
+                return;
+
+            // Only visit the children whose letter is present
+            int mask = childMask[node];
+            for (int present = mask & letterIndices.getMask(); present != 0; present &= present - 1) {
+                int i = Integer.numberOfTrailingZeros(present);
+                int child = firstChild[node] + Integer.bitCount(mask & ((1 << i) - 1));
+
+                word[depth] = (char) (i + FIRST_LETTER);
+
+                letterIndices.decrementForIndex(i);
+
+                findWords(child, letterIndices, word, depth + 1, words);
+
+                letterIndices.incrementForIndex(i);
+            }
+        }
+
+        /**
+         * Returns all the words of the trie
+         * @return the words
+         */
+        public List<String> words() {
+            List<String> words = new ArrayList<>();
+            collect(ROOT, new StringBuilder(), words);
+            return words;
+        }
+
+        private void collect(int node, StringBuilder prefix, List<String> words) {
+            if (isWord[node])
+                words.add(prefix.toString());
+
+            int child = firstChild[node];
+            for (int mask = childMask[node]; mask != 0; mask &= mask - 1, child++) {
+                prefix.append((char) (Integer.numberOfTrailingZeros(mask) + FIRST_LETTER));
+                collect(child, prefix, words);
+                prefix.setLength(prefix.length() - 1);
+            }
+        }
+
+        private static int commonPrefix(String s1, String s2) {
+            int length = Math.min(s1.length(), s2.length());
+            int i = 0;
+            while (i < length && s1.charAt(i) == s2.charAt(i))
+                i++;
+
+            return i;
+        }
+    }
+}
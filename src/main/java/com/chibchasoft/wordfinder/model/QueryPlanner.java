@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.chibchasoft.wordfinder.util.Util.LETTERS_SIZE;
+import static com.chibchasoft.wordfinder.util.Util.countWildcards;
+import static com.chibchasoft.wordfinder.util.Util.index;
+import static com.chibchasoft.wordfinder.util.Util.normalize;
+import static com.chibchasoft.wordfinder.util.Util.validLetter;
+
+/**
+ * A WordFinder made of several WordFinders (the engines), all of them with the same words, that sends each query
+ * to the engine estimated to be the cheapest for its letters. Engines that are also {@link CostEstimator}s estimate
+ * their own cost from the number of instances of each letter; the rest are only chosen if no engine can estimate
+ * its cost. Engines with the same estimated cost are chosen in the order they were added. Queries with wildcards
+ * are only sent to the engines supporting them (see {@link WordFinder#supportsWildcards()}), if any. The words are
+ * normalized before adding them to the engines, so all of them find the same words, in the same order, whichever
+ * is chosen.
+ *
+ * For each engine, the number of queries sent to it, the sum of their estimated costs and the sum of their actual
+ * durations are kept (see {@link #getStatistics()}), so the estimates can be checked against reality.
+ */
+public class QueryPlanner implements WordFinder {
+    private static final Logger LOG = LoggerFactory.getLogger(QueryPlanner.class);
+
+    // The engines by their name, in the order they were added
+    protected final Map<String, WordFinder> engines = new LinkedHashMap<>();
+
+    // The statistics of each engine by its name
+    protected final Map<String, Statistics> statistics = new LinkedHashMap<>();
+
+    // The words added to the engines, normalized
+    protected final Set<String> words = new HashSet<>();
+
+    public QueryPlanner() {
+
+    }
+
+    /**
+     * Adds an engine. Engines must be added before adding words
+     * @param name the name of the engine
+     * @param engine the engine
+     * @return itself so it can fluent
+     */
+    public QueryPlanner addEngine(String name, WordFinder engine) {
+        engines.put(name, engine);
+        statistics.put(name, new Statistics());
+
+        LOG.info("Added engine[" + name + "]");
+
+        return this;
+    }
+
+    /**
+     * Adds the word to all the engines, normalized (see {@link com.chibchasoft.wordfinder.util.Util#normalize}), since
+     * the engines differ in what they do with the characters not in the 'a'-'z' range (e.g. "don't" would be found as
+     * "dont" by some and as "don't" by others). Words already added, once normalized, are ignored, so engines keeping
+     * duplicates find them only once too
+     * @param word the word
+     * @return itself so it can fluent
+     */
+    @Override
+    public synchronized QueryPlanner add(String word) {
+        String normalized = normalize(word);
+        if (normalized.isEmpty() || !words.add(normalized))
+            return this;
+
+        for (WordFinder engine : engines.values())
+            engine.add(normalized);
+
+        return this;
+    }
+
+    @Override
+    public List<String> getWords(String letters) {
+        return getWords(letters, 0);
+    }
+
+    @Override
+    public List<String> getWords(String letters, int limit) {
+        return getWords(letters, null, limit);
+    }
+
+    @Override
+    public List<String> getWords(String letters, WordFilter filter, int limit) {
+        return getWords(letters, filter, limit, null);
+    }
+
+    /**
+     * Sends the query to the engine estimated to be the cheapest, with the deadline. Queries truncated by the
+     * deadline are not recorded in the statistics, since their durations do not match their estimated costs
+     * @param letters The letters
+     * @param filter The conditions the words must meet, null for none
+     * @param limit The maximum number of words to return, 0 or less to return all of them
+     * @param deadline The deadline of the search, null for none
+     * @return the list of words ordered in descending mode by their score
+     */
+    @Override
+    public List<String> getWords(String letters, WordFilter filter, int limit, Deadline deadline) {
+        if (letters == null || letters.isEmpty() || engines.isEmpty())
+            return Collections.emptyList();
+
+        byte[] letterCount = countLetters(letters);
+        int wildcards = countWildcards(letters);
+
+        Pair<String, Double> chosen = choose(letterCount, wildcards);
+        String name = chosen.getFirst();
+        double cost = chosen.getSecond();
+
+        long start = System.nanoTime();
+
+        List<String> words = engines.get(name).getWords(letters, filter, limit, deadline);
+
+        long elapsed = System.nanoTime() - start;
+
+        if (deadline == null || !deadline.isTruncated())
+            statistics.get(name).record(cost, elapsed);
+
+        LOG.debug("Found [" + words.size() + "] words for [" + letters + "] using [" + name + "] estimated at [" +
+                  (long) cost + "] ns and taking [" + elapsed + "] ns");
+
+        return words;
+    }
+
+    /**
+     * Indicates whether any of the engines supports wildcards, in which case queries with wildcards are sent to it
+     * @return true if any of the engines supports wildcards
+     */
+    @Override
+    public boolean supportsWildcards() {
+        for (WordFinder engine : engines.values()) {
+            if (engine.supportsWildcards())
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Groups the racks by the engine each one would be sent to and sends each group to its engine as a single batch,
+     * so engines able to share work across the racks of a batch (see {@link Dictionary#getWordsBatch}) can do so.
+     * Batches truncated by the deadline are not recorded in the statistics, and once the deadline stops a batch the
+     * racks of the following ones are not searched
+     * @param racks The groups of letters, null elements are ignored
+     * @param limit The maximum number of words to return for each rack, 0 or less to return all of them
+     * @param deadline The deadline of the search, null for none
+     * @return the list of words of each rack (ordered in descending mode by their score), in the order of the racks
+     */
+    @Override
+    public Map<String, List<String>> getWordsBatch(Collection<String> racks, int limit, Deadline deadline) {
+        Map<String, List<String>> results = new LinkedHashMap<>();
+
+        // The racks and their total estimated cost for each engine
+        Map<String, List<String>> batches = new LinkedHashMap<>();
+        Map<String, Double> costs = new HashMap<>();
+        for (String letters : racks) {
+            if (letters == null || results.containsKey(letters))
+                continue;
+
+            results.put(letters, Collections.emptyList());
+
+            if (letters.isEmpty() || engines.isEmpty())
+                continue;
+
+            byte[] letterCount = countLetters(letters);
+            int wildcards = countWildcards(letters);
+
+            Pair<String, Double> chosen = choose(letterCount, wildcards);
+            batches.computeIfAbsent(chosen.getFirst(), k -> new ArrayList<>()).add(letters);
+            costs.merge(chosen.getFirst(), chosen.getSecond(), Double::sum);
+        }
+
+        for (Map.Entry<String, List<String>> batch : batches.entrySet()) {
+            if (deadline != null && deadline.isTruncated())
+                break;
+
+            String name = batch.getKey();
+
+            long start = System.nanoTime();
+
+            results.putAll(engines.get(name).getWordsBatch(batch.getValue(), limit, deadline));
+
+            long elapsed = System.nanoTime() - start;
+
+            if (deadline == null || !deadline.isTruncated())
+                statistics.get(name).record(costs.get(name), elapsed);
+
+            LOG.debug("Found words for [" + batch.getValue().size() + "] racks using [" + name + "] estimated at [" +
+                      costs.get(name).longValue() + "] ns and taking [" + elapsed + "] ns");
+        }
+
+        return results;
+    }
+
+    /**
+     * Returns the name of the engine the query for the letters would be sent to
+     * @param letters the string with the letters
+     * @return the name of the engine, null if there are no engines
+     */
+    public String choose(String letters) {
+        return choose(countLetters(letters), countWildcards(letters)).getFirst();
+    }
+
+    /**
+     * Returns the name of the engine with the lowest estimated cost for the letters
+     * @param letterCount the number of instances of each letter
+     * @return the name of the engine, null if there are no engines
+     */
+    protected String choose(byte[] letterCount) {
+        return choose(letterCount, 0).getFirst();
+    }
+
+    /**
+     * Returns the name of the engine with the lowest estimated cost for the letters and wildcards, together with
+     * that cost, so it is recorded as estimated without estimating it again. If there are wildcards, the engines
+     * supporting them are always preferred
+     * @param letterCount the number of instances of each letter
+     * @param wildcards the number of wildcards
+     * @return the name of the engine, null if there are no engines, and its estimated cost, in nanoseconds,
+     * Double.MAX_VALUE if unknown
+     */
+    protected Pair<String, Double> choose(byte[] letterCount, int wildcards) {
+        String name = null;
+        double cost = Double.MAX_VALUE;
+        boolean supported = false;
+        for (Map.Entry<String, WordFinder> entry : engines.entrySet()) {
+            boolean supports = wildcards == 0 || entry.getValue().supportsWildcards();
+            if (supported && !supports)
+                continue;
+
+            double estimate = estimateCost(entry.getValue(), letterCount, wildcards);
+            if (name == null || (supports && !supported) || estimate < cost) {
+                name = entry.getKey();
+                cost = estimate;
+                supported = supports;
+            }
+        }
+
+        return new Pair<>(name, cost);
+    }
+
+    private static double estimateCost(WordFinder engine, byte[] letterCount, int wildcards) {
+        return engine instanceof CostEstimator ?
+            ((CostEstimator) engine).estimateCost(letterCount, wildcards) : Double.MAX_VALUE;
+    }
+
+    private static byte[] countLetters(String letters) {
+        byte[] letterCount = new byte[LETTERS_SIZE];
+        for (char c : letters.toLowerCase().toCharArray()) {
+            if (validLetter(c))
+                letterCount[index(c)]++;
+        }
+
+        return letterCount;
+    }
+
+    /**
+     * Returns the names of the engines, in the order they were added
+     * @return the names of the engines
+     */
+    public List<String> getEngineNames() {
+        return new ArrayList<>(engines.keySet());
+    }
+
+    /**
+     * Returns the statistics of each engine by its name
+     * @return the statistics
+     */
+    public Map<String, Statistics> getStatistics() {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    /**
+     * The queries sent to an engine, with the sum of their estimated costs and actual durations
+     */
+    public static class Statistics {
+        private final LongAdder queries = new LongAdder();
+        private final LongAdder estimatedNanos = new LongAdder();
+        private final LongAdder actualNanos = new LongAdder();
+
+        /**
+         * Records a query
+         * @param estimated the estimated cost, in nanoseconds, Double.MAX_VALUE if unknown (and not recorded)
+         * @param actual the actual duration, in nanoseconds
+         */
+        public void record(double estimated, long actual) {
+            queries.increment();
+            if (estimated < Long.MAX_VALUE)
+                estimatedNanos.add((long) estimated);
+            actualNanos.add(actual);
+        }
+
+        public long getQueries() {
+            return queries.sum();
+        }
+
+        public long getEstimatedNanos() {
+            return estimatedNanos.sum();
+        }
+
+        public long getActualNanos() {
+            return actualNanos.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics{queries=" + getQueries() + ", estimatedNanos=" + getEstimatedNanos() +
+                   ", actualNanos=" + getActualNanos() + "}";
+        }
+    }
+}
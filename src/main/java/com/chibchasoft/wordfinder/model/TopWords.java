@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Collects the words found while searching together with their score and returns them ordered in descending mode
+ * by their score. Words with the same score are returned in alphabetical order, so the words kept and their order
+ * do not depend on the order the words are found in, which differs among the WordFinders.
+ *
+ * When a limit is set, only the best words up to the limit are kept, using a min-heap whose head is the worst of
+ * the words kept, so collecting n words costs O(n log limit) instead of sorting all of them.
+ *
+ * When a {@link Deadline} is set, searches ask whether to stop (see {@link #shouldStop()}) as they go, so a search
+ * running out of time returns the best words found so far.
+ */
+public class TopWords {
+    // Orders the words from the worst to the best one
+    private static final Comparator<Entry> WORST_FIRST = (e1, e2) -> e1.score != e2.score ?
+        Integer.compare(e1.score, e2.score) : e2.word.compareTo(e1.word);
+
+    /**
+     * The number of calls to {@link #shouldStop()} between checks of the deadline. It must be a power of two
+     */
+    public static final int CHECK_INTERVAL = 1024;
+
+    private int limit;
+    private Deadline deadline;
+    private int checks = 0;
+    private boolean stopped = false;
+    private final List<Entry> entries = new ArrayList<>();
+    private final PriorityQueue<Entry> heap = new PriorityQueue<>(WORST_FIRST);
+
+    /**
+     * Creates a collector of words
+     * @param limit the maximum number of words to keep, 0 or less to keep all of them
+     */
+    public TopWords(int limit) {
+        this(limit, null);
+    }
+
+    /**
+     * Creates a collector of words for a search with a deadline
+     * @param limit the maximum number of words to keep, 0 or less to keep all of them
+     * @param deadline the deadline of the search, null for none
+     */
+    public TopWords(int limit, Deadline deadline) {
+        this.limit = limit;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Removes all the words collected and sets a new limit so this can be reused
+     * @param limit the maximum number of words to keep, 0 or less to keep all of them
+     */
+    public void reset(int limit) {
+        reset(limit, null);
+    }
+
+    /**
+     * Removes all the words collected and sets a new limit and deadline so this can be reused
+     * @param limit the maximum number of words to keep, 0 or less to keep all of them
+     * @param deadline the deadline of the search, null for none
+     */
+    public void reset(int limit, Deadline deadline) {
+        this.limit = limit;
+        this.deadline = deadline;
+        entries.clear();
+        heap.clear();
+        checks = 0;
+        stopped = false;
+    }
+
+    /**
+     * Indicates whether the search must stop because its deadline, if any, expired or was cancelled. The deadline is
+     * only checked on the first call and then every {@link #CHECK_INTERVAL} calls, so searches can call this for
+     * every node they visit. Once it returns true, it keeps returning true
+     * @return true if the search must stop
+     */
+    public boolean shouldStop() {
+        if (deadline == null)
+            return false;
+
+        if (!stopped && (checks++ & (CHECK_INTERVAL - 1)) == 0)
+            stopped = deadline.shouldStop();
+
+        return stopped;
+    }
+
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Indicates whether a word with the score could be kept if added now. Callers can use it to avoid creating
+     * a word that would be discarded anyway. A word with the same score as the worst word kept may be kept, depending
+     * on its letters
+     * @param score the score of the word
+     * @return true if the word could be kept
+     */
+    public boolean accepts(int score) {
+        return limit <= 0 || heap.size() < limit || score >= heap.peek().score;
+    }
+
+    /**
+     * Adds a word, discarding the worst word kept if the limit is exceeded
+     * @param word the word
+     * @param score its score
+     */
+    public void add(String word, int score) {
+        Entry entry = new Entry(word, score);
+
+        if (limit <= 0) {
+            entries.add(entry);
+        } else if (heap.size() < limit) {
+            heap.add(entry);
+        } else if (WORST_FIRST.compare(entry, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    /**
+     * Adds all the words kept by another collector
+     * @param other the other collector
+     */
+    public void addAll(TopWords other) {
+        List<Entry> others = other.sorted();
+        for (Entry entry : others)
+            add(entry.word, entry.score);
+    }
+
+    /**
+     * Returns the number of words kept
+     * @return the number of words kept
+     */
+    public int size() {
+        return limit <= 0 ? entries.size() : heap.size();
+    }
+
+    /**
+     * Indicates whether no word is kept
+     * @return true if no word is kept
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the words kept ordered in descending mode by their score
+     * @return the words
+     */
+    public List<String> toList() {
+        List<Entry> sorted = sorted();
+
+        List<String> words = new ArrayList<>(sorted.size());
+        for (Entry entry : sorted)
+            words.add(entry.word);
+
+        return words;
+    }
+
+    private List<Entry> sorted() {
+        List<Entry> sorted = new ArrayList<>(limit <= 0 ? entries : heap);
+        sorted.sort(WORST_FIRST.reversed());
+        return sorted;
+    }
+
+    private static class Entry {
+        final String word;
+        final int score;
+
+        Entry(String word, int score) {
+            this.word = word;
+            this.score = score;
+        }
+    }
+}
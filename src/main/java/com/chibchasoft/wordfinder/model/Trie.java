@@ -15,14 +15,18 @@ package com.chibchasoft.wordfinder.model;
 import com.chibchasoft.wordfinder.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.chibchasoft.wordfinder.util.Util.*;
 
@@ -30,17 +34,49 @@ import static com.chibchasoft.wordfinder.util.Util.*;
  * A <a href="https://en.wikipedia.org/wiki/Trie">Trie</a> used to store dictionary words as well
  * as to retrieve them. This is a very specific specialization as it holds only the 26 lowercase
  * characters used in the english language.
- * In addition it keeps track of the "totalPoints" for each node from the root up to this node.
+ * In addition it keeps track of the "totalPoints" for each node from the root up to this node, and of the
+ * "maxPoints" of the words below each node so a search for the best words can skip the subtrees that can not
+ * improve the words already found.
+ *
+ * Searches whose estimated cost is at least {@link #getParallelThreshold()} are split among the threads of the common
+ * {@link ForkJoinPool} (see {@link SearchTask}).
+ *
+ * The letters can include wildcards (see {@link Util#WILDCARDS}), each one standing for any letter missing from the
+ * letters while searching, so words using them are found in the same traversal. The letters a wildcard stands for
+ * score no points.
+ *
+ * The conditions of a {@link WordFilter} are enforced while searching: the search starts from the node of the prefix,
+ * does not go deeper than the maximum length and skips the subtrees whose words can not have the letters required.
  */
 @Component("trie")
-public class Trie implements WordFinder {
+public class Trie implements WordFinder, CostEstimator {
     private static final Logger LOG = LoggerFactory.getLogger(Trie.class);
 
+    // The state used while searching by each thread
+    protected static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    // The estimated cost of visiting a node when searching, in nanoseconds
+    protected static final double NANOS_PER_NODE = 6;
+
     protected Node root = new Node();
 
+    // The number of nodes at each depth, the root being at depth 0
+    protected int[] nodesPerDepth = new int[16];
+
+    // The number of nodes for each letter
+    protected final int[] nodesPerLetter = new int[LETTERS_SIZE];
+
+    // The minimum estimated cost, in nanoseconds, of a search for it to be split among threads, 0 or less to never
+    // split them
+    protected long parallelThreshold = 200000;
+
     // The points assigned to letter
     protected byte[] letterPoints = new byte[LETTERS_SIZE];
 
+    // The indices of the letters ordered by their points (descending), which is the order in which the children
+    // are visited when searching for the best words
+    protected int[] letterOrder = orderByPoints(letterPoints);
+
     public Trie() {
 
     }
@@ -56,7 +92,29 @@ public class Trie implements WordFinder {
     public Trie add(String word) {
         LOG.debug("Adding word[" + word +"]");
 
-        root.add(word.toLowerCase(), letterPoints,0);
+        word = word.toLowerCase();
+
+        // Count the nodes the word is going to create at each depth
+        Node node = root;
+        int depth = 0;
+        for (char c : word.toCharArray()) {
+            if (!validLetter(c))
+                continue;
+
+            depth++;
+            if (node != null)
+                node = node.children[index(c)];
+
+            if (node == null) {
+                if (depth == nodesPerDepth.length)
+                    nodesPerDepth = Arrays.copyOf(nodesPerDepth, depth * 2);
+
+                nodesPerDepth[depth]++;
+                nodesPerLetter[index(c)]++;
+            }
+        }
+
+        root.add(word, letterPoints,0);
 
         LOG.debug("Added word[" + word +"]");
 
@@ -70,42 +128,263 @@ public class Trie implements WordFinder {
      */
     @Override
     public List<String> getWords(String letters) {
+        return getWords(letters, 0);
+    }
+
+    /**
+     * Using the provided letters find the best words, up to the limit
+     * @param letters the string with the letters to use to find words
+     * @param limit the maximum number of words to return, 0 or less to return all of them
+     * @return the list of words
+     */
+    @Override
+    public List<String> getWords(String letters, int limit) {
+        return getWords(letters, null, limit, null);
+    }
+
+    @Override
+    public List<String> getWords(String letters, WordFilter filter, int limit) {
+        return getWords(letters, filter, limit, null);
+    }
+
+    /**
+     * Using the provided letters find the best words meeting the conditions of the filter, up to the limit. Every
+     * node visited asks the collector of words whether to stop (see {@link TopWords#shouldStop()}), so once the
+     * deadline expires the search unwinds and the best words found so far are returned
+     * @param letters the string with the letters to use to find words
+     * @param filter the conditions the words must meet, null for none
+     * @param limit the maximum number of words to return, 0 or less to return all of them
+     * @param deadline the deadline of the search, null for none
+     * @return the list of words
+     */
+    @Override
+    public List<String> getWords(String letters, WordFilter filter, int limit, Deadline deadline) {
+        if (filter != null && !filter.isEmpty())
+            return getFilteredWords(letters, filter, limit, deadline);
+
         LOG.debug("Finding all possible words using [" + letters +"]");
 
         if (letters == null || letters.isEmpty())
             return Collections.emptyList();
 
-        LetterIndices letterIndices = new LetterIndices();
-        letterIndices.calculateIndices(letters.toLowerCase());
+        // The letter counts, the buffer for the letters of the words and the collector of found words
+        // are reused by the searches of this thread
+        Scratch scratch = SCRATCH.get();
+        LetterIndices letterIndices = scratch.calculateIndices(letters.toLowerCase());
+        char[] word = scratch.word;
+        TopWords words = scratch.words;
+        words.reset(limit, deadline);
 
-        List<Pair<String, Integer>> words = new ArrayList<>();
+        try {
+            Node node = root;
 
-        Node node = root;
+            if (isParallel(letterIndices.indices, letterIndices.wildcards)) {
+                // Expensive enough to split the search of the first levels of subtrees among the threads of the pool
+                TopWords found = ForkJoinPool.commonPool().invoke(
+                    new SearchTask(node, letterIndices.copy(), new char[word.length], 0, limit, letterOrder, deadline));
+
+                LOG.debug("Found [" + found.size() + "] words in parallel for [" +letters + "]");
+
+                return found.toList();
+            }
+
+            if (limit > 0) {
+                // Only the best words are needed, so try the letters worth the most first and skip the children
+                // whose words can not beat the words found so far
+                node.findBestWords(letterIndices, letterOrder, word, 0, words);
+
+                LOG.debug("Found [" + words.size() + "] best words for [" +letters + "]");
+
+                return words.toList();
+            }
+
+            // The root is not a word, so this delegates to the children whose letter is present to find all words
+            node.findWords(letterIndices, word, 0, words);
+
+            LOG.debug("Found [" + words.size() + "] words for [" +letters + "]");
+
+            // The words sorted (descending) based on their total points
+            return words.toList();
+        } finally {
+            words.reset(0);
+        }
+    }
+
+    /**
+     * Using the provided letters find the best words meeting the conditions of the filter, up to the limit. The
+     * search starts from the node of the prefix (using the letters for it) and only visits the nodes that can lead
+     * to words meeting the conditions (see {@link Node#findFilteredWords})
+     * @param letters the string with the letters to use to find words
+     * @param filter the conditions the words must meet
+     * @param limit the maximum number of words to return, 0 or less to return all of them
+     * @param deadline the deadline of the search, null for none
+     * @return the list of words
+     */
+    protected List<String> getFilteredWords(String letters, WordFilter filter, int limit, Deadline deadline) {
+        LOG.debug("Finding all possible words using [" + letters +"] and " + filter);
+
+        if (letters == null || letters.isEmpty())
+            return Collections.emptyList();
+
+        Scratch scratch = SCRATCH.get();
+        LetterIndices letterIndices = scratch.calculateIndices(letters.toLowerCase());
+        char[] word = scratch.word;
+        TopWords words = scratch.words;
+        words.reset(limit, deadline);
+
+        try {
+            FilterState filterState = new FilterState(filter);
+
+            // Walk down the prefix, each of its letters taking one of the letters (or a wildcard)
+            Node node = root;
+            int depth = 0;
+            for (char c : filter.getPrefix().toCharArray()) {
+                int i = index(c);
+                if (node.children[i] == null || (!letterIndices.isPresent(i) && letterIndices.wildcards == 0))
+                    return Collections.emptyList();
+
+                letterIndices.use(i, node.children[i].totalPoints - node.totalPoints);
+                filterState.use(i);
+
+                word[depth++] = c;
+                node = node.children[i];
+            }
+
+            node.findFilteredWords(letterIndices, filterState, word, depth, words);
+
+            LOG.debug("Found [" + words.size() + "] filtered words for [" +letters + "]");
 
-        // for each letter, find out if there is a child node and if so, delegate to the
-        // node itself to find all words
+            return words.toList();
+        } finally {
+            words.reset(0);
+        }
+    }
+
+    /**
+     * Estimates the cost as the number of nodes the search visits. At each depth, it can not visit more nodes than
+     * there are at that depth nor more than the number of different arrangements of that many letters taken from
+     * the letters. The former is further reduced by the chance of all the letters of a node being among the
+     * letters, the chance for each of them being the share of nodes for those letters
+     * @param letterCount the number of instances of each letter, indexed by the character position in the range 'a'-'z'
+     * @return the estimated cost, in nanoseconds
+     */
+    @Override
+    public double estimateCost(byte[] letterCount) {
+        return estimateCost(letterCount, 0);
+    }
+
+    /**
+     * Estimates the cost like {@link #estimateCost(byte[])}, each wildcard counting as any of the letters
+     * @param letterCount the number of instances of each letter, indexed by the character position in the range 'a'-'z'
+     * @param wildcards the number of wildcards
+     * @return the estimated cost, in nanoseconds
+     */
+    @Override
+    public double estimateCost(byte[] letterCount, int wildcards) {
+        double cost = estimateSerialCost(letterCount, wildcards);
+
+        return isParallel(cost) ? cost / ForkJoinPool.getCommonPoolParallelism() : cost;
+    }
+
+    @Override
+    public boolean supportsWildcards() {
+        return true;
+    }
+
+    /**
+     * Estimates the cost of searching the words with a single thread, see {@link #estimateCost(byte[], int)}
+     * @param letterCount the number of instances of each letter, indexed by the character position in the range 'a'-'z'
+     * @param wildcards the number of wildcards
+     * @return the estimated cost, in nanoseconds
+     */
+    protected double estimateSerialCost(byte[] letterCount, int wildcards) {
+        int total = wildcards;
+        long nodesForLetters = 0;
+        long nodes = 0;
         for (int i = 0; i < LETTERS_SIZE; i++) {
-            // We need to search for words if the element at the index is set
-            if (letterIndices.isPresent(i) && node.children[i] != null) {
-                // The letter is present so it becomes part of the word
-                StringBuilder wordBuilder = new StringBuilder();
-                wordBuilder.append((char) (i + FIRST_LETTER));
+            total += letterCount[i];
+            nodes += nodesPerLetter[i];
+            if (letterCount[i] > 0)
+                nodesForLetters += nodesPerLetter[i];
+        }
+
+        // With wildcards, the nodes of every letter can be visited
+        double share = nodes == 0 ? 0 : wildcards > 0 ? 1 : (double) nodesForLetters / nodes;
+
+        int maxDepth = Math.min(total, nodesPerDepth.length - 1);
+
+        // The number of arrangements of d letters is d! times the coefficient of x^d in the product, for every
+        // letter, of the sums of x^j / j! for j up to its count, and, for the wildcards, of the sum of (26x)^j / j!
+        // for j up to their count
+        double[] coefficients = new double[maxDepth + 1];
+        coefficients[0] = 1;
+        for (byte count : letterCount)
+            multiply(coefficients, count, 1);
+
+        multiply(coefficients, wildcards, LETTERS_SIZE);
 
-                // Because we found an entry for this letter, we need to decrement it
-                letterIndices.decrementForIndex(i);
+        double visited = 0;
+        double factorial = 1;
+        double chance = 1;
+        for (int d = 1; d <= maxDepth && nodesPerDepth[d] > 0; d++) {
+            factorial *= d;
+            chance *= share;
+            visited += Math.min(factorial * coefficients[d], nodesPerDepth[d] * chance);
+        }
 
-                node.children[i].findWords(letterIndices, wordBuilder, words);
+        return visited * NANOS_PER_NODE;
+    }
 
-                letterIndices.incrementForIndex(i);
+    /**
+     * Multiplies, in place, the polynomial with the coefficients by the sum of (ax)^j / j! for j from 0 up to count
+     * @param coefficients the coefficients of the polynomial, the coefficient of x^d at index d
+     * @param count the highest power of the sum
+     * @param a the factor of x in the sum
+     */
+    private static void multiply(double[] coefficients, int count, double a) {
+        for (int d = coefficients.length - 1; d > 0; d--) {
+            double term = 1;
+            for (int j = 1; j <= count && j <= d; j++) {
+                term *= a / j;
+                coefficients[d] += coefficients[d - j] * term;
             }
         }
+    }
+
+    /**
+     * Indicates whether the search for the letters is split among threads, which requires its estimated cost to be
+     * at least the threshold and a pool with more than one thread
+     * @param letterCount the number of instances of each letter, indexed by the character position in the range 'a'-'z'
+     * @param wildcards the number of wildcards
+     * @return true if the search is split among threads
+     */
+    protected boolean isParallel(byte[] letterCount, int wildcards) {
+        // The cost is only estimated if it is needed
+        return parallelThreshold > 0 && isParallel(estimateSerialCost(letterCount, wildcards));
+    }
 
-        LOG.debug("Found [" + words.size() + "] words for [" +letters + "]");
+    private boolean isParallel(double cost) {
+        return parallelThreshold > 0 && ForkJoinPool.getCommonPoolParallelism() > 1 && cost >= parallelThreshold;
+    }
 
-        // We need to sort (descending) the words based on their total points
-        words.sort((r1, r2) -> Integer.compare(r2.getSecond(), r1.getSecond()));
+    /**
+     * Gets the minimum estimated cost (see {@link #estimateCost(byte[])}) of a search for it to be split among the
+     * threads of the common {@link ForkJoinPool}. Defaults to 200000 (0.2 ms)
+     * @return the minimum estimated cost in nanoseconds, 0 or less if searches always use the calling thread
+     */
+    public long getParallelThreshold() {
+        return parallelThreshold;
+    }
 
-        return words.stream().map(Pair::getFirst).collect(Collectors.toList());
+    /**
+     * Sets the minimum estimated cost (see {@link #estimateCost(byte[])}) of a search for it to be split among the
+     * threads of the common {@link ForkJoinPool}
+     * @param parallelThreshold the minimum estimated cost in nanoseconds, 0 or less if searches always use the
+     *                          calling thread
+     */
+    @Value("${trie.parallel.threshold:200000}")
+    public void setParallelThreshold(long parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
     }
 
     /**
@@ -113,7 +392,22 @@ public class Trie implements WordFinder {
      */
     public void reset() {
         root = new Node();
+        nodesPerDepth = new int[16];
+        Arrays.fill(nodesPerLetter, 0);
         letterPoints = new byte[LETTERS_SIZE];
+        letterOrder = orderByPoints(letterPoints);
+    }
+
+    /**
+     * Returns the indices of the letters ordered by their points in descending mode. Letters with the same points
+     * are ordered alphabetically
+     * @param letterPoints the points for each letter
+     * @return the indices of the letters
+     */
+    protected static int[] orderByPoints(byte[] letterPoints) {
+        return IntStream.range(0, LETTERS_SIZE).boxed()
+                        .sorted((i1, i2) -> Integer.compare(letterPoints[i2], letterPoints[i1]))
+                        .mapToInt(Integer::intValue).toArray();
     }
 
     /**
@@ -132,6 +426,12 @@ public class Trie implements WordFinder {
         // Each element represents a letter beginning with 'a' at index 0 and finishing with 'z' at index 25
         protected final Node[] children = new Node[LETTERS_SIZE];
 
+        // The mask of the children that are set, the bit i being set if there is a child at index i
+        protected int childMask = 0;
+
+        // The highest total points of the words from this node forward (including this node), 0 if none
+        protected int maxPoints = 0;
+
         public Node() {
             nodeCounter.incrementAndGet();
         }
@@ -151,6 +451,14 @@ public class Trie implements WordFinder {
 
             int wordLength = word.length();
 
+            // The total points of the whole word, which may be the highest of every node of its chain
+            int wordPoints = totalPoints;
+            for (int i = 0; i < wordLength; i++) {
+                char c = word.charAt(i);
+                if (validLetter(c))
+                    wordPoints += letterPoints[index(c)];
+            }
+
             // Each character of the word becomes a new node whose index corresponds to the character index (0-based)
             // and keeps track of how many points is worth the word at that point
             for (int i = 0; i < wordLength; i++) {
@@ -164,14 +472,18 @@ public class Trie implements WordFinder {
 
                 if (node.children[index] == null) {
                     node.children[index] = new Node();
+                    node.childMask |= 1 << index;
                 }
 
                 totalPoints += letterPoints[index(c)];
                 node.children[index].totalPoints = totalPoints;
 
+                node.maxPoints = Math.max(node.maxPoints, wordPoints);
+
                 node = node.children[index];
             }
 
+            node.maxPoints = Math.max(node.maxPoints, wordPoints);
             node.isWord = true;
         }
 
@@ -180,34 +492,144 @@ public class Trie implements WordFinder {
          * Words found are added to the results parameters
          *
          * @param letterIndices The letters to look for
-         * @param wordBuilder   the word built so far
-         * @param words         the list to which to add the found words
+         * @param word          the buffer with the letters of the word built so far, indexed by depth. It must be
+         *                      able to hold as many letters as there are in letterIndices plus the depth
+         * @param depth         the number of letters of the word built so far
+         * @param words         the collector to which to add the found words
          */
-        public void findWords(LetterIndices letterIndices, StringBuilder wordBuilder, List<Pair<String, Integer>> words) {
-            // if at this node is a word, then add it to the results.
-            if (isWord) {
-                words.add(new Pair<>(wordBuilder.toString(), totalPoints));
+        public void findWords(LetterIndices letterIndices, char[] word, int depth, TopWords words) {
+            // Once the deadline expires, the rest of the nodes are not visited
+            if (words.shouldStop())
+                return;
+
+            // The letters taken by wildcards score no points
+            int score = totalPoints - letterIndices.blankPoints;
+
+            // if at this node is a word that would be kept, then add it to the results. This is the only place
+            // where objects are created
+            if (isWord && words.accepts(score)) {
+                words.add(new String(word, 0, depth), score);
             }
 
             // if we got here but there are no more letters to search return
             if (letterIndices.isEmpty())
                 return;
 
-            for (int i = 0; i < LETTERS_SIZE; i++) {
-                if (letterIndices.isPresent(i) && children[i] != null) {
-                    // add current character
-                    StringBuilder newWordBuilder = new StringBuilder(wordBuilder).append((char) (i + FIRST_LETTER));
+            // Only visit the children whose letter is present, or all of them if there are wildcards left
+            for (int mask = letterIndices.getReachableMask(childMask); mask != 0; mask &= mask - 1) {
+                int i = Integer.numberOfTrailingZeros(mask);
 
-                    // Because we are in this index, we need one less instance of this letter when
-                    // searching the children
-                    letterIndices.decrementForIndex(i);
+                // add current character, overwriting whatever a previous sibling left at this depth
+                word[depth] = (char) (i + FIRST_LETTER);
 
-                    // Recursively search reaming letters in the children
-                    children[i].findWords(letterIndices, newWordBuilder, words);
+                // Because we are in this index, we need one less instance of this letter (or a wildcard if the
+                // letter is not present) when searching the children
+                int points = children[i].totalPoints - totalPoints;
+                boolean wildcard = letterIndices.use(i, points);
 
-                    // Increment the instance of the letter
-                    letterIndices.incrementForIndex(i);
-                }
+                // Recursively search reaming letters in the children
+                children[i].findWords(letterIndices, word, depth + 1, words);
+
+                // Increment the instance of the letter
+                letterIndices.release(i, points, wildcard);
+            }
+        }
+
+        /**
+         * Find the best words that are matched from this point of the node forward according to the supplied
+         * letters. Like {@link #findWords} but the children are visited in the order of their letter in
+         * letterOrder and the children whose highest total points would not be kept by words are skipped, so
+         * words must have a limit for this to skip anything
+         *
+         * @param letterIndices The letters to look for
+         * @param letterOrder   the indices of the letters in the order in which to visit the children
+         * @param word          the buffer with the letters of the word built so far, indexed by depth
+         * @param depth         the number of letters of the word built so far
+         * @param words         the collector to which to add the found words
+         */
+        public void findBestWords(LetterIndices letterIndices, int[] letterOrder, char[] word, int depth,
+                                  TopWords words) {
+            if (words.shouldStop())
+                return;
+
+            int score = totalPoints - letterIndices.blankPoints;
+            if (isWord && words.accepts(score)) {
+                words.add(new String(word, 0, depth), score);
+            }
+
+            if (letterIndices.isEmpty())
+                return;
+
+            int present = letterIndices.getReachableMask(childMask);
+            for (int k = 0; k < LETTERS_SIZE && present != 0; k++) {
+                int i = letterOrder[k];
+                if ((present & (1 << i)) == 0)
+                    continue;
+
+                present &= ~(1 << i);
+
+                // The words kept so far get better as the search goes on, so check every child. The points of the
+                // letters taken by wildcards, including this one if it is not present, can not be scored
+                int points = children[i].totalPoints - totalPoints;
+                int blankPoints = letterIndices.blankPoints + (letterIndices.isPresent(i) ? 0 : points);
+                if (!words.accepts(children[i].maxPoints - blankPoints))
+                    continue;
+
+                word[depth] = (char) (i + FIRST_LETTER);
+
+                boolean wildcard = letterIndices.use(i, points);
+
+                children[i].findBestWords(letterIndices, letterOrder, word, depth + 1, words);
+
+                letterIndices.release(i, points, wildcard);
+            }
+        }
+
+        /**
+         * Find the words that are matched from this point of the node forward according to the supplied letters
+         * and meet the conditions of a filter. Like {@link #findBestWords} but, to avoid visiting nodes that can not
+         * lead to words meeting the conditions, the search does not go deeper than the maximum length and stops
+         * when the letters left are not enough for the minimum length or for the letters still missing
+         *
+         * @param letterIndices The letters to look for
+         * @param filterState   the conditions and the letters still missing
+         * @param word          the buffer with the letters of the word built so far, indexed by depth
+         * @param depth         the number of letters of the word built so far
+         * @param words         the collector to which to add the found words
+         */
+        public void findFilteredWords(LetterIndices letterIndices, FilterState filterState, char[] word, int depth,
+                                      TopWords words) {
+            if (words.shouldStop())
+                return;
+
+            if (depth + letterIndices.total < filterState.minLength || filterState.missing > letterIndices.total)
+                return;
+
+            int score = totalPoints - letterIndices.blankPoints;
+            if (isWord && filterState.matches(word, depth) && words.accepts(score)) {
+                words.add(new String(word, 0, depth), score);
+            }
+
+            if (letterIndices.isEmpty() || depth >= filterState.maxLength)
+                return;
+
+            for (int mask = letterIndices.getReachableMask(childMask); mask != 0; mask &= mask - 1) {
+                int i = Integer.numberOfTrailingZeros(mask);
+
+                int points = children[i].totalPoints - totalPoints;
+                int blankPoints = letterIndices.blankPoints + (letterIndices.isPresent(i) ? 0 : points);
+                if (!words.accepts(children[i].maxPoints - blankPoints))
+                    continue;
+
+                word[depth] = (char) (i + FIRST_LETTER);
+
+                boolean wildcard = letterIndices.use(i, points);
+                filterState.use(i);
+
+                children[i].findFilteredWords(letterIndices, filterState, word, depth + 1, words);
+
+                filterState.release(i);
+                letterIndices.release(i, points, wildcard);
             }
         }
     }
@@ -220,14 +642,198 @@ public class Trie implements WordFinder {
     @Resource(name = "letterPoints")
     public void setLetterPoints(byte[] letterPoints) {
         this.letterPoints = letterPoints;
+        this.letterOrder = orderByPoints(letterPoints);
+    }
+
+    /**
+     * The state of a search with a {@link WordFilter}: its length bounds and suffix, and the letters the word built
+     * so far still lacks to have the letters the filter requires
+     */
+    protected static class FilterState {
+        protected final int minLength;
+        protected final int maxLength;
+        protected final char[] suffix;
+
+        // The letters required, the instances of each letter in the word built so far and the number of letters
+        // still missing
+        protected final byte[] required;
+        protected final byte[] count = new byte[LETTERS_SIZE];
+        protected int missing = 0;
+
+        public FilterState(WordFilter filter) {
+            minLength = filter.getRequiredLength();
+            maxLength = filter.getMaxLength();
+            suffix = filter.getSuffix().toCharArray();
+            required = filter.getLetterCount();
+
+            for (byte letters : required)
+                missing += letters;
+        }
+
+        /**
+         * Adds the letter at the index to the word built so far
+         * @param index the index of the letter
+         */
+        public void use(int index) {
+            if (++count[index] <= required[index])
+                missing--;
+        }
+
+        /**
+         * Reverts {@link #use(int)}
+         * @param index the index of the letter
+         */
+        public void release(int index) {
+            if (count[index]-- <= required[index])
+                missing++;
+        }
+
+        /**
+         * Indicates whether the word built so far meets the conditions
+         * @param word the buffer with the letters of the word built so far
+         * @param depth the number of letters of the word built so far
+         * @return true if the word meets the conditions
+         */
+        public boolean matches(char[] word, int depth) {
+            if (depth < minLength || depth > maxLength || missing > 0)
+                return false;
+
+            for (int i = 1; i <= suffix.length; i++) {
+                if (word[depth - i] != suffix[suffix.length - i])
+                    return false;
+            }
+
+            return true;
+        }
     }
 
     /**
-     * Keeps track of the quantities for each of the letters
+     * Searches the words from a node forward. Up to {@link #SPLIT_DEPTH}, each child of the node is searched by its
+     * own task, with its own copy of the letters and of the buffer for the letters of the words, so the subtrees of
+     * the first levels are searched in parallel (and idle threads steal the tasks of busy ones when subtrees are
+     * skewed). The words found by the tasks are merged in the order of their letter, so, without a limit, the result
+     * is the same as searching with a single thread. With a limit, each task keeps its own best words.
+     */
+    protected static class SearchTask extends RecursiveTask<TopWords> {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The depth of the nodes searched by a single task
+         */
+        public static final int SPLIT_DEPTH = 2;
+
+        private final Node node;
+        private final LetterIndices letterIndices;
+        private final char[] word;
+        private final int depth;
+        private final int limit;
+        private final int[] letterOrder;
+        private final Deadline deadline;
+
+        public SearchTask(Node node, LetterIndices letterIndices, char[] word, int depth, int limit,
+                          int[] letterOrder) {
+            this(node, letterIndices, word, depth, limit, letterOrder, null);
+        }
+
+        /**
+         * Creates a task to search from the node forward
+         * @param node          the node
+         * @param letterIndices the letters to look for, owned by the task
+         * @param word          the buffer with the letters of the word built so far, owned by the task
+         * @param depth         the number of letters of the word built so far
+         * @param limit         the maximum number of words to keep, 0 or less to keep all of them
+         * @param letterOrder   the order in which to visit the children when there is a limit
+         * @param deadline      the deadline of the search, null for none
+         */
+        public SearchTask(Node node, LetterIndices letterIndices, char[] word, int depth, int limit,
+                          int[] letterOrder, Deadline deadline) {
+            this.node = node;
+            this.letterIndices = letterIndices;
+            this.word = word;
+            this.depth = depth;
+            this.limit = limit;
+            this.letterOrder = letterOrder;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected TopWords compute() {
+            TopWords words = new TopWords(limit, deadline);
+            if (words.shouldStop())
+                return words;
+
+            if (depth == SPLIT_DEPTH || letterIndices.isEmpty()) {
+                if (limit > 0)
+                    node.findBestWords(letterIndices, letterOrder, word, depth, words);
+                else
+                    node.findWords(letterIndices, word, depth, words);
+
+                return words;
+            }
+
+            // The root is not a word
+            if (node.isWord && depth > 0)
+                words.add(new String(word, 0, depth), node.totalPoints - letterIndices.blankPoints);
+
+            List<SearchTask> tasks = new ArrayList<>();
+            for (int mask = letterIndices.getReachableMask(node.childMask); mask != 0; mask &= mask - 1) {
+                int i = Integer.numberOfTrailingZeros(mask);
+
+                LetterIndices childIndices = letterIndices.copy();
+                childIndices.use(i, node.children[i].totalPoints - node.totalPoints);
+
+                char[] childWord = word.clone();
+                childWord[depth] = (char) (i + FIRST_LETTER);
+
+                tasks.add(new SearchTask(node.children[i], childIndices, childWord, depth + 1, limit, letterOrder,
+                                         deadline));
+            }
+
+            invokeAll(tasks);
+
+            for (SearchTask task : tasks)
+                words.addAll(task.join());
+
+            return words;
+        }
+    }
+
+    /**
+     * The state used while searching, which is reused by all the searches made by a thread
+     */
+    protected static class Scratch {
+        protected final LetterIndices letterIndices = new LetterIndices();
+        protected final TopWords words = new TopWords(0);
+        protected char[] word = new char[16];
+
+        /**
+         * Resets the letter counts and calculates them for the letters, making sure the buffer for the letters of
+         * the words can hold all of them
+         * @param letters the string with letters
+         * @return the letter counts
+         */
+        public LetterIndices calculateIndices(String letters) {
+            letterIndices.reset();
+            letterIndices.calculateIndices(letters);
+
+            if (word.length < letterIndices.total)
+                word = new char[letterIndices.total];
+
+            return letterIndices;
+        }
+    }
+
+    /**
+     * Keeps track of the quantities for each of the letters, as well as a mask of the letters whose quantity is
+     * greater than 0 (the bit i being set if the quantity of the letter at index i is greater than 0), the number of
+     * wildcards and the points of the letters the wildcards in use stand for
      */
     protected static class LetterIndices {
         protected final byte[] indices = new byte[LETTERS_SIZE];
         protected int total = 0;
+        protected int mask = 0;
+        protected int wildcards = 0;
+        protected int blankPoints = 0;
 
         /**
          * Calculates the quantity of each letter in the string and stores them in the internal array
@@ -235,21 +841,55 @@ public class Trie implements WordFinder {
          */
         public void calculateIndices(String letters) {
             for (char c : letters.toCharArray()) {
+                if (isWildcard(c)) {
+                    wildcards++;
+                    total++;
+                    continue;
+                }
+
                 // Ignore any character that it is not within the range of letters
                 if (!validLetter(c))
                     continue;
 
                 indices[index(c)]++;
+                mask |= 1 << index(c);
                 total++;
             }
         }
 
+        /**
+         * Returns a copy of the quantities of the letters
+         * @return the copy
+         */
+        public LetterIndices copy() {
+            LetterIndices copy = new LetterIndices();
+            System.arraycopy(indices, 0, copy.indices, 0, LETTERS_SIZE);
+            copy.total = total;
+            copy.mask = mask;
+            copy.wildcards = wildcards;
+            copy.blankPoints = blankPoints;
+
+            return copy;
+        }
+
+        /**
+         * Sets the quantity of all the letters to 0
+         */
+        public void reset() {
+            Arrays.fill(indices, (byte) 0);
+            total = 0;
+            mask = 0;
+            wildcards = 0;
+            blankPoints = 0;
+        }
+
         /**
          * Increases the quantity of the letter at the index
          * @param index the index
          */
         public void incrementForIndex(int index) {
             indices[index]++;
+            mask |= 1 << index;
             total++;
         }
 
@@ -257,8 +897,55 @@ public class Trie implements WordFinder {
          * Decreases the quantity of the letter at the index
          */
         public void decrementForIndex(int index) {
-            indices[index]--;
+            if (--indices[index] == 0)
+                mask &= ~(1 << index);
+            total--;
+        }
+
+        /**
+         * Decreases the quantity of the letter at the index if it is present, otherwise uses a wildcard for it.
+         * There must be a wildcard left if the letter is not present
+         * @param index the index
+         * @param points the points of the letter, which are not scored if a wildcard is used
+         * @return true if a wildcard was used
+         */
+        public boolean use(int index, int points) {
+            if (indices[index] > 0) {
+                decrementForIndex(index);
+                return false;
+            }
+
+            wildcards--;
             total--;
+            blankPoints += points;
+            return true;
+        }
+
+        /**
+         * Reverts {@link #use(int, int)}
+         * @param index the index
+         * @param points the points of the letter
+         * @param wildcard whether a wildcard was used
+         */
+        public void release(int index, int points, boolean wildcard) {
+            if (!wildcard) {
+                incrementForIndex(index);
+                return;
+            }
+
+            wildcards++;
+            total++;
+            blankPoints -= points;
+        }
+
+        /**
+         * Returns the mask of the children of a node that can be visited with the letters, which are all of them
+         * if there are wildcards left
+         * @param childMask the mask of the children of the node
+         * @return the mask of the children that can be visited
+         */
+        public int getReachableMask(int childMask) {
+            return wildcards > 0 ? childMask : childMask & mask;
         }
 
         /**
@@ -270,6 +957,14 @@ public class Trie implements WordFinder {
             return indices[index] > 0;
         }
 
+        /**
+         * Returns the mask of the letters whose quantity is greater than 0
+         * @return the mask, the bit i being set if the quantity of the letter at index i is greater than 0
+         */
+        public int getMask() {
+            return mask;
+        }
+
         /**
          * Indicates whether all elements have quantity of 0
          * @return True if all elements have quantity of 0
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.chibchasoft.wordfinder.util.Util.LETTERS_SIZE;
+import static com.chibchasoft.wordfinder.util.Util.index;
+import static com.chibchasoft.wordfinder.util.Util.normalize;
+
+/**
+ * The conditions the words found must meet besides being made using the letters: a minimum and maximum length,
+ * letters they must contain, a prefix and a suffix. Like when searching, words are compared using the lowercase for
+ * their characters and characters not in the range 'a'-'z' are ignored, both in the words and in the conditions.
+ *
+ * WordFinders should enforce the conditions while searching, so words not meeting them are never built, but they
+ * can always be checked once the words are found using {@link #matches(String)}.
+ */
+public class WordFilter {
+    private int minLength = 0;
+    private int maxLength = Integer.MAX_VALUE;
+    private String contains = "";
+    private String prefix = "";
+    private String suffix = "";
+
+    // The minimum number of instances of each letter of the words meeting the conditions
+    private final byte[] letterCount = new byte[LETTERS_SIZE];
+
+    public WordFilter() {
+
+    }
+
+    /**
+     * Sets the minimum number of letters of the words
+     * @param minLength the minimum length, 0 for no minimum
+     * @return itself so it can fluent
+     */
+    public WordFilter setMinLength(int minLength) {
+        this.minLength = Math.max(0, minLength);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of letters of the words
+     * @param maxLength the maximum length, {@link Integer#MAX_VALUE} for no maximum
+     * @return itself so it can fluent
+     */
+    public WordFilter setMaxLength(int maxLength) {
+        this.maxLength = Math.max(0, maxLength);
+        return this;
+    }
+
+    /**
+     * Sets the letters the words must contain, as many times as they are repeated
+     * @param contains the letters, empty for none
+     * @return itself so it can fluent
+     */
+    public WordFilter setContains(String contains) {
+        this.contains = normalize(contains);
+        return updateLetterCount();
+    }
+
+    /**
+     * Sets the letters the words must start with
+     * @param prefix the prefix, empty for none
+     * @return itself so it can fluent
+     */
+    public WordFilter setPrefix(String prefix) {
+        this.prefix = normalize(prefix);
+        return updateLetterCount();
+    }
+
+    /**
+     * Sets the letters the words must end with
+     * @param suffix the suffix, empty for none
+     * @return itself so it can fluent
+     */
+    public WordFilter setSuffix(String suffix) {
+        this.suffix = normalize(suffix);
+        return updateLetterCount();
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public String getContains() {
+        return contains;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * Returns the minimum number of instances of each letter of the words meeting the conditions, which is the
+     * highest of the instances in the letters to contain, in the prefix and in the suffix (prefix and suffix may
+     * share letters in short words)
+     * @return the number of instances of each letter, indexed by the character position in the range 'a'-'z'
+     */
+    public byte[] getLetterCount() {
+        return letterCount;
+    }
+
+    /**
+     * Returns the minimum length of the words meeting the conditions, taking into account the letters they must
+     * contain, the prefix and the suffix
+     * @return the minimum length
+     */
+    public int getRequiredLength() {
+        int length = Math.max(minLength, Math.max(prefix.length(), suffix.length()));
+
+        int letters = 0;
+        for (byte count : letterCount)
+            letters += count;
+
+        return Math.max(length, letters);
+    }
+
+    /**
+     * Indicates whether there are no conditions, so all the words meet them
+     * @return true if there are no conditions
+     */
+    public boolean isEmpty() {
+        return minLength == 0 && maxLength == Integer.MAX_VALUE && contains.isEmpty() && prefix.isEmpty() &&
+               suffix.isEmpty();
+    }
+
+    /**
+     * Returns a string with all the conditions, the same for filters with the same conditions whatever the order
+     * of the letters to contain, so it can be used as (part of) a key
+     * @return the conditions, empty if there are none
+     */
+    public String getKey() {
+        if (isEmpty())
+            return "";
+
+        char[] sorted = contains.toCharArray();
+        Arrays.sort(sorted);
+
+        return minLength + "|" + maxLength + "|" + new String(sorted) + "|" + prefix + "|" + suffix;
+    }
+
+    /**
+     * Indicates whether the word meets all the conditions
+     * @param word the word
+     * @return true if the word meets the conditions
+     */
+    public boolean matches(String word) {
+        if (word == null)
+            return false;
+
+        String letters = normalize(word);
+        if (letters.length() < minLength || letters.length() > maxLength)
+            return false;
+
+        if (!letters.startsWith(prefix) || !letters.endsWith(suffix))
+            return false;
+
+        byte[] wordCount = new byte[LETTERS_SIZE];
+        for (char c : letters.toCharArray())
+            wordCount[index(c)]++;
+
+        for (char c : contains.toCharArray()) {
+            if (--wordCount[index(c)] < 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the words meeting all the conditions, in the same order, up to the limit
+     * @param words the words
+     * @param limit the maximum number of words to return, 0 or less to return all of them
+     * @return the words meeting the conditions
+     */
+    public List<String> filter(List<String> words, int limit) {
+        List<String> filtered = new ArrayList<>();
+        for (String word : words) {
+            if (matches(word)) {
+                filtered.add(word);
+                if (filtered.size() == limit)
+                    break;
+            }
+        }
+
+        return filtered;
+    }
+
+    private WordFilter updateLetterCount() {
+        byte[] containsCount = count(contains);
+        byte[] prefixCount = count(prefix);
+        byte[] suffixCount = count(suffix);
+
+        for (int i = 0; i < LETTERS_SIZE; i++)
+            letterCount[i] = (byte) Math.max(containsCount[i], Math.max(prefixCount[i], suffixCount[i]));
+
+        return this;
+    }
+
+    private static byte[] count(String letters) {
+        byte[] count = new byte[LETTERS_SIZE];
+        for (char c : letters.toCharArray())
+            count[index(c)]++;
+
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "WordFilter{minLength=" + minLength + ", maxLength=" + maxLength + ", contains=" + contains +
+               ", prefix=" + prefix + ", suffix=" + suffix + "}";
+    }
+}
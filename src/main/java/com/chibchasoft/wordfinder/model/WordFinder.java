@@ -1,6 +1,11 @@
 package com.chibchasoft.wordfinder.model;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a way to find words using all possible combination of letters
@@ -23,4 +28,98 @@ public interface WordFinder {
      * @return the list of words ordered in descending mode by their score
      */
     List<String> getWords(String letters);
+
+    /**
+     * Returns the best words (those with the highest score) that match all possible combinations of the letters,
+     * up to the limit. Implementations should avoid finding and ordering all the words when a limit is set. By
+     * default, the first words of {@link #getWords(String)} are returned.
+     * @param letters The letters
+     * @param limit The maximum number of words to return, 0 or less to return all of them
+     * @return the list of words ordered in descending mode by their score
+     */
+    default List<String> getWords(String letters, int limit) {
+        List<String> words = getWords(letters);
+        return limit <= 0 || words.size() <= limit ? words : new ArrayList<>(words.subList(0, limit));
+    }
+
+    /**
+     * Returns the best words (those with the highest score) that match all possible combinations of the letters and
+     * meet the conditions of the filter, up to the limit. Implementations should enforce the conditions while
+     * searching, so words not meeting them are never found. By default, the words of {@link #getWords(String)} not
+     * meeting the conditions are discarded.
+     * @param letters The letters
+     * @param filter The conditions the words must meet, null for none
+     * @param limit The maximum number of words to return, 0 or less to return all of them
+     * @return the list of words ordered in descending mode by their score
+     */
+    default List<String> getWords(String letters, WordFilter filter, int limit) {
+        if (filter == null || filter.isEmpty())
+            return getWords(letters, limit);
+
+        return filter.filter(getWords(letters), limit);
+    }
+
+    /**
+     * Returns the best words (those with the highest score) that match all possible combinations of the letters and
+     * meet the conditions of the filter, up to the limit, stopping the search once the deadline expires or is
+     * cancelled. Implementations should check the deadline while searching (see {@link Deadline#shouldStop()}) and,
+     * if it stops the search, return the words found until then, marking the deadline as truncated. By default, the
+     * deadline is ignored and the words of {@link #getWords(String, WordFilter, int)} are returned, so every WordFinder
+     * that can be given a deadline (e.g. one of the engines of a {@link QueryPlanner}) should override it.
+     * @param letters The letters
+     * @param filter The conditions the words must meet, null for none
+     * @param limit The maximum number of words to return, 0 or less to return all of them
+     * @param deadline The deadline of the search, null for none
+     * @return the list of words ordered in descending mode by their score
+     */
+    default List<String> getWords(String letters, WordFilter filter, int limit, Deadline deadline) {
+        return getWords(letters, filter, limit);
+    }
+
+    /**
+     * Indicates whether the letters can include wildcards ('?' or '_'), each one standing for any letter and
+     * scoring no points. WordFinders not supporting them ignore the wildcards like any other character not in the
+     * 'a'-'z' range
+     * @return true if wildcards are supported, false by default
+     */
+    default boolean supportsWildcards() {
+        return false;
+    }
+
+    /**
+     * Returns, for each of several groups of letters (racks), the words that match all possible combinations of
+     * its letters. Identical racks are only searched once. Implementations should share the work among the racks
+     * where possible. By default, the racks are searched with {@link #getWordsBatch(Collection, int, Deadline)}
+     * without a deadline.
+     * @param racks The groups of letters, null elements are ignored
+     * @param limit The maximum number of words to return for each rack, 0 or less to return all of them
+     * @return the list of words of each rack (ordered in descending mode by their score), in the order of the racks
+     */
+    default Map<String, List<String>> getWordsBatch(Collection<String> racks, int limit) {
+        return getWordsBatch(racks, limit, null);
+    }
+
+    /**
+     * Returns, for each of several groups of letters (racks), the words that match all possible combinations of
+     * its letters, stopping the search once the deadline expires or is cancelled, like
+     * {@link #getWords(String, WordFilter, int, Deadline)}. If the deadline stops the search, the deadline is marked
+     * as truncated and the words of the racks may be only some of them (none for the racks not searched yet). By
+     * default, each rack is searched with {@link #getWords(String, WordFilter, int, Deadline)}, in order.
+     * @param racks The groups of letters, null elements are ignored
+     * @param limit The maximum number of words to return for each rack, 0 or less to return all of them
+     * @param deadline The deadline of the search, null for none
+     * @return the list of words of each rack (ordered in descending mode by their score), in the order of the racks
+     */
+    default Map<String, List<String>> getWordsBatch(Collection<String> racks, int limit, Deadline deadline) {
+        Map<String, List<String>> words = new LinkedHashMap<>();
+        for (String letters : racks) {
+            if (letters == null || words.containsKey(letters))
+                continue;
+
+            boolean stopped = deadline != null && deadline.isTruncated();
+            words.put(letters, stopped ? Collections.emptyList() : getWords(letters, null, limit, deadline));
+        }
+
+        return words;
+    }
 }
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.server.vertx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the number of requests to find words in flight (admitted and not answered yet), shared by all the
+ * {@link RestVerticle} instances, so a burst of expensive requests is shed instead of queuing without bound in front
+ * of the {@link FindWordsVerticle} instances, making every request slower.
+ *
+ * The limit adapts to the latency observed with AIMD (additive increase, multiplicative decrease), like the TCP
+ * congestion window. Each request answered within {@link #getLatencyThreshold()} while the limit is in use (at least
+ * half of it in flight) raises the limit by one divided by the limit, so it grows by about one per round of requests.
+ * A slower or failed request multiplies the limit by {@link #getBackoffRatio()}, at most once per round: requests
+ * admitted before the last decrease do not decrease it again. The limit stays between {@link #getMinLimit()} and
+ * {@link #getMaxLimit()}.
+ *
+ * The number of requests admitted and rejected, and the number in flight (the depth of the queue in front of the
+ * searches) are kept so the limits can be tuned for the traffic.
+ */
+@Component("admissionLimiter")
+public class AdmissionLimiter {
+    private static final Logger LOG = LoggerFactory.getLogger(AdmissionLimiter.class);
+
+    private boolean enabled = true;
+
+    private int minLimit = 1;
+    private int maxLimit = 1024;
+    private double backoffRatio = 0.9;
+    private long latencyThreshold = 250;
+    private int retryAfter = 1;
+
+    private double limit = 64;
+    private int inFlight = 0;
+    private int maxInFlight = 0;
+
+    // When the limit was last decreased, so requests admitted before do not decrease it again
+    private long lastDecrease = System.nanoTime();
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public AdmissionLimiter() {
+
+    }
+
+    /**
+     * Admits a request if there are less requests in flight than the limit (or the limiter is not enabled). Every
+     * request admitted must be released once answered
+     * @return true if the request was admitted, false if it was rejected
+     */
+    public synchronized boolean tryAcquire() {
+        if (enabled && inFlight >= (int) limit) {
+            rejected.increment();
+            return false;
+        }
+
+        inFlight++;
+        maxInFlight = Math.max(maxInFlight, inFlight);
+        admitted.increment();
+
+        return true;
+    }
+
+    /**
+     * Releases a request admitted, adapting the limit to its latency
+     * @param start the time (see {@link System#nanoTime()}) the request was admitted
+     * @param failed whether the request failed (e.g. timed out), which decreases the limit like a slow request
+     */
+    public synchronized void release(long start, boolean failed) {
+        inFlight--;
+
+        long now = System.nanoTime();
+        if (failed || now - start > TimeUnit.MILLISECONDS.toNanos(latencyThreshold)) {
+            if (start - lastDecrease > 0) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                lastDecrease = now;
+
+                LOG.debug("Limit decreased to [" + (int) limit + "]");
+            }
+        } else if (inFlight + 1 >= limit / 2) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    /**
+     * Releases a request admitted without adapting the limit (e.g. a streamed request, whose latency depends on the
+     * client reading the words)
+     */
+    public synchronized void release() {
+        inFlight--;
+    }
+
+    /**
+     * Returns the current limit of requests in flight
+     * @return the limit
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Sets the initial limit of requests in flight, which adapts from then on
+     * @param limit the limit
+     */
+    @Value("${admission.initial.limit:64}")
+    public synchronized void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the number of requests in flight, admitted and not released yet
+     * @return the number of requests in flight
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Returns the largest number of requests in flight at once
+     * @return the largest number of requests in flight
+     */
+    public synchronized int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Returns the number of requests admitted
+     * @return the number of requests admitted
+     */
+    public long getAdmitted() {
+        return admitted.sum();
+    }
+
+    /**
+     * Returns the number of requests rejected because the limit was reached
+     * @return the number of requests rejected
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Indicates whether requests are rejected once the limit is reached. Defaults to true
+     * @return true if requests are rejected
+     */
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets whether requests are rejected once the limit is reached. If not, requests in flight are still counted
+     * @param enabled true to reject requests
+     */
+    @Value("${admission.enabled:true}")
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Gets the lowest the limit can go. Defaults to 1
+     * @return the lowest limit
+     */
+    public synchronized int getMinLimit() {
+        return minLimit;
+    }
+
+    /**
+     * Sets the lowest the limit can go
+     * @param minLimit the lowest limit
+     */
+    @Value("${admission.min.limit:1}")
+    public synchronized void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    /**
+     * Gets the highest the limit can go. Defaults to 1024
+     * @return the highest limit
+     */
+    public synchronized int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * Sets the highest the limit can go
+     * @param maxLimit the highest limit
+     */
+    @Value("${admission.max.limit:1024}")
+    public synchronized void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Gets the ratio the limit is multiplied by when a request is slow or fails. Defaults to 0.9
+     * @return the ratio
+     */
+    public synchronized double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    /**
+     * Sets the ratio the limit is multiplied by when a request is slow or fails
+     * @param backoffRatio the ratio, between 0 and 1
+     */
+    @Value("${admission.backoff.ratio:0.9}")
+    public synchronized void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * Gets the latency, in milliseconds, above which a request is slow and decreases the limit. Defaults to 250
+     * @return the latency in milliseconds
+     */
+    public synchronized long getLatencyThreshold() {
+        return latencyThreshold;
+    }
+
+    /**
+     * Sets the latency, in milliseconds, above which a request is slow and decreases the limit
+     * @param latencyThreshold the latency in milliseconds
+     */
+    @Value("${admission.latency.threshold:250}")
+    public synchronized void setLatencyThreshold(long latencyThreshold) {
+        this.latencyThreshold = latencyThreshold;
+    }
+
+    /**
+     * Gets the seconds rejected clients are told to wait before retrying (the Retry-After header). Defaults to 1
+     * @return the seconds
+     */
+    public synchronized int getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * Sets the seconds rejected clients are told to wait before retrying (the Retry-After header)
+     * @param retryAfter the seconds
+     */
+    @Value("${admission.retry.after:1}")
+    public synchronized void setRetryAfter(int retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    @Override
+    public String toString() {
+        return "AdmissionLimiter{limit=" + getLimit() + ", inFlight=" + getInFlight() + ", maxInFlight=" +
+               getMaxInFlight() + ", admitted=" + getAdmitted() + ", rejected=" + getRejected() + "}";
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.server.vertx;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.util.List;
+
+/**
+ * The reply of {@link FindWordsVerticle} to a {@link FindWordsRequest}: the words found, already encoded as a JSON
+ * array. The encoded words may be shared (e.g. with a {@link ResultCache}), so they must not be modified. It is sent
+ * as is, without copying it, using a {@link LocalCodec}.
+ */
+public class FindWordsReply {
+    private final Buffer encoded;
+    private final boolean truncated;
+
+    /**
+     * Creates a reply with the words, encoding them
+     * @param words the words
+     */
+    public FindWordsReply(List<String> words) {
+        this(words, false);
+    }
+
+    /**
+     * Creates a reply with the words, encoding them (see {@link WordEncoder#encode(List)})
+     * @param words the words
+     * @param truncated whether the words are only those found until the deadline of the search expired
+     */
+    public FindWordsReply(List<String> words, boolean truncated) {
+        this(WordEncoder.encode(words), truncated);
+    }
+
+    /**
+     * Creates a reply with the words already encoded
+     * @param encoded the words encoded as a JSON array
+     */
+    public FindWordsReply(Buffer encoded) {
+        this(encoded, false);
+    }
+
+    /**
+     * Creates a reply with the words already encoded
+     * @param encoded the words encoded as a JSON array
+     * @param truncated whether the words are only those found until the deadline of the search expired
+     */
+    public FindWordsReply(Buffer encoded, boolean truncated) {
+        this.encoded = encoded;
+        this.truncated = truncated;
+    }
+
+    /**
+     * Returns the words encoded as a JSON array
+     * @return the encoded words
+     */
+    public Buffer getEncoded() {
+        return encoded;
+    }
+
+    /**
+     * Indicates whether the words are only those found until the deadline of the search expired
+     * @return true if the words are truncated
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public String toString() {
+        return "FindWordsReply{bytes=" + encoded.length() + ", truncated=" + truncated + "}";
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.server.vertx;
+
+import com.chibchasoft.wordfinder.model.Deadline;
+import com.chibchasoft.wordfinder.model.WordFilter;
+
+import static com.chibchasoft.wordfinder.util.Util.LETTERS_SIZE;
+import static com.chibchasoft.wordfinder.util.Util.index;
+import static com.chibchasoft.wordfinder.util.Util.isWildcard;
+import static com.chibchasoft.wordfinder.util.Util.validLetter;
+
+/**
+ * A request to find words sent to {@link FindWordsVerticle}: the letters, with the count of each letter and of the
+ * wildcards already calculated, and the options of the request. It is sent as is, without copying it, using a
+ * {@link LocalCodec}, so it must not be modified once sent.
+ */
+public class FindWordsRequest {
+    private final String letters;
+    private final byte[] letterCount = new byte[LETTERS_SIZE];
+    private int wildcards = 0;
+
+    private WordFilter filter;
+    private int limit = 0;
+    private String stream;
+
+    private Deadline deadline;
+    private boolean partial = false;
+
+    /**
+     * Creates a request to find the words for the letters
+     * @param letters the letters
+     */
+    public FindWordsRequest(String letters) {
+        this.letters = letters;
+
+        if (letters != null) {
+            for (char c : letters.toLowerCase().toCharArray()) {
+                if (validLetter(c))
+                    letterCount[index(c)]++;
+                else if (isWildcard(c))
+                    wildcards++;
+            }
+        }
+    }
+
+    public String getLetters() {
+        return letters;
+    }
+
+    /**
+     * Returns the number of instances of each letter
+     * @return the number of instances of each letter, indexed by the character position in the range 'a'-'z'
+     */
+    public byte[] getLetterCount() {
+        return letterCount;
+    }
+
+    public int getWildcards() {
+        return wildcards;
+    }
+
+    public WordFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Sets the conditions the words must meet
+     * @param filter the conditions, null (or empty) for none
+     * @return itself so it can fluent
+     */
+    public FindWordsRequest setFilter(WordFilter filter) {
+        this.filter = filter == null || filter.isEmpty() ? null : filter;
+        return this;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Sets the maximum number of words to find, the best ones
+     * @param limit the maximum number of words, 0 or less for all of them
+     * @return itself so it can fluent
+     */
+    public FindWordsRequest setLimit(int limit) {
+        this.limit = Math.max(limit, 0);
+        return this;
+    }
+
+    public String getStream() {
+        return stream;
+    }
+
+    /**
+     * Sets the address where to stream the words (see {@link FindWordsVerticle#streamWords})
+     * @param stream the address, null to reply with all the words
+     * @return itself so it can fluent
+     */
+    public FindWordsRequest setStream(String stream) {
+        this.stream = stream;
+        return this;
+    }
+
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Sets the deadline of the search, which can be cancelled if the request is no longer needed
+     * @param deadline the deadline, null for none
+     * @return itself so it can fluent
+     */
+    public FindWordsRequest setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+        return this;
+    }
+
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * Sets whether to reply with the words found until the deadline expires, marked as truncated, instead of failing
+     * the request with a 504 (Gateway Timeout). Streamed words can not be marked, so they always fail
+     * @param partial true to reply with the words found until the deadline expires
+     * @return itself so it can fluent
+     */
+    public FindWordsRequest setPartial(boolean partial) {
+        this.partial = partial;
+        return this;
+    }
+
+    /**
+     * Indicates whether the search of this request was stopped by its deadline
+     * @return true if the words found are truncated
+     */
+    public boolean isTruncated() {
+        return deadline != null && deadline.isTruncated();
+    }
+
+    @Override
+    public String toString() {
+        return "FindWordsRequest{letters=" + letters + ", filter=" + filter + ", limit=" + limit + ", stream=" +
+               stream + ", deadline=" + deadline + ", partial=" + partial + "}";
+    }
+}
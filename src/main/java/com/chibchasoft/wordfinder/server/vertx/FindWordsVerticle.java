@@ -12,11 +12,19 @@
  */
 package com.chibchasoft.wordfinder.server.vertx;
 
+import com.chibchasoft.wordfinder.model.Deadline;
+import com.chibchasoft.wordfinder.model.WordFilter;
 import com.chibchasoft.wordfinder.model.WordFinder;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -25,10 +33,25 @@ import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Vertx verticle that listens for requests to find words via event bus messages.
+ * Vertx verticle that listens for requests to find words via event bus messages. If a {@link ResultCache} is set,
+ * the replies to the requests to find words are cached, already encoded, and reused for the requests with the same
+ * canonical key. Requests can also ask for the words to be streamed (see {@link RestVerticle#STREAM}), in which case
+ * they are sent in chunks, one at a time, as each previous chunk is acknowledged.
+ *
+ * Several instances can be deployed, all of them sharing the same {@link WordFinder} and {@link ResultCache}, which
+ * are safe to read concurrently. If {@link #getWorkerPoolSize()} is greater than 0, the searches are run on a worker
+ * pool shared by all the instances (see {@link #getWorkerPoolName()}), so long searches do not block the event loops.
+ * Replies found in the cache are still sent from the event loop, without waiting for a worker.
+ *
+ * The searches of requests with a {@link com.chibchasoft.wordfinder.model.Deadline} stop once it expires or is
+ * cancelled. The requests are then failed with a 504 (Gateway Timeout) or, if they accept partial results, replied
+ * with the words found until then, marked as truncated. Truncated replies are not cached.
  */
 @Component("findWordsVerticle")
 @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
@@ -37,8 +60,23 @@ public class FindWordsVerticle extends AbstractVerticle {
 
     private String busAddress = "findWords";
 
+    private String batchBusAddress = "findWordsBatch";
+
+    private int streamChunkSize = 1024;
+
+    private long streamTimeout = 60000;
+
     private WordFinder wordFinder;
 
+    private ResultCache resultCache;
+
+    private String workerPoolName = "findWordsPool";
+
+    private int workerPoolSize = 0;
+
+    // The worker pool where the searches are run, null to run them on the event loop
+    private WorkerExecutor workerExecutor;
+
     @Override
     public void start(Future<Void> startFuture) throws Exception {
         if (wordFinder == null) {
@@ -55,28 +93,284 @@ public class FindWordsVerticle extends AbstractVerticle {
             return;
         }
 
+        if (batchBusAddress == null) {
+            String msg = "BatchBusAddress not set";
+            LOG.warn(msg);
+            startFuture.fail(msg);
+            return;
+        }
+
+        LocalCodec.register(vertx.eventBus(), FindWordsRequest.class);
+        LocalCodec.register(vertx.eventBus(), FindWordsReply.class);
+
+        if (workerPoolSize > 0)
+            workerExecutor = vertx.createSharedWorkerExecutor(workerPoolName, workerPoolSize);
+
         vertx.eventBus().consumer(busAddress, this::findWords);
+        vertx.eventBus().consumer(batchBusAddress, this::findWordsBatch);
 
         startFuture.complete();
     }
 
+    @Override
+    public void stop() throws Exception {
+        if (workerExecutor != null) {
+            workerExecutor.close();
+            workerExecutor = null;
+        }
+    }
+
+    /**
+     * Replies to the messages with all the possible words that can be created using the letters of the
+     * {@link FindWordsRequest} provided in the message, meeting its conditions and up to its limit, as a
+     * {@link FindWordsReply}. If the request has a stream address, the words are streamed to that address instead
+     * (see {@link #streamWords(Message, List, String)}). If the search is stopped by the deadline of the request, the
+     * message is failed with a 504 (Gateway Timeout), unless the request accepts partial results and the words are
+     * not streamed, in which case the reply is marked as truncated.
+     *
+     * The message can also provide just the letters, in which case the words are replied as a JSON array encoded in
+     * a {@link Buffer}. If the message has a {@link RestVerticle#LIMIT} header, only the best words up to the limit
+     * are replied. If it has any of the {@link RestVerticle#MIN_LENGTH}, {@link RestVerticle#MAX_LENGTH},
+     * {@link RestVerticle#CONTAINS}, {@link RestVerticle#PREFIX} or {@link RestVerticle#SUFFIX} headers, only the
+     * words meeting those conditions are replied. If it has a {@link RestVerticle#STREAM} header, the words are
+     * streamed to the address in the header
+     * @param msg The message which includes the request or the letters
+     */
+    public void findWords(Message<Object> msg) {
+        Object body = msg.body();
+        if (body != null && !(body instanceof FindWordsRequest) && !(body instanceof String)) {
+            msg.fail(400, "Invalid request " + body);
+            return;
+        }
+
+        boolean letters = !(body instanceof FindWordsRequest);
+
+        FindWordsRequest request = letters ?
+            new FindWordsRequest((String) body).setFilter(getFilter(msg)).setLimit(getLimit(msg))
+                                               .setStream(msg.headers().get(RestVerticle.STREAM)) :
+            (FindWordsRequest) body;
+
+        LOG.info("Request to find words for " + request.getLetters());
+
+        if (request.getStream() != null) {
+            Handler<Future<List<String>>> words = future -> future.complete(
+                wordFinder.getWords(request.getLetters(), request.getFilter(), request.getLimit(),
+                                    request.getDeadline()));
+
+            search(words, ar -> {
+                if (ar.failed())
+                    fail(msg, ar.cause());
+                else if (request.isTruncated())
+                    timeout(msg, request);
+                else
+                    streamWords(msg, ar.result(), request.getStream());
+            });
+            return;
+        }
+
+        String key = resultCache != null ? resultCache.key(request) : null;
+        FindWordsReply cached = getCached(resultCache, key);
+        if (cached != null) {
+            msg.reply(letters ? cached.getEncoded() : cached);
+            return;
+        }
+
+        Handler<Future<FindWordsReply>> reply = future ->
+            future.complete(search(wordFinder, resultCache, key, request));
+
+        search(reply, ar -> {
+            if (ar.failed())
+                fail(msg, ar.cause());
+            else if (ar.result().isTruncated() && !request.isPartial())
+                timeout(msg, request);
+            else
+                msg.reply(letters ? ar.result().getEncoded() : ar.result());
+        });
+    }
+
     /**
-     * Replies to the messages with all the possible words that can be created using the
-     * letter provided in the message
-     * @param msg The message which includes the letters
+     * Finds the words for the request, reusing the reply cached for its key, if any. The words found are encoded and
+     * cached, unless the search is stopped by the deadline of the request, in which case the reply is truncated
+     * @param wordFinder the WordFinder
+     * @param resultCache the cache of the replies, null to not cache them
+     * @param request the request
+     * @return the reply
      */
-    public void findWords(Message<String> msg) {
-        String letters = msg.body();
-        LOG.info("Request to find words for " + letters);
+    public static FindWordsReply findWords(WordFinder wordFinder, ResultCache resultCache, FindWordsRequest request) {
+        String key = resultCache != null ? resultCache.key(request) : null;
+        FindWordsReply cached = getCached(resultCache, key);
+
+        return cached != null ? cached : search(wordFinder, resultCache, key, request);
+    }
+
+    private static FindWordsReply getCached(ResultCache resultCache, String key) {
+        Buffer encoded = key != null ? resultCache.get(key) : null;
+        if (encoded == null)
+            return null;
+
+        LOG.debug("Found cached reply for " + key);
+
+        return new FindWordsReply(encoded);
+    }
 
-        List<String> words = wordFinder.getWords(letters);
+    private static FindWordsReply search(WordFinder wordFinder, ResultCache resultCache, String key,
+                                         FindWordsRequest request) {
+        List<String> words = wordFinder.getWords(request.getLetters(), request.getFilter(), request.getLimit(),
+                                                 request.getDeadline());
 
         LOG.debug("Found " + words);
 
-        JsonArray jsonResults = new JsonArray();
-        words.forEach(jsonResults::add);
+        FindWordsReply reply = new FindWordsReply(words, request.isTruncated());
+        if (key != null && !reply.isTruncated())
+            resultCache.put(key, reply.getEncoded());
+
+        return reply;
+    }
+
+    /**
+     * Runs the search on the worker pool, if any, or else right away on the event loop. Searches run on the worker
+     * pool are not ordered, so the searches of an instance run in parallel. The result handler is always called on
+     * the event loop, failed if the search throws an exception
+     * @param search the search, which completes the future with its result
+     * @param resultHandler the handler of the result
+     * @param <T> the type of the result
+     */
+    protected <T> void search(Handler<Future<T>> search, Handler<AsyncResult<T>> resultHandler) {
+        if (workerExecutor != null) {
+            workerExecutor.executeBlocking(search, false, resultHandler);
+            return;
+        }
+
+        Future<T> future = Future.future();
+        try {
+            search.handle(future);
+        } catch (RuntimeException e) {
+            future.tryFail(e);
+        }
+
+        future.setHandler(resultHandler);
+    }
+
+    private static void fail(Message<?> msg, Throwable cause) {
+        LOG.warn("An error occurred while finding words", cause);
+
+        msg.fail(500, String.valueOf(cause.getMessage()));
+    }
+
+    private static void timeout(Message<?> msg, FindWordsRequest request) {
+        LOG.debug("Search stopped by its deadline " + request);
+
+        msg.fail(504, "Search stopped by its deadline");
+    }
+
+    /**
+     * Streams the words to the address, as chunks of up to {@link #getStreamChunkSize()} words (see
+     * {@link WordEncoder#encodeChunk(List, int, int)}). The message is replied with the number of words right away,
+     * so the time taken by the stream, which depends on the client, is not bound by the timeout of the message. The
+     * end of the stream is signaled by the last chunk, which may be empty and has the {@link RestVerticle#LAST} header
+     * set to true. A chunk is only sent once the previous one has been acknowledged (replied), so there is at most one
+     * chunk in flight for each request. The stream stops if a chunk is failed or not acknowledged within
+     * {@link #getStreamTimeout()}
+     * @param msg the message which includes the letters
+     * @param words the words
+     * @param address the address where to send the chunks
+     */
+    protected void streamWords(Message<?> msg, List<String> words, String address) {
+        msg.reply(words.size());
+
+        sendChunk(words, 0, address);
+    }
+
+    private void sendChunk(List<String> words, int from, String address) {
+        int to = Math.min(from + Math.max(streamChunkSize, 1), words.size());
+
+        boolean last = to == words.size();
+
+        DeliveryOptions options = new DeliveryOptions().addHeader(RestVerticle.LAST, String.valueOf(last))
+                                                       .setSendTimeout(streamTimeout);
+        vertx.eventBus().send(address, WordEncoder.encodeChunk(words, from, to), options, ar -> {
+            if (ar.failed())
+                LOG.debug("Stopped streaming words to " + address, ar.cause());
+            else if (!last)
+                sendChunk(words, to, address);
+        });
+    }
+
+    /**
+     * Replies to the messages with all the possible words that can be created using each group of letters (rack)
+     * provided in the message, as an object with the words of each distinct rack. If the message has a
+     * {@link RestVerticle#LIMIT} header, only the best words up to the limit are replied for each rack.
+     *
+     * The search is given a {@link Deadline} of the milliseconds in the {@link RestVerticle#TIMEOUT} header, if any.
+     * If the search runs out of time, the message is failed with a 504 (Gateway Timeout) or, if the
+     * {@link RestVerticle#PARTIAL} header is true, replied with the words found until then and the
+     * {@link RestVerticle#TRUNCATED} header
+     * @param msg The message which includes the racks
+     */
+    public void findWordsBatch(Message<JsonArray> msg) {
+        JsonArray racks = msg.body();
+        LOG.info("Request to find words for " + racks.size() + " racks");
+
+        List<String> letters = new ArrayList<>(racks.size());
+        for (int i = 0; i < racks.size(); i++)
+            letters.add(racks.getString(i));
+
+        int limit = getLimit(msg);
+
+        int timeout = getNumber(msg, RestVerticle.TIMEOUT, 0);
+        Deadline deadline = timeout > 0 ? new Deadline(timeout, TimeUnit.MILLISECONDS) : null;
+        boolean partial = Boolean.parseBoolean(msg.headers().get(RestVerticle.PARTIAL));
+
+        Handler<Future<Map<String, List<String>>>> words = future ->
+            future.complete(wordFinder.getWordsBatch(letters, limit, deadline));
+
+        search(words, ar -> {
+            if (ar.failed()) {
+                fail(msg, ar.cause());
+                return;
+            }
 
-        msg.reply(jsonResults);
+            boolean truncated = deadline != null && deadline.isTruncated();
+            if (truncated && !partial) {
+                LOG.debug("Search stopped by its deadline for " + racks.size() + " racks");
+
+                msg.fail(504, "Search stopped by its deadline");
+                return;
+            }
+
+            JsonObject jsonResults = new JsonObject();
+            ar.result().forEach((rack, rackWords) -> jsonResults.put(rack, new JsonArray(rackWords)));
+
+            msg.reply(jsonResults, new DeliveryOptions().addHeader(RestVerticle.TRUNCATED, String.valueOf(truncated)));
+        });
+    }
+
+    private static int getLimit(Message<?> msg) {
+        return getNumber(msg, RestVerticle.LIMIT, 0);
+    }
+
+    private static WordFilter getFilter(Message<?> msg) {
+        WordFilter filter = new WordFilter()
+            .setMinLength(getNumber(msg, RestVerticle.MIN_LENGTH, 0))
+            .setMaxLength(getNumber(msg, RestVerticle.MAX_LENGTH, Integer.MAX_VALUE))
+            .setContains(msg.headers().get(RestVerticle.CONTAINS))
+            .setPrefix(msg.headers().get(RestVerticle.PREFIX))
+            .setSuffix(msg.headers().get(RestVerticle.SUFFIX));
+
+        return filter.isEmpty() ? null : filter;
+    }
+
+    private static int getNumber(Message<?> msg, String name, int defaultValue) {
+        String header = msg.headers().get(name);
+        if (header != null) {
+            try {
+                return Integer.parseInt(header);
+            } catch (NumberFormatException e) {
+                LOG.warn("Ignoring invalid " + name + "[" + header + "]");
+            }
+        }
+
+        return defaultValue;
     }
 
     /**
@@ -96,6 +390,95 @@ public class FindWordsVerticle extends AbstractVerticle {
         this.busAddress = busAddress;
     }
 
+    /**
+     * Gets the event bus address to listen for requests to find words for several racks. Defaults to findWordsBatch
+     * @return the event bus address.
+     */
+    public String getBatchBusAddress() {
+        return batchBusAddress;
+    }
+
+    /**
+     * Sets the event bus address to listen for requests to find words for several racks
+     * @param batchBusAddress the event bus address
+     */
+    @Value("${vertx.findwords.batch.address:findWordsBatch}")
+    public void setBatchBusAddress(String batchBusAddress) {
+        this.batchBusAddress = batchBusAddress;
+    }
+
+    /**
+     * Gets the maximum number of words of each chunk when streaming words. Defaults to 1024
+     * @return the maximum number of words
+     */
+    public int getStreamChunkSize() {
+        return streamChunkSize;
+    }
+
+    /**
+     * Sets the maximum number of words of each chunk when streaming words
+     * @param streamChunkSize the maximum number of words
+     */
+    @Value("${vertx.findwords.stream.chunk.size:1024}")
+    public void setStreamChunkSize(int streamChunkSize) {
+        this.streamChunkSize = streamChunkSize;
+    }
+
+    /**
+     * Gets the maximum time, in milliseconds, to wait for a chunk of streamed words to be acknowledged, which is how
+     * long a client can stop reading the words. Defaults to 60000
+     * @return the maximum time
+     */
+    public long getStreamTimeout() {
+        return streamTimeout;
+    }
+
+    /**
+     * Sets the maximum time, in milliseconds, to wait for a chunk of streamed words to be acknowledged
+     * @param streamTimeout the maximum time, greater than 0
+     */
+    @Value("${vertx.findwords.stream.timeout:60000}")
+    public void setStreamTimeout(long streamTimeout) {
+        this.streamTimeout = streamTimeout;
+    }
+
+    /**
+     * Gets the name of the worker pool where the searches are run. Instances with the same name share the pool.
+     * Defaults to findWordsPool
+     * @return the name of the worker pool
+     */
+    public String getWorkerPoolName() {
+        return workerPoolName;
+    }
+
+    /**
+     * Sets the name of the worker pool where the searches are run
+     * @param workerPoolName the name of the worker pool
+     */
+    @Value("${vertx.findwords.worker.pool.name:findWordsPool}")
+    public void setWorkerPoolName(String workerPoolName) {
+        this.workerPoolName = workerPoolName;
+    }
+
+    /**
+     * Gets the number of threads of the worker pool where the searches are run. Defaults to 0, meaning the searches
+     * are run on the event loop of each instance
+     * @return the number of threads
+     */
+    public int getWorkerPoolSize() {
+        return workerPoolSize;
+    }
+
+    /**
+     * Sets the number of threads of the worker pool where the searches are run, 0 to run them on the event loop. The
+     * pool is created by the first instance deployed, so its size is the one of that instance
+     * @param workerPoolSize the number of threads
+     */
+    @Value("${vertx.findwords.worker.pool.size:0}")
+    public void setWorkerPoolSize(int workerPoolSize) {
+        this.workerPoolSize = workerPoolSize;
+    }
+
     /**
      * Gets the {@link WordFinder}
      * @return the Wordfinder
@@ -108,8 +491,25 @@ public class FindWordsVerticle extends AbstractVerticle {
      * Sets the {@link WordFinder}
      * @param wordFinder the WordFinder
      */
-    @Resource(name = "dictionary")
+    @Resource(name = "wordFinder")
     public void setWordFinder(WordFinder wordFinder) {
         this.wordFinder = wordFinder;
     }
+
+    /**
+     * Gets the {@link ResultCache}
+     * @return the ResultCache, null if replies are not cached
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Sets the {@link ResultCache} where the replies to the requests to find words are cached
+     * @param resultCache the ResultCache, null to not cache the replies
+     */
+    @Resource(name = "resultCache")
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
 }
@@ -40,6 +40,8 @@ public class InitVerticle extends AbstractVerticle {
 
     private WordFinder wordFinder;
 
+    private ResultCache resultCache;
+
     public InitVerticle() {
     }
 
@@ -78,6 +80,8 @@ public class InitVerticle extends AbstractVerticle {
             while ((word = br.readLine()) != null) {
                 LOG.debug("adding " + word + "to WordFinder");
                 wordFinder.add(word);
+                if (resultCache != null)
+                    resultCache.addWord(word);
                 wc++;
             }
 
@@ -120,8 +124,25 @@ public class InitVerticle extends AbstractVerticle {
      * Sets the {@link WordFinder}
      * @param wordFinder the WordFinder
      */
-    @javax.annotation.Resource(name = "dictionary")
+    @javax.annotation.Resource(name = "wordFinder")
     public void setWordFinder(WordFinder wordFinder) {
         this.wordFinder = wordFinder;
     }
+
+    /**
+     * Gets the {@link ResultCache}
+     * @return the ResultCache
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Sets the {@link ResultCache} whose keys are built from the letters of the words loaded
+     * @param resultCache the ResultCache, null if replies are not cached
+     */
+    @javax.annotation.Resource(name = "resultCache")
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.server.vertx;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageCodec;
+
+/**
+ * A codec for messages that are only delivered locally (within the same Vertx instance), which passes the object
+ * sent as is to the consumer, without copying or encoding it. Objects sent with it must not be modified once sent.
+ * Sending them to a consumer in another node of a cluster fails with an {@link UnsupportedOperationException}.
+ * @param <T> the type of the objects sent
+ */
+public class LocalCodec<T> implements MessageCodec<T, T> {
+    private final String name;
+
+    /**
+     * Creates a codec for the type, named after it
+     * @param type the type of the objects sent
+     */
+    public LocalCodec(Class<T> type) {
+        this.name = type.getName();
+    }
+
+    /**
+     * Registers a codec as the default one for the type, unless a codec is already registered for it (e.g. by
+     * another verticle)
+     * @param eventBus the event bus
+     * @param type the type of the objects sent
+     * @param <T> the type of the objects sent
+     */
+    public static <T> void register(EventBus eventBus, Class<T> type) {
+        try {
+            eventBus.registerDefaultCodec(type, new LocalCodec<>(type));
+        } catch (IllegalStateException e) {
+            // Already registered
+        }
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, T t) {
+        throw new UnsupportedOperationException(name + " can only be sent locally");
+    }
+
+    @Override
+    public T decodeFromWire(int pos, Buffer buffer) {
+        throw new UnsupportedOperationException(name + " can only be sent locally");
+    }
+
+    @Override
+    public T transform(T t) {
+        return t;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+}
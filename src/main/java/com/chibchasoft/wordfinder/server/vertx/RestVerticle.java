@@ -1,13 +1,26 @@
 package com.chibchasoft.wordfinder.server.vertx;
 
+import com.chibchasoft.wordfinder.model.Deadline;
+import com.chibchasoft.wordfinder.model.WordFilter;
+import com.chibchasoft.wordfinder.model.WordFinder;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.BodyHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -15,30 +28,156 @@ import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.chibchasoft.wordfinder.util.Util.countWildcards;
+
 /**
- * This vertx verticle is the server for the REST API.
+ * This vertx verticle is the server for the REST API. Several instances can be deployed, sharing the same host and
+ * port, with the connections distributed among their event loops. Besides HTTP/1.1, the server accepts HTTP/2 over
+ * cleartext (h2c), either upgraded or with prior knowledge, multiplexing the requests of a client over one connection.
+ * The options of the server (TCP options, idle timeout, compression, HTTP/2 settings, etc.) can be set as JSON (see
+ * {@link #getServerOptions()}).
  */
 @Component("restVerticle")
 @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 public class RestVerticle extends AbstractVerticle {
     private static final Logger LOG = LoggerFactory.getLogger(RestVerticle.class);
 
+    /**
+     * The name of the query parameter (and message header) with the maximum number of words to return
+     */
+    public static final String LIMIT = "limit";
+
+    /**
+     * The name of the query parameter (and message header) with the minimum number of letters of the words
+     */
+    public static final String MIN_LENGTH = "minLength";
+
+    /**
+     * The name of the query parameter (and message header) with the maximum number of letters of the words
+     */
+    public static final String MAX_LENGTH = "maxLength";
+
+    /**
+     * The name of the query parameter (and message header) with the letters the words must contain
+     */
+    public static final String CONTAINS = "contains";
+
+    /**
+     * The name of the query parameter (and message header) with the letters the words must start with
+     */
+    public static final String PREFIX = "prefix";
+
+    /**
+     * The name of the query parameter (and message header) with the letters the words must end with
+     */
+    public static final String SUFFIX = "suffix";
+
+    /**
+     * The name of the query parameter indicating whether to stream the words, and of the message header with the
+     * address where to stream them
+     */
+    public static final String STREAM = "stream";
+
+    /**
+     * The name of the message header indicating whether a chunk of streamed words is the last one
+     */
+    public static final String LAST = "last";
+
+    /**
+     * The name of the query parameter with the time, in milliseconds, the search can take
+     */
+    public static final String TIMEOUT = "timeout";
+
+    /**
+     * The name of the query parameter indicating whether to answer with the words found until the search runs out of
+     * time instead of with a 504 (Gateway Timeout)
+     */
+    public static final String PARTIAL = "partial";
+
+    /**
+     * The name of the response header set to true when the words are only those found until the search ran out of
+     * time
+     */
+    public static final String TRUNCATED = "X-Truncated";
+
     private String serverHost = "localhost";
     private int serverPort = 8080;
 
+    private String serverOptions;
+
+    private int compressionThreshold = 1024;
+
+    // Whether the server options support compression
+    private boolean compression = false;
+
     private HttpServer server;
 
     private String busAddress = "findWords";
 
+    private String batchBusAddress = "findWordsBatch";
+
+    private int batchMaxSize = 1000;
+
+    private int batchMaxRackLength = 32;
+
+    private int batchMaxRackWildcards = 2;
+
+    private boolean streamByDefault = false;
+
+    private int streamChunkSize = 1024;
+
+    private long streamTimeout = 60000;
+
+    private boolean direct = false;
+
+    private int searchTimeout = 1000;
+
+    private boolean partialByDefault = false;
+
+    private WordFinder wordFinder;
+
+    private ResultCache resultCache;
+
+    private AdmissionLimiter admissionLimiter;
+
     @Override
     public void start(Future<Void> startFuture) throws Exception {
-        HttpServerOptions serverOptions = new HttpServerOptions();
-        serverOptions.setHost(serverHost);
-        serverOptions.setPort(serverPort);
+        if (direct && wordFinder == null) {
+            String msg = "WordFinder not set";
+            LOG.warn(msg);
+            startFuture.fail(msg);
+            return;
+        }
 
-        server = vertx.createHttpServer(serverOptions);
+        LocalCodec.register(vertx.eventBus(), FindWordsRequest.class);
+        LocalCodec.register(vertx.eventBus(), FindWordsReply.class);
+
+        HttpServerOptions options;
+        try {
+            options = serverOptions == null || serverOptions.trim().isEmpty() ?
+                new HttpServerOptions() : new HttpServerOptions(new JsonObject(serverOptions));
+        } catch (DecodeException | IllegalArgumentException | ClassCastException e) {
+            String msg = "Invalid server options [" + serverOptions + "]";
+            LOG.warn(msg, e);
+            startFuture.fail(msg);
+            return;
+        }
+
+        options.setHost(serverHost);
+        options.setPort(serverPort);
+
+        compression = options.isCompressionSupported();
+
+        server = vertx.createHttpServer(options);
 
         Router router = Router.router(vertx);
+        router.post("/words/batch").handler(BodyHandler.create());
+        router.post("/words/batch").handler(this::findWordsBatch).produces("application/json");
         router.route("/words/:letters").handler(this::findWord).produces("application/json");
 
         server.requestHandler(router::accept).listen(ar -> {
@@ -52,38 +191,591 @@ public class RestVerticle extends AbstractVerticle {
         });
     }
 
+    /**
+     * Stops the verticle once the server is closed, so the port is released when the verticle is undeployed
+     * @param stopFuture the future completed once the server is closed
+     */
     @Override
-    public void stop() {
-        if (server != null) {
-            server.close();
+    public void stop(Future<Void> stopFuture) {
+        if (server == null) {
+            stopFuture.complete();
+            return;
         }
+
+        server.close(ar -> stopFuture.complete());
     }
 
     /**
-     * Processes a request to find words using the provided letters
+     * Processes a request to find words using the provided letters. The optional limit query parameter sets the
+     * maximum number of words (the best ones) to return. The optional minLength, maxLength, contains, prefix and
+     * suffix query parameters set the conditions the words must meet. The optional stream query parameter indicates
+     * whether to stream the words (see {@link #streamWords(RoutingContext, FindWordsRequest)}), defaulting to
+     * {@link #isStreamByDefault()}.
+     *
+     * The request is sent as a {@link FindWordsRequest} to the event bus address and its {@link FindWordsReply}, with
+     * the words already encoded, is written as is. If {@link #isDirect()}, the words are found calling the
+     * {@link WordFinder} directly instead (see {@link #findWordDirectly(RoutingContext, FindWordsRequest, boolean)}).
+     * Requests over the limit of the {@link AdmissionLimiter}, if set, are answered with a 503 (Service Unavailable).
+     *
+     * The search is given a {@link Deadline} (see {@link #getSearchTimeout()}), which is cancelled if the connection is
+     * closed. If the search runs out of time, the request is answered with a 504 (Gateway Timeout) or, if the partial
+     * query parameter is true (defaulting to {@link #isPartialByDefault()}), with the words found until then and the
+     * {@link #TRUNCATED} header
      * @param ctx the routing context
      */
     protected void findWord(RoutingContext ctx) {
         HttpServerResponse response = ctx.response();
 
-        String letters = ctx.pathParam("letters");
+        FindWordsRequest request = getRequest(ctx);
+        if (request == null)
+            return;
+
+        String stream = ctx.request().getParam(STREAM);
+        boolean streamed = stream != null ? Boolean.parseBoolean(stream) : streamByDefault;
+
+        if (!admit(ctx))
+            return;
+
+        // The search is useless once the client is gone
+        response.closeHandler(v -> request.getDeadline().cancel());
+
+        long start = System.nanoTime();
+
+        if (direct) {
+            boolean found = findWordDirectly(ctx, request, streamed);
+            release(start, !found);
+            return;
+        }
+
+        if (streamed) {
+            streamWords(ctx, request);
+            return;
+        }
+
+        vertx.eventBus().send(busAddress, request, ar -> {
+            release(start, ar.failed() || request.isTruncated());
 
-        vertx.eventBus().<JsonArray>send(busAddress, letters, ar -> {
             if (ar.failed()) {
-                LOG.warn("An error occurred while waiting for the reply to find words", ar.cause());
+                if (isTimeout(ar.cause())) {
+                    LOG.debug("Search stopped by its deadline for " + request.getLetters());
+
+                    response.setStatusCode(504);
+                } else {
+                    LOG.warn("An error occurred while waiting for the reply to find words", ar.cause());
+
+                    response.setStatusCode(500);
+                }
+                response.end();
+            } else {
+                response.putHeader("content-type", "application/json");
+
+                // The words are usually replied already encoded
+                Object words = ar.result().body();
+
+                if (words instanceof FindWordsReply)
+                    end(response, (FindWordsReply) words);
+                else if (words instanceof Buffer)
+                    end(response, (Buffer) words);
+                else
+                    end(response, ((JsonArray) words).toBuffer());
+            }
+        });
+    }
+
+    /**
+     * Finds the words calling the {@link WordFinder} directly, on the event loop of this verticle, without sending
+     * the request to the event bus. Replies are cached in the {@link ResultCache}, if set, like when the request is
+     * sent. Streamed words are written in chunks of up to {@link #getStreamChunkSize()} words, each one once the
+     * response can take more data. Since the words are found before writing anything, streamed words can be marked as
+     * truncated too
+     * @param ctx the routing context
+     * @param request the request
+     * @param streamed whether to stream the words
+     * @return false if an error occurred finding the words or the search ran out of time
+     */
+    protected boolean findWordDirectly(RoutingContext ctx, FindWordsRequest request, boolean streamed) {
+        HttpServerResponse response = ctx.response();
+
+        response.putHeader("content-type", "application/json");
+
+        try {
+            if (streamed) {
+                List<String> words = wordFinder.getWords(request.getLetters(), request.getFilter(),
+                                                         request.getLimit(), request.getDeadline());
+                if (!truncate(response, request))
+                    return false;
+
+                response.setChunked(true);
+                response.write("[");
+
+                writeChunks(response, words, 0);
+            } else {
+                FindWordsReply reply = FindWordsVerticle.findWords(wordFinder, resultCache, request);
+                if (!truncate(response, request))
+                    return false;
+
+                end(response, reply);
+            }
+
+            return !request.isTruncated();
+        } catch (RuntimeException e) {
+            LOG.warn("An error occurred while finding words", e);
 
+            if (!response.headWritten()) {
                 response.setStatusCode(500);
                 response.end();
+            } else if (!response.closed()) {
+                response.close();
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether the search of the request ran out of time. If so, and the request accepts partial results, the
+     * {@link #TRUNCATED} header is added; otherwise the request is ended with a 504 (Gateway Timeout)
+     * @param response the response
+     * @param request the request
+     * @return false if the search ran out of time and the request was ended
+     */
+    private boolean truncate(HttpServerResponse response, FindWordsRequest request) {
+        if (!request.isTruncated())
+            return true;
+
+        LOG.debug("Search stopped by its deadline for " + request.getLetters());
+
+        if (request.isPartial()) {
+            response.putHeader(TRUNCATED, "true");
+            return true;
+        }
+
+        response.headers().remove("content-type");
+        response.setStatusCode(504);
+        response.end();
+        return false;
+    }
+
+    private static boolean isTimeout(Throwable cause) {
+        return cause instanceof ReplyException &&
+               ((ReplyException) cause).failureType() == ReplyFailure.RECIPIENT_FAILURE &&
+               ((ReplyException) cause).failureCode() == 504;
+    }
+
+    private void writeChunks(HttpServerResponse response, List<String> words, int from) {
+        while (!response.closed()) {
+            int to = Math.min(from + Math.max(streamChunkSize, 1), words.size());
+
+            response.write(WordEncoder.encodeChunk(words, from, to));
+
+            if (to == words.size()) {
+                response.end("]");
+                return;
+            }
+
+            if (response.writeQueueFull()) {
+                response.drainHandler(v -> writeChunks(response, words, to));
+                return;
+            }
+
+            from = to;
+        }
+    }
+
+    /**
+     * Streams the words found using the provided letters with chunked transfer encoding. The status, the headers and
+     * the opening bracket are written right away, without waiting for the search. The words are received in chunks at
+     * an address of this request only (see {@link FindWordsVerticle#streamWords}), each one written as soon as it is
+     * received, until the one with the {@link #LAST} header. The next chunk is only requested (the chunk is replied)
+     * once the response can take more data, so at most one chunk is held per request whatever the number of words or
+     * the speed of the client. If the connection is closed, the search is cancelled and the pending chunk, if any, is
+     * failed, which stops the stream. If the client does not take a chunk, or the next chunk does not arrive, within
+     * {@link #getStreamTimeout()}, the connection is closed. Since the status has already been sent, a failure finding
+     * the words closes the connection too, leaving the JSON array unterminated. The request admitted by the
+     * {@link AdmissionLimiter}, if set, is released once the stream ends, without adapting the limit, since the time
+     * taken depends on the client. For the same reason, a search running out of time closes the connection too, even
+     * if the request accepts partial results
+     * @param ctx the routing context
+     * @param request the request
+     */
+    protected void streamWords(RoutingContext ctx, FindWordsRequest request) {
+        HttpServerResponse response = ctx.response();
+
+        String address = busAddress + "." + STREAM + "." + UUID.randomUUID();
+
+        WordStream stream = new WordStream(response, request, vertx.eventBus().consumer(address));
+
+        // Replaces the close handler set by findWord, so it cancels the search too
+        response.closeHandler(v -> stream.close("Connection closed"));
+
+        stream.consumer.handler(chunk -> {
+            if (response.closed()) {
+                chunk.fail(500, "Connection closed");
+                return;
+            }
+
+            response.write(chunk.body());
+
+            if (Boolean.parseBoolean(chunk.headers().get(LAST))) {
+                response.end("]");
+                chunk.reply(null);
+                stream.end();
+            } else if (response.writeQueueFull()) {
+                stream.hold(chunk);
+                response.drainHandler(v -> stream.release());
+            } else {
+                chunk.reply(null);
+                stream.watch();
+            }
+        });
+
+        request.setStream(address);
+
+        response.setChunked(true);
+        response.putHeader("content-type", "application/json");
+        response.write("[");
+
+        stream.watch();
+
+        // Replied as soon as the words start being streamed, whose end is signaled by the last chunk
+        vertx.eventBus().send(busAddress, request, ar -> {
+            if (ar.failed()) {
+                LOG.warn("An error occurred while streaming the words", ar.cause());
+
+                stream.end();
+                if (!response.closed())
+                    response.close();
+            }
+        });
+    }
+
+    /**
+     * The state of the words being streamed to a response: the consumer of the chunks, the chunk held until the
+     * response can take more data and the timer closing the connection if the stream stalls
+     */
+    private class WordStream {
+        private final HttpServerResponse response;
+        private final FindWordsRequest request;
+        private final MessageConsumer<Buffer> consumer;
+
+        private Message<Buffer> pending;
+        private long timer = -1;
+        private boolean ended = false;
+
+        WordStream(HttpServerResponse response, FindWordsRequest request, MessageConsumer<Buffer> consumer) {
+            this.response = response;
+            this.request = request;
+            this.consumer = consumer;
+        }
+
+        /**
+         * Holds the chunk until the response can take more data
+         */
+        void hold(Message<Buffer> chunk) {
+            pending = chunk;
+            watch();
+        }
+
+        /**
+         * Replies to the chunk held, requesting the next one
+         */
+        void release() {
+            if (pending != null) {
+                pending.reply(null);
+                pending = null;
+            }
+
+            watch();
+        }
+
+        /**
+         * Cancels the search and fails the chunk held, if any, which stops the stream, and ends it
+         */
+        void close(String message) {
+            request.getDeadline().cancel();
+
+            if (pending != null) {
+                pending.fail(500, message);
+                pending = null;
+            }
+
+            end();
+        }
+
+        /**
+         * Restarts the timer closing the connection if nothing happens within the stream timeout
+         */
+        void watch() {
+            if (ended)
+                return;
+
+            if (timer >= 0)
+                vertx.cancelTimer(timer);
+
+            timer = vertx.setTimer(streamTimeout, t -> {
+                LOG.debug("Closing stalled stream " + consumer.address());
+
+                timer = -1;
+                close("Stream stalled");
+                if (!response.closed())
+                    response.close();
+            });
+        }
+
+        /**
+         * Ends the stream, releasing the request admitted
+         */
+        void end() {
+            if (ended)
+                return;
+
+            ended = true;
+            if (timer >= 0)
+                vertx.cancelTimer(timer);
+
+            consumer.unregister();
+
+            if (admissionLimiter != null)
+                admissionLimiter.release();
+        }
+    }
+
+    /**
+     * Processes a request to find words for several groups of letters (racks) at once. The body must be a JSON
+     * array with the racks, up to {@link #getBatchMaxSize()} of them, each one with up to
+     * {@link #getBatchMaxRackLength()} characters and {@link #getBatchMaxRackWildcards()} wildcards. The reply is a
+     * JSON object with the words of each distinct rack. The optional limit query parameter sets the maximum number of
+     * words (the best ones) to return for each rack.
+     *
+     * The whole batch is given the time of a single search (see {@link #getSearchTimeout()}). If it runs out of time,
+     * the request is answered with a 504 (Gateway Timeout) or, if the partial query parameter is true (defaulting to
+     * {@link #isPartialByDefault()}), with the words found until then and the {@link #TRUNCATED} header
+     * @param ctx the routing context
+     */
+    protected void findWordsBatch(RoutingContext ctx) {
+        HttpServerResponse response = ctx.response();
+
+        JsonArray racks;
+        try {
+            racks = new JsonArray(ctx.getBodyAsString());
+            for (Object rack : racks) {
+                if (!(rack instanceof String))
+                    throw new IllegalArgumentException("Rack is not a string: " + rack);
+            }
+        } catch (RuntimeException e) {
+            LOG.debug("Invalid racks", e);
+
+            response.setStatusCode(400);
+            response.end();
+            return;
+        }
+
+        if (racks.size() > batchMaxSize) {
+            LOG.debug("Too many racks[" + racks.size() + "]");
+
+            response.setStatusCode(413);
+            response.end();
+            return;
+        }
+
+        for (Object rack : racks) {
+            String letters = (String) rack;
+            if (letters.length() > batchMaxRackLength || countWildcards(letters) > batchMaxRackWildcards) {
+                LOG.debug("Rack too large[" + letters + "]");
+
+                response.setStatusCode(413);
+                response.end();
+                return;
+            }
+        }
+
+        DeliveryOptions options = new DeliveryOptions();
+        if (!addLimit(ctx, options))
+            return;
+
+        int timeout = getTimeout(ctx);
+        if (timeout < 0)
+            return;
+
+        String partial = ctx.request().getParam(PARTIAL);
+        options.addHeader(TIMEOUT, String.valueOf(timeout))
+               .addHeader(PARTIAL, String.valueOf(partial != null ? Boolean.parseBoolean(partial) : partialByDefault));
+
+        if (!admit(ctx))
+            return;
+
+        long start = System.nanoTime();
+
+        vertx.eventBus().<JsonObject>send(batchBusAddress, racks, options, ar -> {
+            boolean truncated = ar.succeeded() && Boolean.parseBoolean(ar.result().headers().get(TRUNCATED));
+            release(start, ar.failed() || truncated);
+
+            if (ar.failed()) {
+                if (isTimeout(ar.cause())) {
+                    LOG.debug("Search stopped by its deadline for " + racks.size() + " racks");
+
+                    response.setStatusCode(504);
+                } else {
+                    LOG.warn("An error occurred while waiting for the reply to find words for several racks",
+                             ar.cause());
+
+                    response.setStatusCode(500);
+                }
+                response.end();
             } else {
                 response.putHeader("content-type", "application/json");
+                if (truncated)
+                    response.putHeader(TRUNCATED, "true");
 
-                JsonArray words = ar.result().body();
+                JsonObject words = ar.result().body();
 
-                response.end(words.encode());
+                end(response, words.toBuffer());
             }
         });
     }
 
+    /**
+     * Admits the request if the {@link AdmissionLimiter}, if set, has not reached its limit. Otherwise the request is
+     * ended with a 503 (Service Unavailable) and a Retry-After header
+     * @param ctx the routing context
+     * @return false if the request was rejected and ended
+     */
+    private boolean admit(RoutingContext ctx) {
+        if (admissionLimiter == null || admissionLimiter.tryAcquire())
+            return true;
+
+        LOG.debug("Rejected request, " + admissionLimiter);
+
+        ctx.response().setStatusCode(503);
+        ctx.response().putHeader("Retry-After", String.valueOf(admissionLimiter.getRetryAfter()));
+        ctx.response().end();
+        return false;
+    }
+
+    private void release(long start, boolean failed) {
+        if (admissionLimiter != null)
+            admissionLimiter.release(start, failed);
+    }
+
+    /**
+     * Ends the response with the body. If compression is supported, bodies smaller than
+     * {@link #getCompressionThreshold()} are sent uncompressed, since compressing them saves less than it costs
+     * @param response the response
+     * @param body the body
+     */
+    private void end(HttpServerResponse response, FindWordsReply reply) {
+        if (reply.isTruncated())
+            response.putHeader(TRUNCATED, "true");
+
+        end(response, reply.getEncoded());
+    }
+
+    private void end(HttpServerResponse response, Buffer body) {
+        if (compression && body.length() < compressionThreshold)
+            response.putHeader(HttpHeaders.CONTENT_ENCODING, HttpHeaders.IDENTITY);
+
+        response.end(body);
+    }
+
+    /**
+     * Returns the request to find words with the letters and the query parameters of the request. If the limit, the
+     * minimum or the maximum length or the timeout is not a non-negative number, the request is ended with a 400
+     * (Bad Request)
+     * @param ctx the routing context
+     * @return the request, null if a query parameter is invalid and the request was ended
+     */
+    private FindWordsRequest getRequest(RoutingContext ctx) {
+        int limit = getNumber(ctx, LIMIT, 0);
+        if (limit < 0)
+            return null;
+
+        int minLength = getNumber(ctx, MIN_LENGTH, 0);
+        if (minLength < 0)
+            return null;
+
+        int maxLength = getNumber(ctx, MAX_LENGTH, Integer.MAX_VALUE);
+        if (maxLength < 0)
+            return null;
+
+        int timeout = getTimeout(ctx);
+        if (timeout < 0)
+            return null;
+
+        String partial = ctx.request().getParam(PARTIAL);
+
+        WordFilter filter = new WordFilter().setMinLength(minLength).setMaxLength(maxLength)
+                                            .setContains(ctx.request().getParam(CONTAINS))
+                                            .setPrefix(ctx.request().getParam(PREFIX))
+                                            .setSuffix(ctx.request().getParam(SUFFIX));
+
+        return new FindWordsRequest(ctx.pathParam("letters")).setLimit(limit).setFilter(filter)
+            .setDeadline(new Deadline(timeout, TimeUnit.MILLISECONDS))
+            .setPartial(partial != null ? Boolean.parseBoolean(partial) : partialByDefault);
+    }
+
+    /**
+     * Returns the time, in milliseconds, the search can take: the timeout query parameter, if any, but not longer than
+     * {@link #getSearchTimeout()}. If it is not a non-negative number, the request is ended with a 400 (Bad Request)
+     * @param ctx the routing context
+     * @return the time, 0 for no limit and -1 if it is invalid and the request was ended
+     */
+    private int getTimeout(RoutingContext ctx) {
+        int timeout = getNumber(ctx, TIMEOUT, searchTimeout);
+        if (timeout < 0)
+            return -1;
+
+        if (searchTimeout > 0 && (timeout == 0 || timeout > searchTimeout))
+            timeout = searchTimeout;
+
+        return timeout;
+    }
+
+    /**
+     * Adds the limit query parameter, if any, as a header of the message. If the limit is not a non-negative
+     * number, the request is ended with a 400 (Bad Request)
+     * @param ctx the routing context
+     * @param options the options of the message
+     * @return false if the limit is invalid and the request was ended
+     */
+    private boolean addLimit(RoutingContext ctx, DeliveryOptions options) {
+        String value = ctx.request().getParam(LIMIT);
+        if (getNumber(ctx, LIMIT, 0) < 0)
+            return false;
+
+        if (value != null)
+            options.addHeader(LIMIT, value);
+
+        return true;
+    }
+
+    /**
+     * Returns the value of a query parameter that must be a non-negative number. If it is not, the request is ended
+     * with a 400 (Bad Request)
+     * @param ctx the routing context
+     * @param name the name of the query parameter
+     * @param defaultValue the value if there is no query parameter
+     * @return the value, -1 if it is invalid and the request was ended
+     */
+    private int getNumber(RoutingContext ctx, String name, int defaultValue) {
+        String value = ctx.request().getParam(name);
+        if (value == null)
+            return defaultValue;
+
+        try {
+            int number = Integer.parseInt(value);
+            if (number >= 0)
+                return number;
+        } catch (NumberFormatException e) {
+            // Answered below
+        }
+
+        LOG.debug("Invalid " + name + "[" + value + "]");
+
+        ctx.response().setStatusCode(400);
+        ctx.response().end();
+        return -1;
+    }
+
     /**
      * Gets the host used for the server. Defaults to localhost
      * @return the host.
@@ -118,6 +810,206 @@ public class RestVerticle extends AbstractVerticle {
         this.serverPort = serverPort;
     }
 
+    /**
+     * Gets the options of the server, as a JSON object with the fields of {@link HttpServerOptions} (e.g.
+     * tcpNoDelay, tcpKeepAlive, idleTimeout, compressionSupported, compressionLevel or initialSettings with the
+     * HTTP/2 settings). The host and port are always the ones of {@link #getServerHost()} and
+     * {@link #getServerPort()}. Defaults to null, meaning the default options
+     * @return the options as JSON
+     */
+    public String getServerOptions() {
+        return serverOptions;
+    }
+
+    /**
+     * Sets the options of the server, as a JSON object with the fields of {@link HttpServerOptions}. Invalid options
+     * make the verticle fail to start
+     * @param serverOptions the options as JSON, null or empty for the default options
+     */
+    @Value("${rest.server.options:}")
+    public void setServerOptions(String serverOptions) {
+        this.serverOptions = serverOptions;
+    }
+
+    /**
+     * Gets the size, in bytes, from which responses are compressed when the server options support compression.
+     * Streamed responses are always compressed. Defaults to 1024
+     * @return the size in bytes
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Sets the size, in bytes, from which responses are compressed when the server options support compression
+     * @param compressionThreshold the size in bytes, 0 to compress all of them
+     */
+    @Value("${rest.compression.threshold:1024}")
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * Indicates whether the words are streamed when the request does not have the stream query parameter.
+     * Defaults to false
+     * @return true if the words are streamed by default
+     */
+    public boolean isStreamByDefault() {
+        return streamByDefault;
+    }
+
+    /**
+     * Sets whether the words are streamed when the request does not have the stream query parameter
+     * @param streamByDefault true to stream the words by default
+     */
+    @Value("${rest.stream:false}")
+    public void setStreamByDefault(boolean streamByDefault) {
+        this.streamByDefault = streamByDefault;
+    }
+
+    /**
+     * Gets the maximum number of words of each chunk when streaming words directly. Defaults to 1024
+     * @return the maximum number of words
+     */
+    public int getStreamChunkSize() {
+        return streamChunkSize;
+    }
+
+    /**
+     * Sets the maximum number of words of each chunk when streaming words directly
+     * @param streamChunkSize the maximum number of words
+     */
+    @Value("${vertx.findwords.stream.chunk.size:1024}")
+    public void setStreamChunkSize(int streamChunkSize) {
+        this.streamChunkSize = streamChunkSize;
+    }
+
+    /**
+     * Gets the maximum time, in milliseconds, a streamed response waits for the client to take a chunk of words or for
+     * the next chunk to arrive, before closing the connection. Defaults to 60000
+     * @return the maximum time
+     */
+    public long getStreamTimeout() {
+        return streamTimeout;
+    }
+
+    /**
+     * Sets the maximum time, in milliseconds, a streamed response waits for the client or the next chunk of words
+     * @param streamTimeout the maximum time, greater than 0
+     */
+    @Value("${vertx.findwords.stream.timeout:60000}")
+    public void setStreamTimeout(long streamTimeout) {
+        this.streamTimeout = streamTimeout;
+    }
+
+    /**
+     * Indicates whether the words are found calling the {@link WordFinder} directly, on the event loop of this
+     * verticle, instead of sending the requests to the event bus address. Defaults to false
+     * @return true if the words are found directly
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * Sets whether the words are found calling the {@link WordFinder} directly, on the event loop of this verticle,
+     * instead of sending the requests to the event bus address. Searches then block the event loop, so this is meant
+     * for deployments with several instances of this verticle and no need to distribute the searches
+     * @param direct true to find the words directly
+     */
+    @Value("${rest.direct:false}")
+    public void setDirect(boolean direct) {
+        this.direct = direct;
+    }
+
+    /**
+     * Gets the time, in milliseconds, a search can take, which is both the default and the maximum of the timeout
+     * query parameter. Defaults to 1000
+     * @return the time in milliseconds, 0 if searches can take as long as requested
+     */
+    public int getSearchTimeout() {
+        return searchTimeout;
+    }
+
+    /**
+     * Sets the time, in milliseconds, a search can take
+     * @param searchTimeout the time in milliseconds, 0 for no limit other than the timeout query parameter
+     */
+    @Value("${rest.search.timeout:1000}")
+    public void setSearchTimeout(int searchTimeout) {
+        this.searchTimeout = searchTimeout;
+    }
+
+    /**
+     * Indicates whether, when the request does not have the partial query parameter, a search running out of time is
+     * answered with the words found until then instead of with a 504 (Gateway Timeout). Defaults to false
+     * @return true if partial results are returned by default
+     */
+    public boolean isPartialByDefault() {
+        return partialByDefault;
+    }
+
+    /**
+     * Sets whether, when the request does not have the partial query parameter, a search running out of time is
+     * answered with the words found until then
+     * @param partialByDefault true to return partial results by default
+     */
+    @Value("${rest.search.partial:false}")
+    public void setPartialByDefault(boolean partialByDefault) {
+        this.partialByDefault = partialByDefault;
+    }
+
+    /**
+     * Gets the {@link WordFinder} called when finding the words directly
+     * @return the WordFinder
+     */
+    public WordFinder getWordFinder() {
+        return wordFinder;
+    }
+
+    /**
+     * Sets the {@link WordFinder} called when finding the words directly
+     * @param wordFinder the WordFinder
+     */
+    @Resource(name = "wordFinder")
+    public void setWordFinder(WordFinder wordFinder) {
+        this.wordFinder = wordFinder;
+    }
+
+    /**
+     * Gets the {@link ResultCache} used when finding the words directly
+     * @return the ResultCache
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Sets the {@link ResultCache} used when finding the words directly
+     * @param resultCache the ResultCache, null to not cache the replies
+     */
+    @Resource(name = "resultCache")
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Gets the {@link AdmissionLimiter} of the requests to find words
+     * @return the AdmissionLimiter, null if requests are not limited
+     */
+    public AdmissionLimiter getAdmissionLimiter() {
+        return admissionLimiter;
+    }
+
+    /**
+     * Sets the {@link AdmissionLimiter} of the requests to find words, shared by all the instances
+     * @param admissionLimiter the AdmissionLimiter, null to not limit the requests
+     */
+    @Resource(name = "admissionLimiter")
+    public void setAdmissionLimiter(AdmissionLimiter admissionLimiter) {
+        this.admissionLimiter = admissionLimiter;
+    }
+
     /**
      * Gets the event bus address where requests to find the words is sent. Defaults to findWords
      * @return the event bus address.
@@ -134,4 +1026,76 @@ public class RestVerticle extends AbstractVerticle {
     public void setBusAddress(String busAddress) {
         this.busAddress = busAddress;
     }
+
+    /**
+     * Gets the event bus address where requests to find the words for several racks is sent.
+     * Defaults to findWordsBatch
+     * @return the event bus address.
+     */
+    public String getBatchBusAddress() {
+        return batchBusAddress;
+    }
+
+    /**
+     * Sets the event bus address where requests to find the words for several racks is sent.
+     * @param batchBusAddress the event bus address
+     */
+    @Value("${vertx.findwords.batch.address:findWordsBatch}")
+    public void setBatchBusAddress(String batchBusAddress) {
+        this.batchBusAddress = batchBusAddress;
+    }
+
+    /**
+     * Gets the maximum number of racks of a batch request. Defaults to 1000
+     * @return the maximum number of racks.
+     */
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    /**
+     * Sets the maximum number of racks of a batch request. Larger batches are rejected with a 413
+     * (Payload Too Large)
+     * @param batchMaxSize the maximum number of racks
+     */
+    @Value("${rest.batch.max.size:1000}")
+    public void setBatchMaxSize(int batchMaxSize) {
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    /**
+     * Gets the maximum number of characters of each rack of a batch request. Defaults to 32
+     * @return the maximum number of characters
+     */
+    public int getBatchMaxRackLength() {
+        return batchMaxRackLength;
+    }
+
+    /**
+     * Sets the maximum number of characters of each rack of a batch request. Batches with longer racks are rejected
+     * with a 413
+     * @param batchMaxRackLength the maximum number of characters
+     */
+    @Value("${rest.batch.max.rack.length:32}")
+    public void setBatchMaxRackLength(int batchMaxRackLength) {
+        this.batchMaxRackLength = batchMaxRackLength;
+    }
+
+    /**
+     * Gets the maximum number of wildcards of each rack of a batch request. Defaults to 2
+     * @return the maximum number of wildcards
+     */
+    public int getBatchMaxRackWildcards() {
+        return batchMaxRackWildcards;
+    }
+
+    /**
+     * Sets the maximum number of wildcards of each rack of a batch request. Batches with racks having more wildcards,
+     * whose searches take much longer, are rejected with a 413
+     * @param batchMaxRackWildcards the maximum number of wildcards
+     */
+    @Value("${rest.batch.max.rack.wildcards:2}")
+    public void setBatchMaxRackWildcards(int batchMaxRackWildcards) {
+        this.batchMaxRackWildcards = batchMaxRackWildcards;
+    }
 }
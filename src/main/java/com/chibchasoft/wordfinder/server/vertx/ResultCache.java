@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.server.vertx;
+
+import com.chibchasoft.wordfinder.model.WordFilter;
+import io.vertx.core.buffer.Buffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.chibchasoft.wordfinder.util.Util.LETTERS_SIZE;
+import static com.chibchasoft.wordfinder.util.Util.index;
+import static com.chibchasoft.wordfinder.util.Util.sortedLetters;
+import static com.chibchasoft.wordfinder.util.Util.validLetter;
+
+/**
+ * A cache of the replies to the requests to find words, already encoded as JSON, shared by all the
+ * {@link FindWordsVerticle} instances. The least recently used replies are evicted once the memory taken by the
+ * replies (see {@link #getMaxBytes()}) exceeds the limit.
+ *
+ * Requests are cached by a canonical key (see {@link #key(String, WordFilter, int)}) so requests with the same
+ * letters in a different order, case or with other characters (e.g. "tah", "HAT" and "h-a-t") share a reply. The
+ * count of each letter in the key is clamped to the largest count any word needs (see {@link #addWord(String)}),
+ * since the extra instances can not be used by any word, so "eeeeeee" and "eeeeeeeeee" share a reply too.
+ *
+ * The number of hits, misses and evictions are kept so the cache can be sized for the traffic.
+ */
+@Component("resultCache")
+public class ResultCache {
+    private static final Logger LOG = LoggerFactory.getLogger(ResultCache.class);
+
+    // The estimated number of bytes taken by an entry besides its key and reply (entry, key and buffer objects)
+    protected static final int ENTRY_OVERHEAD = 128;
+
+    // The replies by their key, from the least to the most recently used
+    private final LinkedHashMap<String, Buffer> replies = new LinkedHashMap<>(16, 0.75f, true);
+
+    // The largest count of each letter needed by any word, and the length of the longest word
+    private final byte[] maxLetterCount = new byte[LETTERS_SIZE];
+    private int maxLength = 0;
+
+    private long maxBytes = 64L * 1024 * 1024;
+    private long bytes = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ResultCache() {
+
+    }
+
+    /**
+     * Records the letters of a word that can be found, raising the largest count of each letter used for the keys.
+     * Since the replies cached may not include the word, they are all removed
+     * @param word the word
+     * @return itself so it can fluent
+     */
+    public synchronized ResultCache addWord(String word) {
+        byte[] letterCount = new byte[LETTERS_SIZE];
+        int length = 0;
+        for (char c : word.toLowerCase().toCharArray()) {
+            if (validLetter(c)) {
+                letterCount[index(c)]++;
+                length++;
+            }
+        }
+
+        for (int i = 0; i < LETTERS_SIZE; i++)
+            maxLetterCount[i] = (byte) Math.max(maxLetterCount[i], letterCount[i]);
+
+        maxLength = Math.max(maxLength, length);
+
+        if (!replies.isEmpty())
+            clear();
+
+        return this;
+    }
+
+    /**
+     * Returns the canonical key of a request: its letters in alphabetical order, each one repeated up to the largest
+     * count any word needs, followed by its wildcards (up to the length of the longest word), the conditions of the
+     * filter and the limit. If no word has been added the counts are not clamped
+     * @param letters the letters
+     * @param filter the conditions the words must meet, null for none
+     * @param limit the maximum number of words, 0 or less for all of them
+     * @return the key
+     */
+    public String key(String letters, WordFilter filter, int limit) {
+        return key(new FindWordsRequest(letters).setFilter(filter).setLimit(limit));
+    }
+
+    /**
+     * Returns the canonical key of a request (see {@link #key(String, WordFilter, int)}), using the count of each
+     * letter already calculated
+     * @param request the request
+     * @return the key
+     */
+    public String key(FindWordsRequest request) {
+        byte[] letterCount = request.getLetterCount().clone();
+        int wildcards = request.getWildcards();
+
+        synchronized (this) {
+            if (maxLength > 0) {
+                for (int i = 0; i < LETTERS_SIZE; i++)
+                    letterCount[i] = (byte) Math.min(letterCount[i], maxLetterCount[i]);
+
+                wildcards = Math.min(wildcards, maxLength);
+            }
+        }
+
+        StringBuilder key = new StringBuilder(sortedLetters(letterCount, wildcards));
+        key.append('|').append(request.getLimit());
+
+        if (request.getFilter() != null)
+            key.append('|').append(request.getFilter().getKey());
+
+        return key.toString();
+    }
+
+    /**
+     * Returns the reply cached for the key, marking it as the most recently used
+     * @param key the key
+     * @return the reply, null if not cached
+     */
+    public Buffer get(String key) {
+        Buffer reply;
+        synchronized (this) {
+            reply = replies.get(key);
+        }
+
+        if (reply != null)
+            hits.increment();
+        else
+            misses.increment();
+
+        return reply;
+    }
+
+    /**
+     * Caches the reply for the key, evicting the least recently used replies if the limit is exceeded. Replies
+     * larger than the limit are not cached
+     * @param key the key
+     * @param reply the reply
+     */
+    public synchronized void put(String key, Buffer reply) {
+        long size = size(key, reply);
+        if (size > maxBytes)
+            return;
+
+        Buffer previous = replies.put(key, reply);
+        if (previous != null)
+            bytes -= size(key, previous);
+
+        bytes += size;
+
+        for (Iterator<Map.Entry<String, Buffer>> it = replies.entrySet().iterator(); bytes > maxBytes; ) {
+            Map.Entry<String, Buffer> eldest = it.next();
+            bytes -= size(eldest.getKey(), eldest.getValue());
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Removes all the replies cached
+     */
+    public synchronized void clear() {
+        LOG.debug("Clearing [" + replies.size() + "] replies");
+
+        replies.clear();
+        bytes = 0;
+    }
+
+    private static long size(String key, Buffer reply) {
+        return ENTRY_OVERHEAD + 2L * key.length() + reply.length();
+    }
+
+    /**
+     * Returns the number of replies cached
+     * @return the number of replies
+     */
+    public synchronized int getSize() {
+        return replies.size();
+    }
+
+    /**
+     * Returns the estimated number of bytes taken by the replies cached and their keys
+     * @return the number of bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of requests whose reply was cached
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of requests whose reply was not cached
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of replies evicted to keep the cache under its limit
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Gets the maximum number of bytes taken by the replies cached and their keys. Defaults to 64 MB
+     * @return the maximum number of bytes
+     */
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Sets the maximum number of bytes taken by the replies cached and their keys, 0 to cache nothing
+     * @param maxBytes the maximum number of bytes
+     */
+    @Value("${findwords.cache.max.bytes:67108864}")
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+
+        if (bytes > maxBytes)
+            clear();
+    }
+
+    @Override
+    public String toString() {
+        return "ResultCache{size=" + getSize() + ", bytes=" + getBytes() + ", hits=" + getHits() + ", misses=" +
+               getMisses() + ", evictions=" + getEvictions() + "}";
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.server.vertx;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Static methods to encode the words found as JSON. The words found are made of printable ASCII characters (the
+ * letters of the words loaded, in lowercase, and the few other characters some of them keep, like apostrophes),
+ * whose JSON string is the word itself between quotes. So the encoded words are written straight into an array of
+ * their exact size, one byte per character, which is wrapped by the buffer without copying it. If a word has
+ * characters JSON has to escape (or that take more than one byte), the words are encoded again, the ones with such
+ * characters with {@link Json}.
+ */
+public final class WordEncoder {
+    private static final byte QUOTE = '"';
+    private static final byte COMMA = ',';
+    private static final byte OPEN = '[';
+    private static final byte CLOSE = ']';
+
+    private WordEncoder() {
+    }
+
+    /**
+     * Encodes the words as a JSON array, like {@link io.vertx.core.json.JsonArray#toBuffer()}
+     * @param words the words
+     * @return the encoded words
+     */
+    public static Buffer encode(List<String> words) {
+        return encode(words, 0, words.size(), true);
+    }
+
+    /**
+     * Encodes a chunk of the words as JSON strings separated by commas. The chunks after the first one start with a
+     * comma, so appending all the chunks between brackets makes a JSON array
+     * @param words the words
+     * @param from the index of the first word of the chunk
+     * @param to the index after the last word of the chunk
+     * @return the encoded chunk
+     */
+    public static Buffer encodeChunk(List<String> words, int from, int to) {
+        return encode(words, from, to, false);
+    }
+
+    private static Buffer encode(List<String> words, int from, int to, boolean array) {
+        boolean comma = !array && from > 0 && to > from;
+
+        // The size if all the words are plain, checked while writing them
+        int size = (array ? 2 : 0) + (comma ? 1 : 0) + Math.max(to - from - 1, 0);
+        for (int i = from; i < to; i++)
+            size += words.get(i).length() + 2;
+
+        byte[] encoded = new byte[size];
+        int position = 0;
+
+        if (array)
+            encoded[position++] = OPEN;
+        else if (comma)
+            encoded[position++] = COMMA;
+
+        for (int i = from; i < to; i++) {
+            if (i > from)
+                encoded[position++] = COMMA;
+
+            String word = words.get(i);
+            encoded[position++] = QUOTE;
+            for (int j = 0; j < word.length(); j++) {
+                char c = word.charAt(j);
+                if (!isPlain(c))
+                    return encodeEscaped(words, from, to, array, comma);
+
+                encoded[position++] = (byte) c;
+            }
+            encoded[position++] = QUOTE;
+        }
+
+        if (array)
+            encoded[position] = CLOSE;
+
+        return Buffer.buffer(Unpooled.wrappedBuffer(encoded));
+    }
+
+    private static Buffer encodeEscaped(List<String> words, int from, int to, boolean array, boolean comma) {
+        Buffer encoded = Buffer.buffer();
+        if (array)
+            encoded.appendByte(OPEN);
+        else if (comma)
+            encoded.appendByte(COMMA);
+
+        for (int i = from; i < to; i++) {
+            if (i > from)
+                encoded.appendByte(COMMA);
+
+            String word = words.get(i);
+            if (isPlain(word))
+                encoded.appendByte(QUOTE).appendString(word).appendByte(QUOTE);
+            else
+                encoded.appendBytes(Json.encode(word).getBytes(StandardCharsets.UTF_8));
+        }
+
+        if (array)
+            encoded.appendByte(CLOSE);
+
+        return encoded;
+    }
+
+    /**
+     * Indicates whether the word is encoded as itself between quotes: all its characters are printable ASCII
+     * characters other than quotes and backslashes
+     * @param word the word
+     * @return true if the word does not have to be escaped
+     */
+    static boolean isPlain(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (!isPlain(word.charAt(i)))
+                return false;
+        }
+
+        return true;
+    }
+
+    private static boolean isPlain(char c) {
+        return c >= ' ' && c <= '~' && c != '"' && c != '\\';
+    }
+}
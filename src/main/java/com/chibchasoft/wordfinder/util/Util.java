@@ -33,6 +33,36 @@ public final class Util {
      */
     public static final char LAST_LETTER = 'z';
 
+    /**
+     * The number of bits used for the count of each letter in a packed signature
+     */
+    public static final int SIGNATURE_BITS = 4;
+
+    /**
+     * The largest count of a letter that can be stored in a packed signature
+     */
+    public static final int SIGNATURE_MAX_COUNT = (1 << (SIGNATURE_BITS - 1)) - 1;
+
+    /**
+     * The number of letters packed in each long of a signature
+     */
+    public static final int SIGNATURE_LETTERS_PER_LONG = Long.SIZE / SIGNATURE_BITS;
+
+    /**
+     * The number of longs used for a packed signature
+     */
+    public static final int SIGNATURE_SIZE = (LETTERS_SIZE + SIGNATURE_LETTERS_PER_LONG - 1) / SIGNATURE_LETTERS_PER_LONG;
+
+    /**
+     * The guard (highest) bit of each of the letter counts in a packed signature
+     */
+    public static final long SIGNATURE_GUARD = 0x8888888888888888L;
+
+    /**
+     * The characters that stand for a wildcard (blank tile), which can be used as any letter
+     */
+    public static final String WILDCARDS = "?_";
+
     /**
      * Indicates whether the character passed is a valid letter
      * @param c the character to test
@@ -42,6 +72,69 @@ public final class Util {
         return c >= Util.FIRST_LETTER && c <= Util.LAST_LETTER;
     }
 
+    /**
+     * Returns the word in lowercase, without the characters that are not valid letters, as the QueryPlanner gives it to
+     * its engines
+     * @param word the word, null for none
+     * @return the normalized word, empty if it has no valid letters
+     */
+    public static String normalize(String word) {
+        if (word == null)
+            return "";
+
+        StringBuilder normalized = new StringBuilder(word.length());
+        for (char c : word.toLowerCase().toCharArray()) {
+            if (validLetter(c))
+                normalized.append(c);
+        }
+
+        return normalized.toString();
+    }
+
+    /**
+     * Indicates whether the character passed is a wildcard (see {@link #WILDCARDS})
+     * @param c the character to test
+     * @return true if it's a wildcard
+     */
+    public static boolean isWildcard(char c) {
+        return c == '?' || c == '_';
+    }
+
+    /**
+     * Returns the number of wildcards (see {@link #WILDCARDS}) in the letters
+     * @param letters the letters
+     * @return the number of wildcards
+     */
+    public static int countWildcards(String letters) {
+        int wildcards = 0;
+        for (int i = 0; i < letters.length(); i++) {
+            if (isWildcard(letters.charAt(i)))
+                wildcards++;
+        }
+
+        return wildcards;
+    }
+
+    /**
+     * Returns the letters in alphabetical order, each one repeated as many times as its count, followed by a '?' for
+     * each wildcard. Letters with the same count (whatever their order) return the same string
+     * @param letterCount the count of each letter indexed by the character position in the range 'a'-'z'
+     * @param wildcards the number of wildcards
+     * @return the sorted letters
+     */
+    public static String sortedLetters(byte[] letterCount, int wildcards) {
+        StringBuilder letters = new StringBuilder();
+        for (int i = 0; i < LETTERS_SIZE; i++) {
+            for (int n = 0; n < letterCount[i]; n++)
+                letters.append((char) (i + FIRST_LETTER));
+        }
+
+        for (int n = 0; n < wildcards; n++)
+            letters.append('?');
+
+        return letters.toString();
+    }
+
     /**
      * Returns the index (zero-based) for the passed letter in the range of valid letters
      * @param c the character
@@ -78,4 +171,161 @@ public final class Util {
 
         return new Pair<>(letterCount, count);
     }
+
+    /**
+     * Returns a mask with the bit at the index of each letter (0 for 'a' up to 25 for 'z') set if the letter is
+     * present in the letter count.
+     * @param letterCount the count of each letter indexed by the character position in the range 'a'-'z'
+     * @return the mask of the letters present
+     */
+    public static int letterMask(Byte[] letterCount) {
+        int mask = 0;
+        for (int i = 0; i < LETTERS_SIZE; i++) {
+            if (letterCount[i] != null)
+                mask |= 1 << i;
+        }
+
+        return mask;
+    }
+
+    /**
+     * Packs the letter count (as returned by {@link #getLettersCount(String)}) into {@link #SIGNATURE_SIZE} longs
+     * using {@link #SIGNATURE_BITS} bits per letter. The highest bit of each letter is left clear so it can act as
+     * a guard when comparing signatures with {@link #fitsIn(long, long, long, long)}. Counts above
+     * {@link #SIGNATURE_MAX_COUNT} are clamped.
+     * @param letterCount the count of each letter indexed by the character position in the range 'a'-'z'
+     * @param signature the array (of at least {@link #SIGNATURE_SIZE} elements) where to store the signature
+     * @return true if all counts fit in the signature, false if at least one of them was clamped
+     */
+    public static boolean packLettersCount(Byte[] letterCount, long[] signature) {
+        boolean exact = true;
+
+        for (int i = 0; i < SIGNATURE_SIZE; i++)
+            signature[i] = 0;
+
+        for (int i = 0; i < LETTERS_SIZE; i++) {
+            if (letterCount[i] == null)
+                continue;
+
+            int count = letterCount[i];
+            if (count > SIGNATURE_MAX_COUNT) {
+                count = SIGNATURE_MAX_COUNT;
+                exact = false;
+            }
+
+            signature[i / SIGNATURE_LETTERS_PER_LONG] |= (long) count << ((i % SIGNATURE_LETTERS_PER_LONG) * SIGNATURE_BITS);
+        }
+
+        return exact;
+    }
+
+    /**
+     * Packs the letter count into a signature the same way {@link #packLettersCount(Byte[], long[])} does, but using
+     * a primitive array where letters not present have a count of 0.
+     * @param letterCount the count of each letter indexed by the character position in the range 'a'-'z'
+     * @param signature the array (of at least {@link #SIGNATURE_SIZE} elements) where to store the signature
+     * @return true if all counts fit in the signature, false if at least one of them was clamped
+     */
+    public static boolean packLettersCount(byte[] letterCount, long[] signature) {
+        boolean exact = true;
+
+        for (int i = 0; i < SIGNATURE_SIZE; i++)
+            signature[i] = 0;
+
+        for (int i = 0; i < LETTERS_SIZE; i++) {
+            int count = letterCount[i];
+            if (count > SIGNATURE_MAX_COUNT) {
+                count = SIGNATURE_MAX_COUNT;
+                exact = false;
+            }
+
+            signature[i / SIGNATURE_LETTERS_PER_LONG] |= (long) count << ((i % SIGNATURE_LETTERS_PER_LONG) * SIGNATURE_BITS);
+        }
+
+        return exact;
+    }
+
+    /**
+     * Indicates whether the letter count of a word fits in the letter count of the letters, that is, for each
+     * distinct letter of the word, the letter exists in the letters and the number of times of that letter is less
+     * or equal to the number of times of that letter in the letters.
+     * @param wordCount the letter count of the word
+     * @param letterCount the letter count of the letters
+     * @return true if the word can be made using the letters
+     */
+    public static boolean fitsIn(Byte[] wordCount, Byte[] letterCount) {
+        for (int j = 0; j < wordCount.length; j++) {
+            if (wordCount[j] != null && (letterCount[j] == null || wordCount[j] > letterCount[j]))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Indicates whether the word whose signature is (wordLow, wordHigh) can be made using the letters whose
+     * signature is (lettersLow, lettersHigh), i.e. whether every letter count of the word is less or equal than
+     * the count of the same letter in the letters. Both signatures must have been created with
+     * {@link #packLettersCount(Byte[], long[])}.
+     * The comparison is done for all letters at once: setting the guard bit of every count of the letters and
+     * subtracting the word leaves the guard bit set only for those letters that did not need to borrow.
+     * @param wordLow the first long of the word signature
+     * @param wordHigh the second long of the word signature
+     * @param lettersLow the first long of the letters signature
+     * @param lettersHigh the second long of the letters signature
+     * @return true if the word fits in the letters
+     */
+    public static boolean fitsIn(long wordLow, long wordHigh, long lettersLow, long lettersHigh) {
+        return (((lettersLow | SIGNATURE_GUARD) - wordLow)
+              & ((lettersHigh | SIGNATURE_GUARD) - wordHigh)
+              & SIGNATURE_GUARD) == SIGNATURE_GUARD;
+    }
+
+    /**
+     * Returns the number of letters of the word missing from the letters, that is, the sum, for each distinct letter
+     * of the word, of the number of times of that letter in the word above the number of times in the letters. A word
+     * can be made using the letters and that many wildcards
+     * @param wordCount the letter count of the word
+     * @param letterCount the letter count of the letters
+     * @return the number of letters missing
+     */
+    public static int deficit(Byte[] wordCount, Byte[] letterCount) {
+        int deficit = 0;
+        for (int j = 0; j < wordCount.length; j++) {
+            if (wordCount[j] != null)
+                deficit += Math.max(0, wordCount[j] - (letterCount[j] == null ? 0 : letterCount[j]));
+        }
+
+        return deficit;
+    }
+
+    /**
+     * Returns the number of letters of the word whose signature is (wordLow, wordHigh) missing from the letters whose
+     * signature is (lettersLow, lettersHigh), like {@link #deficit(Byte[], Byte[])} but for all letters at once.
+     * Subtracting the word from the letters with the guard bits set leaves, for each letter that had to borrow, 8
+     * minus its deficit in its count, so the deficits are the guard minus those counts, which are then added up.
+     * Both signatures must have been created with {@link #packLettersCount(Byte[], long[])}.
+     * @param wordLow the first long of the word signature
+     * @param wordHigh the second long of the word signature
+     * @param lettersLow the first long of the letters signature
+     * @param lettersHigh the second long of the letters signature
+     * @return the number of letters missing
+     */
+    public static int deficit(long wordLow, long wordHigh, long lettersLow, long lettersHigh) {
+        return sumCounts(missing(wordLow, lettersLow)) + sumCounts(missing(wordHigh, lettersHigh));
+    }
+
+    private static long missing(long word, long letters) {
+        long difference = (letters | SIGNATURE_GUARD) - word;
+
+        // All the bits of the counts that had to borrow
+        long borrowed = ((~difference & SIGNATURE_GUARD) >>> (SIGNATURE_BITS - 1)) * ((1 << SIGNATURE_BITS) - 1);
+
+        return (SIGNATURE_GUARD & borrowed) - (difference & borrowed);
+    }
+
+    private static int sumCounts(long counts) {
+        long bytes = (counts & 0x0F0F0F0F0F0F0F0FL) + ((counts >>> 4) & 0x0F0F0F0F0F0F0F0FL);
+        return (int) ((bytes * 0x0101010101010101L) >>> 56);
+    }
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import com.chibchasoft.wordfinder.util.Util;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.chibchasoft.wordfinder.util.Util.index;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of AnagramIndex
+ */
+public class AnagramIndexTest {
+    private AnagramIndex dict = new AnagramIndex();
+
+    @Before
+    public void setUp() {
+        populateLetterPoints();
+    }
+
+    @Test
+    public void testEmptyDictionary() {
+        assertEquals(0, dict.groups.size());
+        assertEquals(0, dict.getWords("hello").size());
+    }
+
+    @Test
+    public void testAddEmptyWord() {
+        dict.add("");
+        dict.add("^^");
+
+        assertEquals(0, dict.groups.size());
+    }
+
+    @Test
+    public void testKey() {
+        assertEquals("aht", AnagramIndex.key("hat"));
+        assertEquals("aht", AnagramIndex.key("tha"));
+        assertEquals("ist", AnagramIndex.key("it's"));
+        assertEquals("ehllo", AnagramIndex.key("hello"));
+        assertEquals("", AnagramIndex.key("^^"));
+    }
+
+    @Test
+    public void testAddWordsGroupedByKey() {
+        dict.add("hat").add("Tha").add("a").add("hat");
+
+        assertEquals(2, dict.groups.size());
+        assertEquals(Arrays.asList("hat", "tha"), dict.groups.get("aht").words);
+        assertEquals(dict.getLetterPoints()[index('h')] + dict.getLetterPoints()[index('a')] +
+                     dict.getLetterPoints()[index('t')], dict.groups.get("aht").score);
+        assertEquals(3, dict.maxKeyLength);
+    }
+
+    @Test
+    public void testGetAnagrams() {
+        dict.add("hat").add("tha").add("a");
+
+        assertEquals(Arrays.asList("hat", "tha"), dict.getAnagrams("TAH"));
+        assertEquals(Collections.emptyList(), dict.getAnagrams("ta"));
+        assertEquals(Collections.emptyList(), dict.getAnagrams(null));
+    }
+
+    @Test
+    public void testFindWordsThatExist() {
+        List<String> words = Arrays.asList("a", "ah",  "at", "ha", "hat", "juana");
+        words.forEach(dict::add);
+
+        List<String> results = dict.getWords("tha");
+
+        assertNotNull(results);
+        assertEquals(results.size(), 5);
+
+        assertTrue(words.containsAll(results));
+        assertEquals("hat", results.get(0));
+        assertEquals("a", results.get(4));
+    }
+
+    @Test
+    public void testFindWordsThatExistRepeatedLetter() {
+        List<String> words = Arrays.asList("he", "hell",  "hello", "how", "yell", "yellow");
+        words.forEach(dict::add);
+
+        assertEquals(Arrays.asList("hello", "hell", "he"), dict.getWords("HELLO"));
+        assertEquals(Arrays.asList("he"), dict.getWords("hel"));
+    }
+
+    @Test
+    public void testFindWordsKeepsInvalidCharacters() {
+        dict.add("it's").add("Its");
+
+        assertEquals(Arrays.asList("it's", "its"), dict.getWords("tis"));
+    }
+
+    @Test
+    public void testFindWordsLongerThanAnyWord() {
+        dict.add("a").add("ah");
+
+        assertEquals(Arrays.asList("ah", "a"), dict.getWords("abcdefghijklmnopqrstuvwxyz"));
+    }
+
+    @Test
+    public void testFindWordsThatDontExist() {
+        List<String> words = Arrays.asList("he", "hell",  "hello", "how", "yell", "yellow");
+        words.forEach(dict::add);
+
+        assertEquals(0, dict.getWords("xxx").size());
+        assertEquals(0, dict.getWords("").size());
+        assertEquals(0, dict.getWords(null).size());
+    }
+
+    @Test
+    public void testFindWordsWithLimit() {
+        List<String> words = Arrays.asList("he", "hell",  "hello", "how", "yell", "yellow");
+        words.forEach(dict::add);
+
+        assertEquals(Arrays.asList("hello", "hell"), dict.getWords("hello", 2));
+        assertEquals(Arrays.asList("hello"), dict.getWords("hello", 1));
+        assertEquals(Arrays.asList("hello", "hell", "he"), dict.getWords("hello", 10));
+        assertEquals(dict.getWords("hello"), dict.getWords("hello", 0));
+        assertEquals(0, dict.getWords("xxx", 2).size());
+    }
+
+    @Test
+    public void testDeadline() {
+        Arrays.asList("he", "hell", "hello", "how", "yell", "yellow", "ox").forEach(dict::add);
+        List<String> all = dict.getWords("hellowy");
+
+        Deadline deadline = new Deadline(1, TimeUnit.HOURS);
+        assertEquals(all, dict.getWords("hellowy", null, 0, deadline));
+        assertEquals(dict.getWords("hellowy", 2), dict.getWords("hellowy", null, 2, deadline));
+        assertFalse(deadline.isTruncated());
+
+        // The conditions of the filter still apply
+        WordFilter filter = new WordFilter().setPrefix("he");
+        assertEquals(dict.getWords("hellowy", filter, 0), dict.getWords("hellowy", filter, 0, deadline));
+        assertEquals(dict.getWords("hellowy", filter, 1), dict.getWords("hellowy", filter, 1, deadline));
+
+        // A cancelled deadline stops the search before any word is found
+        deadline = new Deadline(0, TimeUnit.MILLISECONDS);
+        deadline.cancel();
+        assertEquals(0, dict.getWords("hellowy", null, 0, deadline).size());
+        assertTrue(deadline.isTruncated());
+    }
+
+    @Test
+    public void testDeadlineStopsLongSearch() {
+        Arrays.asList("he", "hello", "yellow").forEach(dict::add);
+
+        // Every combination of 26 distinct letters would be looked up
+        Deadline deadline = new Deadline(50, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        dict.getWords("abcdefghijklmnopqrstuvwxyz", null, 0, deadline);
+
+        assertTrue(deadline.isTruncated());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    private void populateLetterPoints() {
+        byte[] letterPoints = new byte[Util.LETTERS_SIZE];
+        for (char c : "aeilnorstu".toCharArray())
+            letterPoints[index(c)] = 1;
+        for (char c : "dg".toCharArray())
+            letterPoints[index(c)] = 2;
+        for (char c : "bcmp".toCharArray())
+            letterPoints[index(c)] = 3;
+        for (char c : "fhvwy".toCharArray())
+            letterPoints[index(c)] = 4;
+        letterPoints[index('k')] = 5;
+        letterPoints[index('j')] = 8;
+        letterPoints[index('x')] = 8;
+        letterPoints[index('q')] = 10;
+        letterPoints[index('z')] = 10;
+
+        dict.setLetterPoints(letterPoints);
+    }
+}
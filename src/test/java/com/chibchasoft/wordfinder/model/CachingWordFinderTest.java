@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import com.chibchasoft.wordfinder.util.Util;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.chibchasoft.wordfinder.util.Util.index;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of CachingWordFinder
+ */
+public class CachingWordFinderTest {
+    private static final String[] WORDS = {"retains", "retain", "stainer", "retina", "trains", "train", "stain",
+        "satin", "tears", "rates", "stare", "rate", "tear", "tar", "rat", "art", "ten", "net", "tee", "eerie", "hat",
+        "ah"};
+
+    private Engine engine;
+    private CachingWordFinder cache;
+
+    @Before
+    public void setUp() {
+        engine = new Engine();
+        cache = new CachingWordFinder(engine);
+
+        for (String word : WORDS)
+            cache.add(word);
+    }
+
+    @Test
+    public void testAddToEngine() {
+        assertEquals(WORDS.length, engine.dictionary.getWords("aaeeeehinrrsstt").size());
+    }
+
+    @Test
+    public void testHit() {
+        List<String> words = cache.getWords("tah");
+
+        assertEquals(engine.dictionary.getWords("hat"), words);
+        assertSame(words, cache.getWords("HAT"));
+        assertSame(words, cache.getWords("h-a-t"));
+
+        assertEquals(1, engine.searches);
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void testClampedLetters() {
+        // No word has more than three e's
+        List<String> words = cache.getWords("eeeeeee");
+
+        assertSame(words, cache.getWords("eeeeeeeeee"));
+        assertEquals(1, engine.searches);
+    }
+
+    @Test
+    public void testDerivedFromSuperset() {
+        cache.getWords("retains");
+
+        assertEquals(engine.dictionary.getWords("retain"), cache.getWords("retain"));
+        assertEquals(engine.dictionary.getWords("trains"), cache.getWords("snrtai"));
+        assertEquals(engine.dictionary.getWords("retains", 3), cache.getWords("retains", 3));
+
+        assertEquals(1, engine.searches);
+        assertEquals(3, cache.getDerivedHits());
+
+        // The words derived are cached too
+        cache.getWords("retain");
+        assertEquals(1, cache.getHits());
+
+        // Two letters less is not derived
+        assertEquals(engine.dictionary.getWords("tain"), cache.getWords("tain"));
+        assertEquals(2, engine.searches);
+    }
+
+    @Test
+    public void testDerivedWithLimitAndFilter() {
+        cache.getWords("retains");
+
+        WordFilter filter = new WordFilter().setMinLength(4).setContains("s");
+
+        assertEquals(engine.dictionary.getWords("retain", 2), cache.getWords("retain", 2));
+        assertEquals(engine.dictionary.getWords("retain", filter, 0), cache.getWords("retain", filter, 0));
+        assertEquals(engine.dictionary.getWords("retains", filter, 2), cache.getWords("retains", filter, 2));
+
+        assertEquals(1, engine.searches);
+    }
+
+    @Test
+    public void testNotDerivedFromLimited() {
+        cache.getWords("retains", 2);
+
+        assertEquals(engine.dictionary.getWords("retain"), cache.getWords("retain"));
+        assertEquals(2, engine.searches);
+    }
+
+    @Test
+    public void testNotDerivedWithWildcards() {
+        cache.getWords("retains");
+
+        List<String> words = cache.getWords("retai?");
+
+        assertEquals(engine.dictionary.getWords("retai?"), words);
+        assertEquals(2, engine.searches);
+        assertSame(words, cache.getWords("RETAI_"));
+    }
+
+    @Test
+    public void testEviction() {
+        List<String> hat = cache.getWords("hat");
+        int size = hat.size() + 1;
+
+        cache.setMaxWords(size + cache.getWords("art").size() + 1);
+
+        // Using hat makes art the least recently used
+        cache.getWords("hat");
+        cache.getWords("ten");
+
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+
+        cache.getWords("hat");
+        cache.getWords("art");
+        assertEquals(4, engine.searches);
+    }
+
+    @Test
+    public void testNoCaching() {
+        cache.setMaxWords(0);
+
+        cache.getWords("hat");
+        cache.getWords("hat");
+
+        assertEquals(0, cache.getSize());
+        assertEquals(2, engine.searches);
+    }
+
+    @Test
+    public void testAddClears() {
+        cache.getWords("hat");
+
+        cache.add("that");
+
+        assertEquals(0, cache.getSize());
+        assertEquals(Arrays.asList("that", "hat", "ah"), cache.getWords("tath"));
+    }
+
+    @Test
+    public void testTruncatedNotCached() {
+        Deadline deadline = new Deadline(0, TimeUnit.MILLISECONDS);
+        deadline.cancel();
+
+        assertEquals(0, cache.getWords("hat", null, 0, deadline).size());
+        assertTrue(deadline.isTruncated());
+        assertEquals(0, cache.getSize());
+
+        List<String> words = cache.getWords("hat", null, 0, new Deadline(1, TimeUnit.HOURS));
+        assertEquals(engine.dictionary.getWords("hat"), words);
+        assertEquals(2, engine.searches);
+
+        // Cached results are returned without searching, whatever the deadline
+        assertSame(words, cache.getWords("hat", null, 0, deadline));
+    }
+
+    @Test
+    public void testGetWordsBatch() {
+        cache.getWords("retains");
+        cache.getWords("hat");
+
+        Map<String, List<String>> words = cache.getWordsBatch(Arrays.asList("hat", "retain", "ten", "", null, "ten"), 0);
+
+        assertEquals(Arrays.asList("hat", "retain", "ten", ""), new ArrayList<>(words.keySet()));
+        assertEquals(engine.dictionary.getWords("hat"), words.get("hat"));
+        assertEquals(engine.dictionary.getWords("retain"), words.get("retain"));
+        assertEquals(engine.dictionary.getWords("ten"), words.get("ten"));
+        assertEquals(0, words.get("").size());
+
+        // Only the rack not cached or derived is sent to the engine
+        assertEquals(Arrays.asList("ten"), engine.batch);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getDerivedHits());
+        assertEquals(3, cache.getMisses());
+
+        assertSame(words.get("ten"), cache.getWords("net"));
+    }
+
+    @Test
+    public void testTruncatedBatchNotCached() {
+        Deadline deadline = new Deadline(0, TimeUnit.MILLISECONDS);
+        deadline.cancel();
+
+        Map<String, List<String>> words = cache.getWordsBatch(Arrays.asList("hat", "ten"), 0, deadline);
+
+        assertTrue(deadline.isTruncated());
+        assertEquals(Arrays.asList("hat", "ten"), new ArrayList<>(words.keySet()));
+        assertEquals(0, cache.getSize());
+        assertEquals(Arrays.asList("hat", "ten"), engine.batch);
+
+        words = cache.getWordsBatch(Arrays.asList("hat", "ten"), 0, new Deadline(1, TimeUnit.HOURS));
+        assertEquals(engine.dictionary.getWords("hat"), words.get("hat"));
+        assertEquals(engine.dictionary.getWords("ten"), words.get("ten"));
+        assertEquals(2, cache.getSize());
+    }
+
+    /**
+     * A Dictionary that counts the searches
+     */
+    private static class Engine implements WordFinder {
+        final Dictionary dictionary = new Dictionary();
+        int searches = 0;
+        List<String> batch;
+
+        Engine() {
+            byte[] letterPoints = new byte[Util.LETTERS_SIZE];
+            for (char c : "aeilnorstu".toCharArray())
+                letterPoints[index(c)] = 1;
+            for (char c : "fhvwy".toCharArray())
+                letterPoints[index(c)] = 4;
+
+            dictionary.setLetterPoints(letterPoints);
+        }
+
+        @Override
+        public WordFinder add(String word) {
+            dictionary.add(word);
+            return this;
+        }
+
+        @Override
+        public List<String> getWords(String letters) {
+            return getWords(letters, 0);
+        }
+
+        @Override
+        public List<String> getWords(String letters, int limit) {
+            return getWords(letters, null, limit);
+        }
+
+        @Override
+        public List<String> getWords(String letters, WordFilter filter, int limit) {
+            searches++;
+            return dictionary.getWords(letters, filter, limit);
+        }
+
+        @Override
+        public List<String> getWords(String letters, WordFilter filter, int limit, Deadline deadline) {
+            searches++;
+            return dictionary.getWords(letters, filter, limit, deadline);
+        }
+
+        @Override
+        public boolean supportsWildcards() {
+            return true;
+        }
+
+        @Override
+        public Map<String, List<String>> getWordsBatch(Collection<String> racks, int limit, Deadline deadline) {
+            batch = new ArrayList<>(racks);
+            return dictionary.getWordsBatch(racks, limit, deadline);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static com.chibchasoft.wordfinder.util.Util.index;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of DawgBuilder
+ */
+public class DawgBuilderTest {
+    private DawgBuilder builder = new DawgBuilder();
+
+    @Test
+    public void testEmptyGraph() {
+        Dawg.Graph graph = builder.build();
+
+        assertEquals(1, graph.size);
+        assertEquals(0, graph.edges.length);
+        assertFalse(graph.isFinal[Dawg.Graph.ROOT]);
+    }
+
+    @Test
+    public void testSharedSuffixes() {
+        builder.add("jumping").add("running").add("walking");
+        Dawg.Graph graph = builder.build();
+
+        // root, "j", "ju", "jum", "r", "ru", "run", "w", "wa", "wal", then "jump", "runn" and "walk" are the same
+        // node as all of them continue only with "ing", which is shared too
+        assertEquals(Arrays.asList("jumping", "running", "walking"), graph.words());
+        assertEquals(1 + 3 * 3 + 1 + 3, graph.size);
+
+        int jump = graph.child(graph.child(graph.child(graph.child(Dawg.Graph.ROOT,
+            index('j')), index('u')), index('m')), index('p'));
+        int walk = graph.child(graph.child(graph.child(graph.child(Dawg.Graph.ROOT,
+            index('w')), index('a')), index('l')), index('k'));
+        assertEquals(jump, walk);
+    }
+
+    @Test
+    public void testSharedPrefixesAndSuffixes() {
+        builder.add("cat").add("cats").add("fat").add("fats");
+        Dawg.Graph graph = builder.build();
+
+        // root, "c" and "f" (the same node), "a", "t" and "s"
+        assertEquals(5, graph.size);
+        assertEquals(graph.child(Dawg.Graph.ROOT, index('c')), graph.child(Dawg.Graph.ROOT, index('f')));
+        assertTrue(graph.contains("cats"));
+        assertTrue(graph.contains("fat"));
+        assertFalse(graph.contains("ca"));
+        assertFalse(graph.contains("cat" + "ss"));
+    }
+
+    @Test
+    public void testDuplicatedWord() {
+        builder.add("hat").add("hat");
+
+        assertEquals(Arrays.asList("hat"), builder.build().words());
+    }
+
+    @Test
+    public void testAccepts() {
+        builder.add("hat");
+
+        assertTrue(builder.accepts("hat"));
+        assertTrue(builder.accepts("hats"));
+        assertFalse(builder.accepts("ha"));
+
+        builder.build();
+        assertFalse(builder.accepts("hats"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddOutOfOrder() {
+        builder.add("hat").add("ha");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddAfterBuild() {
+        builder.add("hat").build();
+        builder.add("hats");
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of Deadline
+ */
+public class DeadlineTest {
+    @Test
+    public void testNoTimeout() {
+        Deadline deadline = new Deadline(0, TimeUnit.MILLISECONDS);
+
+        assertFalse(deadline.isExpired());
+        assertFalse(deadline.shouldStop());
+        assertFalse(deadline.isTruncated());
+        assertEquals(Long.MAX_VALUE, deadline.getRemaining(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testExpires() throws InterruptedException {
+        Deadline deadline = new Deadline(20, TimeUnit.MILLISECONDS);
+
+        assertFalse(deadline.shouldStop());
+        assertTrue(deadline.getRemaining(TimeUnit.MILLISECONDS) <= 20);
+
+        Thread.sleep(30);
+
+        assertTrue(deadline.isExpired());
+        assertEquals(0, deadline.getRemaining(TimeUnit.MILLISECONDS));
+
+        // Only stopping a search truncates it
+        assertFalse(deadline.isTruncated());
+        assertTrue(deadline.shouldStop());
+        assertTrue(deadline.isTruncated());
+    }
+
+    @Test
+    public void testCancel() {
+        Deadline deadline = new Deadline(1, TimeUnit.HOURS);
+        deadline.cancel();
+
+        assertTrue(deadline.isCancelled());
+        assertTrue(deadline.isExpired());
+        assertTrue(deadline.shouldStop());
+        assertTrue(deadline.isTruncated());
+        assertEquals(0, deadline.getRemaining(TimeUnit.MILLISECONDS));
+    }
+}
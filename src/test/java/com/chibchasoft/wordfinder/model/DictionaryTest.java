@@ -17,9 +17,16 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static com.chibchasoft.wordfinder.util.Util.getLettersCount;
 import static com.chibchasoft.wordfinder.util.Util.index;
@@ -249,6 +256,324 @@ public class DictionaryTest {
         assertEquals(results.size(), 0);
     }
 
+    @Test
+    public void testFindWordsWithoutPackedSignatures() {
+        dict.setPackedSignatures(false);
+
+        List<String> words = Arrays.asList("a", "ah",  "at", "ha", "hat", "juana");
+        words.forEach(dict::add);
+
+        List<String> results = dict.getWords("tha");
+
+        assertNotNull(results);
+        assertEquals(results.size(), 5);
+
+        assertTrue(words.containsAll(results));
+    }
+
+    @Test
+    public void testFindWordsOverflowingPackedSignature() {
+        List<String> words = Arrays.asList("eeeeeeeee", "eeeeeeee", "eee", "be");
+        words.forEach(dict::add);
+
+        Map<Byte, Dictionary.Signatures> signaturesPerLength = dict.signaturesPerLength;
+        assertEquals(Dictionary.Signatures.OVERFLOW, signaturesPerLength.get((byte)1).packed[0]);
+        assertEquals(Dictionary.Signatures.OVERFLOW, signaturesPerLength.get((byte)1).packed[Util.SIGNATURE_SIZE]);
+
+        assertEquals(Arrays.asList("eeeeeeee", "eee"), dict.getWords("eeeeeeee"));
+        assertEquals(Arrays.asList("eeeeeeeee", "eeeeeeee", "eee"), dict.getWords("eeeeeeeeeeee"));
+        assertEquals(Arrays.asList("be", "eee"), dict.getWords("beee"));
+    }
+
+    @Test
+    public void testAddWordLetterMask() {
+        dict.add("hell");
+
+        Dictionary.Signatures signatures = dict.signaturesPerLength.get((byte)3);
+        assertEquals(1, signatures.size);
+        assertEquals((1 << index('e')) | (1 << index('h')) | (1 << index('l')), signatures.masks[0]);
+    }
+
+    @Test
+    public void testFindWordsDiscardedByLetterMask() {
+        List<String> words = Arrays.asList("he", "hex", "eh", "ox");
+        words.forEach(dict::add);
+
+        assertEquals(Arrays.asList("eh", "he"), dict.getWords("hello"));
+
+        dict.setPackedSignatures(false);
+        assertEquals(Arrays.asList("eh", "he"), dict.getWords("hello"));
+    }
+
+    @Test
+    public void testFindWordsWithLimit() {
+        List<String> words = Arrays.asList("he", "hell",  "hello", "how", "yell", "yellow");
+        words.forEach(dict::add);
+
+        assertEquals(Arrays.asList("hello", "hell"), dict.getWords("hello", 2));
+        assertEquals(Arrays.asList("hello"), dict.getWords("hello", 1));
+        assertEquals(Arrays.asList("hello", "hell", "he"), dict.getWords("hello", 10));
+        assertEquals(dict.getWords("hello"), dict.getWords("hello", 0));
+        assertEquals(0, dict.getWords("xxx", 2).size());
+    }
+
+    @Test
+    public void testFindWordsWithWildcards() {
+        List<String> words = Arrays.asList("hat", "ah", "ha", "th", "at", "a", "zoo", "quiz");
+        words.forEach(dict::add);
+
+        assertTrue(dict.supportsWildcards());
+
+        for (boolean packed : new boolean[] {true, false}) {
+            dict.setPackedSignatures(packed);
+
+            // The t taken by the wildcard scores no points
+            assertEquals(Arrays.asList("ah", "ha", "hat", "th", "a", "at"), dict.getWords("ha?"));
+            assertEquals(Arrays.asList("ah", "ha", "hat", "th", "a", "at"), dict.getWords("h_a"));
+            assertEquals(Arrays.asList("ah", "ha"), dict.getWords("ha?", 2));
+            assertEquals(Arrays.asList("zoo", "a"), dict.getWords("zo?"));
+            assertEquals(Arrays.asList("quiz", "zoo", "a", "ah", "at", "ha", "th"), dict.getWords("qz??"));
+            assertEquals(Arrays.asList("a"), dict.getWords("?"));
+            assertEquals(Arrays.asList("a", "ah", "at", "ha", "th"), dict.getWords("??"));
+        }
+    }
+
+    @Test
+    public void testFindWordsWithWildcardsMatchesAllLetters() {
+        Random random = new Random(1);
+        Set<String> words = new HashSet<>();
+        while (words.size() < 2000) {
+            StringBuilder word = new StringBuilder();
+            for (int l = 1 + random.nextInt(8); l > 0; l--)
+                word.append((char) ('a' + random.nextInt(12)));
+
+            words.add(word.toString());
+        }
+
+        words.forEach(dict::add);
+
+        for (boolean packed : new boolean[] {true, false}) {
+            dict.setPackedSignatures(packed);
+
+            for (String letters : Arrays.asList("abc?", "aabbe?", "?kkl", "abcdefg?")) {
+                // The words for the wildcard are those for any of the letters in its place
+                Set<String> expected = new HashSet<>();
+                for (char c = 'a'; c <= 'z'; c++)
+                    expected.addAll(dict.getWords(letters.replace('?', c)));
+
+                List<String> found = dict.getWords(letters);
+                assertEquals(letters, expected, new HashSet<>(found));
+                assertEquals(letters, found.size(), new HashSet<>(found).size());
+            }
+        }
+    }
+
+    @Test
+    public void testFindFilteredWords() {
+        Random random = new Random(2);
+        Set<String> words = new HashSet<>();
+        while (words.size() < 2000) {
+            StringBuilder word = new StringBuilder();
+            for (int l = 1 + random.nextInt(8); l > 0; l--)
+                word.append((char) ('a' + random.nextInt(12)));
+
+            words.add(word.toString());
+        }
+
+        words.forEach(dict::add);
+
+        List<WordFilter> filters = Arrays.asList(new WordFilter().setMinLength(4), new WordFilter().setMaxLength(3),
+                                                 new WordFilter().setMinLength(3).setMaxLength(5),
+                                                 new WordFilter().setContains("a"), new WordFilter().setContains("bb"),
+                                                 new WordFilter().setPrefix("ab"), new WordFilter().setSuffix("c"),
+                                                 new WordFilter().setPrefix("a").setSuffix("a").setContains("ke"),
+                                                 new WordFilter().setContains("x"), new WordFilter().setMaxLength(0));
+
+        for (String letters : Arrays.asList("abcdefgh", "aabbccdk", "abc?", "?kkl", "ab??", "a")) {
+            for (WordFilter filter : filters) {
+                // The same words, in the same order, as discarding those not meeting the conditions
+                List<String> expected = new ArrayList<>();
+                for (String word : dict.getWords(letters)) {
+                    if (filter.matches(word))
+                        expected.add(word);
+                }
+
+                assertEquals(letters + " " + filter, expected, dict.getWords(letters, filter, 0));
+
+                // The best ones have the same scores
+                List<String> best = dict.getWords(letters, filter, 3);
+                assertEquals(letters + " " + filter, Math.min(3, expected.size()), best.size());
+                for (int i = 0; i < best.size(); i++)
+                    assertEquals(score(expected.get(i), letters), score(best.get(i), letters));
+            }
+        }
+    }
+
+    @Test
+    public void testFindWordsBatch() {
+        Random random = new Random(1);
+        for (int w = 0; w < 2000; w++) {
+            StringBuilder word = new StringBuilder();
+            for (int l = 1 + random.nextInt(8); l > 0; l--)
+                word.append((char) ('a' + random.nextInt(12)));
+
+            dict.add(word.toString());
+        }
+
+        List<String> racks = Arrays.asList("abcdef", "hello", "aabbccdd", null, "", "abcdef", "lkjihg", "xyz", "HELLO");
+
+        for (boolean packed : new boolean[] {true, false}) {
+            dict.setPackedSignatures(packed);
+
+            for (int limit : new int[] {0, 3}) {
+                Map<String, List<String>> batch = dict.getWordsBatch(racks, limit);
+
+                assertEquals(Arrays.asList("abcdef", "hello", "aabbccdd", "", "lkjihg", "xyz", "HELLO"),
+                             new ArrayList<>(batch.keySet()));
+                for (Map.Entry<String, List<String>> entry : batch.entrySet())
+                    assertEquals(entry.getKey(), dict.getWords(entry.getKey(), limit), entry.getValue());
+            }
+        }
+
+        assertTrue(dict.getWordsBatch(Arrays.asList(), 0).isEmpty());
+    }
+
+    @Test
+    public void testFindWordsBatchDeadline() {
+        Arrays.asList("he", "hell", "hello", "how", "yell", "yellow", "hat", "ah", "ha").forEach(dict::add);
+
+        List<String> racks = Arrays.asList("hello", "ha?", "yellow");
+
+        Deadline deadline = new Deadline(1, TimeUnit.HOURS);
+        assertEquals(dict.getWordsBatch(racks, 0), dict.getWordsBatch(racks, 0, deadline));
+        assertFalse(deadline.isTruncated());
+
+        // Every rack is still replied, with the words found until the deadline stopped the search
+        deadline = new Deadline(0, TimeUnit.MILLISECONDS);
+        deadline.cancel();
+        Map<String, List<String>> batch = dict.getWordsBatch(racks, 0, deadline);
+
+        assertTrue(deadline.isTruncated());
+        assertEquals(racks, new ArrayList<>(batch.keySet()));
+        for (List<String> words : batch.values())
+            assertEquals(0, words.size());
+    }
+
+    @Test
+    public void testFindWordsInParallel() {
+        // Enough words to be split in several chunks
+        Random random = new Random(1);
+        for (int w = 0; w < 5 * Dictionary.ScanTask.CHUNK_SIZE; w++) {
+            StringBuilder word = new StringBuilder();
+            for (int l = 1 + random.nextInt(8); l > 0; l--)
+                word.append((char) ('a' + random.nextInt(12)));
+
+            dict.add(word.toString());
+        }
+
+        dict.setParallelThreshold(0);
+        List<String> sequential = dict.getWords("abcdefghijklabcdefghijkl");
+        List<String> sequentialBest = dict.getWords("abcdefghijklabcdefghijkl", 10);
+        assertTrue(sequential.size() > Dictionary.ScanTask.CHUNK_SIZE);
+
+        // Split even if the pool has a single thread
+        Pair<Byte[], Byte> letterCount = getLettersCount("abcdefghijklabcdefghijkl");
+        Dictionary.Scan scan = dict.new Scan(letterCount.getFirst(), letterCount.getSecond());
+        assertEquals(sequential, ForkJoinPool.commonPool().invoke(new Dictionary.ScanTask(scan, 0, 0, scan.size())).toList());
+        assertEquals(sequentialBest, ForkJoinPool.commonPool().invoke(new Dictionary.ScanTask(scan, 10, 0, scan.size())).toList());
+
+        dict.setParallelThreshold(1);
+        assertEquals(sequential, dict.getWords("abcdefghijklabcdefghijkl"));
+        assertEquals(sequentialBest, dict.getWords("abcdefghijklabcdefghijkl", 10));
+    }
+
+    @Test
+    public void testParallelCost() {
+        Arrays.asList("a", "ah", "at", "ha", "hat", "juana").forEach(dict::add);
+
+        byte[] letterCount = new byte[Util.LETTERS_SIZE];
+        letterCount[index('a')] = 1;
+        letterCount[index('h')] = 1;
+
+        dict.setParallelThreshold(0);
+        double sequential = dict.estimateCost(letterCount);
+
+        dict.setParallelThreshold(1);
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        assertEquals(parallelism > 1 ? sequential / parallelism : sequential, dict.estimateCost(letterCount), 0.001);
+    }
+
+    @Test
+    public void testDeadline() {
+        addAllWords("abcdefgh", 4);
+        List<String> all = dict.getWords("abcdefgh");
+
+        Deadline none = new Deadline(0, TimeUnit.MILLISECONDS);
+        assertEquals(all, dict.getWords("abcdefgh", null, 0, none));
+        assertFalse(none.isTruncated());
+
+        // Checked before each slice of words, expiring before the second one
+        Deadline deadline = new ExpiringDeadline(1);
+        List<String> partial = dict.getWords("abcdefgh", null, 0, deadline);
+
+        assertTrue(deadline.isTruncated());
+        assertTrue(partial.size() > 0 && partial.size() < all.size());
+
+        // The words found are still ordered by their score
+        Set<String> found = new HashSet<>(partial);
+        assertEquals(all.stream().filter(found::contains).collect(Collectors.toList()), partial);
+    }
+
+    @Test
+    public void testCancelledDeadline() {
+        addAllWords("abcdefgh", 4);
+
+        Deadline deadline = new Deadline(1, TimeUnit.HOURS);
+        deadline.cancel();
+
+        assertEquals(0, dict.getWords("abcdefgh", null, 0, deadline).size());
+        assertEquals(0, dict.getWords("abcdefg?", new WordFilter().setPrefix("a"), 0, deadline).size());
+        assertTrue(deadline.isTruncated());
+
+        dict.setParallelThreshold(1);
+        assertEquals(0, dict.getWords("abcdefgh", null, 0, deadline).size());
+    }
+
+    // The score of the word made using the letters, the letters missing from them (taken by wildcards) scoring
+    // no points
+    private int score(String word, String letters) {
+        byte[] count = new byte[Util.LETTERS_SIZE];
+        for (char c : letters.toCharArray()) {
+            if (Util.validLetter(c))
+                count[index(c)]++;
+        }
+
+        int score = 0;
+        for (char c : word.toCharArray()) {
+            if (count[index(c)]-- > 0)
+                score += dict.getLetterPoints()[index(c)];
+        }
+
+        return score;
+    }
+
+    // Adds all the words of up to maxLength letters made of the letters
+    private void addAllWords(String letters, int maxLength) {
+        List<String> words = new ArrayList<>(Arrays.asList(""));
+        for (int length = 1; length <= maxLength; length++) {
+            List<String> longer = new ArrayList<>();
+            for (String word : words) {
+                if (word.length() == length - 1) {
+                    for (char c : letters.toCharArray())
+                        longer.add(word + c);
+                }
+            }
+
+            longer.forEach(dict::add);
+            words.addAll(longer);
+        }
+    }
+
     private void populateLetterPoints() {
         byte[] letterPoints = new byte[Util.LETTERS_SIZE];
         letterPoints[index('a')]=1;
@@ -286,4 +611,20 @@ public class DictionaryTest {
 
         dict.setLetterPoints(letterPoints);
     }
+    /**
+     * A deadline that expires once it has been checked a number of times
+     */
+    private static class ExpiringDeadline extends Deadline {
+        private int checks;
+
+        ExpiringDeadline(int checks) {
+            super(0, TimeUnit.MILLISECONDS);
+            this.checks = checks;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return checks-- <= 0;
+        }
+    }
 }
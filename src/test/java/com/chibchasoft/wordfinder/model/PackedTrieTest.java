@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import com.chibchasoft.wordfinder.util.Util;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.chibchasoft.wordfinder.util.Util.index;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of PackedTrie
+ */
+public class PackedTrieTest {
+    private PackedTrie dict = new PackedTrie();
+
+    @Before
+    public void setUp() {
+        populateLetterPoints();
+    }
+
+    @Test
+    public void testEmptyDictionary() {
+        PackedTrie.Nodes nodes = dict.getNodes();
+
+        assertEquals(1, nodes.size);
+        assertFalse(nodes.isWord[PackedTrie.Nodes.ROOT]);
+        assertEquals(0, nodes.childMask[PackedTrie.Nodes.ROOT]);
+    }
+
+    @Test
+    public void testAddEmptyWord() {
+        dict.add("").add("^^");
+
+        assertEquals(1, dict.getNodes().size);
+    }
+
+    @Test
+    public void testAddOneWord() {
+        String letters = "juana";
+        dict.add(letters);
+
+        PackedTrie.Nodes nodes = dict.getNodes();
+        assertEquals(letters.length() + 1, nodes.size);
+
+        int totalPoints = 0;
+        int node = PackedTrie.Nodes.ROOT;
+        for (char c : letters.toCharArray()) {
+            assertFalse(nodes.isWord[node]);
+            assertEquals(1 << index(c), nodes.childMask[node]);
+
+            node = nodes.child(node, index(c));
+            totalPoints += dict.getLetterPoints()[index(c)];
+            assertEquals(totalPoints, nodes.totalPoints[node]);
+        }
+
+        assertTrue(nodes.isWord[node]);
+        assertEquals(0, nodes.childMask[node]);
+    }
+
+    @Test
+    public void testAddWordsChildrenAreConsecutive() {
+        dict.add("hey").add("juana").add("he").add("ha");
+
+        PackedTrie.Nodes nodes = dict.getNodes();
+
+        // root, h, j, ha, he, ju, hey, jua, juan, juana
+        assertEquals(10, nodes.size);
+        assertEquals((1 << index('h')) | (1 << index('j')), nodes.childMask[PackedTrie.Nodes.ROOT]);
+
+        int h = nodes.child(PackedTrie.Nodes.ROOT, index('h'));
+        int j = nodes.child(PackedTrie.Nodes.ROOT, index('j'));
+        assertEquals(1, h);
+        assertEquals(2, j);
+
+        assertEquals(3, nodes.child(h, index('a')));
+        assertEquals(4, nodes.child(h, index('e')));
+        assertTrue(nodes.isWord[3]);
+        assertTrue(nodes.isWord[4]);
+        assertFalse(nodes.isWord[j]);
+    }
+
+    @Test
+    public void testAddDuplicatedWords() {
+        dict.add("hat").add("HAT").add("h-a-t");
+
+        assertEquals(4, dict.getNodes().size);
+        assertEquals(Arrays.asList("hat"), dict.getWords("hat"));
+    }
+
+    @Test
+    public void testAddWordsAfterSearching() {
+        dict.add("hat").add("a");
+        assertEquals(Arrays.asList("hat", "a"), dict.getWords("tha"));
+
+        dict.add("ah").add("juana");
+        assertEquals(Arrays.asList("hat", "ah", "a"), dict.getWords("tha"));
+        assertEquals(Arrays.asList("juana", "hat", "ah", "a"), dict.getWords("juanath"));
+    }
+
+    @Test
+    public void testFindWordsThatExist() {
+        List<String> words = Arrays.asList("a", "ah",  "at", "ha", "hat", "juana");
+        words.forEach(dict::add);
+
+        List<String> results = dict.getWords("tha");
+
+        assertNotNull(results);
+        assertEquals(results.size(), 5);
+
+        assertTrue(words.containsAll(results));
+    }
+
+    @Test
+    public void testFindWordsThatExistRepeatedLetter() {
+        List<String> words = Arrays.asList("he", "hell",  "hello", "how", "yell", "yellow");
+        words.forEach(dict::add);
+
+        List<String> results = dict.getWords("hello");
+
+        assertNotNull(results);
+        assertEquals(results.size(), 3);
+
+        assertTrue(Arrays.asList("he", "hell",  "hello").containsAll(results));
+    }
+
+    @Test
+    public void testFindWordsThatDontExist() {
+        List<String> words = Arrays.asList("he", "hell",  "hello", "how", "yell", "yellow");
+        words.forEach(dict::add);
+
+        assertEquals(0, dict.getWords("xxx").size());
+        assertEquals(0, dict.getWords("^^").size());
+        assertEquals(0, dict.getWords("").size());
+        assertEquals(0, dict.getWords(null).size());
+    }
+
+    @Test
+    public void testFindWordsWithLimit() {
+        List<String> words = Arrays.asList("he", "hell",  "hello", "how", "yell", "yellow");
+        words.forEach(dict::add);
+
+        assertEquals(Arrays.asList("hello", "hell"), dict.getWords("hello", 2));
+        assertEquals(Arrays.asList("hello"), dict.getWords("hello", 1));
+        assertEquals(Arrays.asList("hello", "hell", "he"), dict.getWords("hello", 10));
+        assertEquals(dict.getWords("hello"), dict.getWords("hello", 0));
+        assertEquals(0, dict.getWords("xxx", 2).size());
+    }
+
+    @Test
+    public void testDeadline() {
+        Arrays.asList("he", "hell", "hello", "how", "yell", "yellow", "ox").forEach(dict::add);
+        List<String> all = dict.getWords("hellowy");
+
+        Deadline deadline = new Deadline(1, TimeUnit.HOURS);
+        assertEquals(all, dict.getWords("hellowy", null, 0, deadline));
+        assertEquals(dict.getWords("hellowy", 2), dict.getWords("hellowy", null, 2, deadline));
+        assertFalse(deadline.isTruncated());
+
+        // The conditions of the filter still apply
+        WordFilter filter = new WordFilter().setPrefix("he");
+        assertEquals(dict.getWords("hellowy", filter, 0), dict.getWords("hellowy", filter, 0, deadline));
+        assertEquals(dict.getWords("hellowy", filter, 1), dict.getWords("hellowy", filter, 1, deadline));
+
+        // A cancelled deadline stops the search before any word is found
+        deadline = new Deadline(0, TimeUnit.MILLISECONDS);
+        deadline.cancel();
+        assertEquals(0, dict.getWords("hellowy", null, 0, deadline).size());
+        assertTrue(deadline.isTruncated());
+    }
+
+    private void populateLetterPoints() {
+        byte[] letterPoints = new byte[Util.LETTERS_SIZE];
+        for (char c : "aeilnorstu".toCharArray())
+            letterPoints[index(c)] = 1;
+        for (char c : "dg".toCharArray())
+            letterPoints[index(c)] = 2;
+        for (char c : "bcmp".toCharArray())
+            letterPoints[index(c)] = 3;
+        for (char c : "fhvwy".toCharArray())
+            letterPoints[index(c)] = 4;
+        letterPoints[index('k')] = 5;
+        letterPoints[index('j')] = 8;
+        letterPoints[index('x')] = 8;
+        letterPoints[index('q')] = 10;
+        letterPoints[index('z')] = 10;
+
+        dict.setLetterPoints(letterPoints);
+    }
+}
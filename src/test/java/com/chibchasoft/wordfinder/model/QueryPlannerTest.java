@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.chibchasoft.wordfinder.util.Util.LETTERS_SIZE;
+import static com.chibchasoft.wordfinder.util.Util.index;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of QueryPlanner
+ */
+public class QueryPlannerTest {
+    private QueryPlanner planner = new QueryPlanner();
+
+    // Costs 1 per letter
+    private Engine linear = new Engine("linear", 1);
+
+    // Costs 10 plus 0 per letter
+    private Engine constant = new Engine("constant", 0);
+
+    @Before
+    public void setUp() {
+        planner.addEngine("linear", linear).addEngine("constant", constant);
+    }
+
+    @Test
+    public void testNoEngines() {
+        QueryPlanner empty = new QueryPlanner();
+
+        assertEquals(0, empty.getWords("hello").size());
+        assertNull(empty.choose("hello"));
+    }
+
+    @Test
+    public void testAddToAllEngines() {
+        planner.add("hat").add("ah");
+
+        assertEquals(Arrays.asList("hat", "ah"), linear.words);
+        assertEquals(Arrays.asList("hat", "ah"), constant.words);
+    }
+
+    @Test
+    public void testChooseCheapest() {
+        assertEquals(Arrays.asList("linear", "constant"), planner.getEngineNames());
+
+        assertEquals("linear", planner.choose("hat"));
+        assertEquals("linear", planner.choose("hat^^"));
+        assertEquals("constant", planner.choose("hello worlds"));
+
+        // Same cost, the first one added
+        assertEquals("linear", planner.choose("abcdefghij"));
+    }
+
+    @Test
+    public void testChooseEngineWithoutEstimates() {
+        QueryPlanner other = new QueryPlanner();
+        other.addEngine("none", new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                return Collections.emptyList();
+            }
+        });
+
+        assertEquals("none", other.choose("hello"));
+
+        other.addEngine("constant", constant);
+        assertEquals("constant", other.choose("hello"));
+    }
+
+    @Test
+    public void testGetWordsRecordsStatistics() {
+        assertEquals(Arrays.asList("linear"), planner.getWords("hat"));
+        assertEquals(Arrays.asList("constant"), planner.getWords("hello worlds", 5));
+        assertEquals(5, constant.limit);
+        assertEquals(Arrays.asList("constant"), planner.getWords("hello worlds"));
+        assertEquals(0, planner.getWords("").size());
+        assertEquals(0, planner.getWords(null).size());
+
+        QueryPlanner.Statistics linearStatistics = planner.getStatistics().get("linear");
+        assertEquals(1, linearStatistics.getQueries());
+        assertEquals(3, linearStatistics.getEstimatedNanos());
+        assertTrue(linearStatistics.getActualNanos() > 0);
+
+        QueryPlanner.Statistics constantStatistics = planner.getStatistics().get("constant");
+        assertEquals(2, constantStatistics.getQueries());
+        assertEquals(20, constantStatistics.getEstimatedNanos());
+    }
+
+    @Test
+    public void testTruncatedNotRecorded() {
+        Deadline deadline = new Deadline(0, TimeUnit.MILLISECONDS);
+        assertEquals(Arrays.asList("linear"), planner.getWords("hat", null, 0, deadline));
+        assertEquals(1, planner.getStatistics().get("linear").getQueries());
+
+        deadline = new Deadline(0, TimeUnit.MILLISECONDS);
+        deadline.cancel();
+        assertEquals(Arrays.asList("linear"), planner.getWords("hat", null, 0, deadline));
+        assertTrue(deadline.isTruncated());
+        assertEquals(1, planner.getStatistics().get("linear").getQueries());
+    }
+
+    @Test
+    public void testChooseEngineSupportingWildcards() {
+        // Neither engine supports wildcards, so they are ignored
+        assertEquals("linear", planner.choose("ha?"));
+
+        constant.wildcards = true;
+        assertEquals("constant", planner.choose("ha?"));
+        assertEquals("constant", planner.choose("h_"));
+        assertEquals("linear", planner.choose("ha"));
+
+        assertEquals(Arrays.asList("constant"), planner.getWords("ha?"));
+        assertEquals(1, constant.wildcardsEstimated);
+    }
+
+    @Test
+    public void testGetWordsWithFilter() {
+        assertEquals(Arrays.asList("linear"), planner.getWords("hat", new WordFilter().setPrefix("lin"), 0));
+        assertEquals(0, planner.getWords("hat", new WordFilter().setPrefix("con"), 0).size());
+        assertEquals(Arrays.asList("constant"), planner.getWords("hello worlds", new WordFilter().setMinLength(8), 1));
+        assertEquals(1, planner.getStatistics().get("constant").getQueries());
+    }
+
+    @Test
+    public void testGetWordsBatch() {
+        Map<String, List<String>> batch = planner.getWordsBatch(
+            Arrays.asList("hat", "hello worlds", null, "", "hat", "ah", "hello worlds!"), 5);
+
+        assertEquals(Arrays.asList("hat", "hello worlds", "", "ah", "hello worlds!"), new ArrayList<>(batch.keySet()));
+        assertEquals(Arrays.asList("linear"), batch.get("hat"));
+        assertEquals(Arrays.asList("constant"), batch.get("hello worlds"));
+        assertEquals(0, batch.get("").size());
+        assertEquals(Arrays.asList("linear"), batch.get("ah"));
+        assertEquals(Arrays.asList("constant"), batch.get("hello worlds!"));
+        assertEquals(5, constant.limit);
+
+        // A batch per engine
+        QueryPlanner.Statistics linearStatistics = planner.getStatistics().get("linear");
+        assertEquals(1, linearStatistics.getQueries());
+        assertEquals(5, linearStatistics.getEstimatedNanos());
+
+        QueryPlanner.Statistics constantStatistics = planner.getStatistics().get("constant");
+        assertEquals(1, constantStatistics.getQueries());
+        assertEquals(20, constantStatistics.getEstimatedNanos());
+    }
+
+    @Test
+    public void testCostEstimatedOnce() {
+        planner.getWords("hat");
+
+        // The cost recorded is the one estimated to choose the engine
+        assertEquals(1, linear.estimates);
+        assertEquals(1, constant.estimates);
+        assertEquals(3, planner.getStatistics().get("linear").getEstimatedNanos());
+
+        planner.getWordsBatch(Arrays.asList("hat", "ah", "hello worlds"), 0);
+
+        assertEquals(4, linear.estimates);
+        assertEquals(4, constant.estimates);
+        assertEquals(8, planner.getStatistics().get("linear").getEstimatedNanos());
+        assertEquals(10, planner.getStatistics().get("constant").getEstimatedNanos());
+    }
+
+    @Test
+    public void testEnginesEstimateCost() {
+        List<WordFinder> engines = Arrays.asList(new Dictionary(), new Trie(), new AnagramIndex());
+        for (WordFinder engine : engines) {
+            Arrays.asList("a", "ah", "at", "ha", "hat", "juana").forEach(engine::add);
+
+            byte[] few = new byte[26];
+            few[index('a')] = 1;
+
+            byte[] more = new byte[26];
+            more[index('a')] = 2;
+            more[index('h')] = 1;
+            more[index('t')] = 1;
+
+            double fewCost = ((CostEstimator) engine).estimateCost(few);
+            double moreCost = ((CostEstimator) engine).estimateCost(more);
+
+            assertTrue(engine.getClass().getSimpleName(), fewCost > 0);
+            assertTrue(engine.getClass().getSimpleName(), moreCost > fewCost);
+        }
+    }
+
+    @Test
+    public void testEnginesAgree() {
+        byte[] letterPoints = new byte[LETTERS_SIZE];
+        Arrays.fill(letterPoints, (byte) 1);
+        letterPoints[index('d')] = 2;
+        letterPoints[index('h')] = 4;
+        letterPoints[index('y')] = 4;
+        letterPoints[index('q')] = 10;
+        letterPoints[index('z')] = 10;
+
+        Dictionary dictionary = new Dictionary();
+        dictionary.setLetterPoints(letterPoints);
+        Trie trie = new Trie();
+        trie.setLetterPoints(letterPoints);
+        AnagramIndex anagramIndex = new AnagramIndex();
+        anagramIndex.setLetterPoints(letterPoints);
+        PackedTrie packedTrie = new PackedTrie();
+        packedTrie.setLetterPoints(letterPoints);
+        Dawg dawg = new Dawg();
+        dawg.setLetterPoints(letterPoints);
+        ColumnarDictionary columnarDictionary = new ColumnarDictionary();
+        columnarDictionary.setLetterPoints(letterPoints);
+
+        QueryPlanner all = new QueryPlanner();
+        all.addEngine("dictionary", dictionary).addEngine("trie", trie).addEngine("anagramIndex", anagramIndex)
+            .addEngine("packedTrie", packedTrie).addEngine("dawg", dawg)
+            .addEngine("columnarDictionary", columnarDictionary);
+
+        Arrays.asList("don't", "don", "nod", "dont", "DON", "Nod", "o'", "hat", "ah", "ha", "th", "at", "a", "zoo",
+            "quiz", "hello", "yellow", "he", "eh", "hell", "tad", "doth").forEach(all::add);
+
+        for (String letters : Arrays.asList("dont", "DON'T", "nodt", "hat", "hello", "yellowhat", "zoquiz", "a",
+                                            "d?n", "ha?", "??", "h_a", "qz??")) {
+            for (int limit : new int[] {0, 1, 2, 3, 5}) {
+                List<String> expected = null;
+                for (Map.Entry<String, WordFinder> engine : all.engines.entrySet()) {
+                    if (letters.matches(".*[?_].*") && !engine.getValue().supportsWildcards())
+                        continue;
+
+                    List<String> words = engine.getValue().getWords(letters, limit);
+                    if (expected == null)
+                        expected = words;
+                    else
+                        assertEquals(engine.getKey() + " " + letters + " " + limit, expected, words);
+                }
+            }
+        }
+
+        // "don't" and "dont" are the same word, and so are "don" and "DON"
+        assertEquals(Arrays.asList("dont", "don", "nod", "o"), all.getWords("don't"));
+    }
+
+    private static class Engine implements WordFinder, CostEstimator {
+        private final String name;
+        private final double costPerLetter;
+        private final List<String> words = new ArrayList<>();
+        private int limit = -1;
+        private boolean wildcards = false;
+        private int wildcardsEstimated = 0;
+        private int estimates = 0;
+
+        Engine(String name, double costPerLetter) {
+            this.name = name;
+            this.costPerLetter = costPerLetter;
+        }
+
+        @Override
+        public WordFinder add(String word) {
+            words.add(word);
+            return this;
+        }
+
+        @Override
+        public List<String> getWords(String letters) {
+            return Collections.singletonList(name);
+        }
+
+        @Override
+        public List<String> getWords(String letters, int limit) {
+            this.limit = limit;
+            return getWords(letters);
+        }
+
+        @Override
+        public List<String> getWords(String letters, WordFilter filter, int limit, Deadline deadline) {
+            if (deadline != null)
+                deadline.shouldStop();
+
+            return getWords(letters, filter, limit);
+        }
+
+        @Override
+        public boolean supportsWildcards() {
+            return wildcards;
+        }
+
+        @Override
+        public double estimateCost(byte[] letterCount, int wildcards) {
+            this.wildcardsEstimated = wildcards;
+            estimates++;
+            return estimateCost(letterCount);
+        }
+
+        @Override
+        public double estimateCost(byte[] letterCount) {
+            int total = 0;
+            for (byte count : letterCount)
+                total += count;
+
+            return costPerLetter > 0 ? total * costPerLetter : 10;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of TopWords
+ */
+public class TopWordsTest {
+    @Test
+    public void testEmpty() {
+        TopWords words = new TopWords(3);
+
+        assertTrue(words.isEmpty());
+        assertEquals(Collections.emptyList(), words.toList());
+    }
+
+    @Test
+    public void testNoLimit() {
+        TopWords words = new TopWords(0);
+        words.add("a", 1);
+        words.add("hat", 6);
+        words.add("ah", 5);
+        words.add("at", 2);
+
+        assertEquals(4, words.size());
+        assertTrue(words.accepts(0));
+        assertEquals(Arrays.asList("hat", "ah", "at", "a"), words.toList());
+    }
+
+    @Test
+    public void testLimit() {
+        TopWords words = new TopWords(2);
+        words.add("a", 1);
+        words.add("hat", 6);
+        words.add("at", 2);
+        words.add("ah", 5);
+
+        assertEquals(2, words.size());
+        assertEquals(Arrays.asList("hat", "ah"), words.toList());
+    }
+
+    @Test
+    public void testAccepts() {
+        TopWords words = new TopWords(2);
+        assertTrue(words.accepts(0));
+
+        words.add("ah", 5);
+        words.add("at", 2);
+
+        assertFalse(words.accepts(1));
+        // A word with the score of the worst one kept is kept if it comes first alphabetically
+        assertTrue(words.accepts(2));
+        assertTrue(words.accepts(3));
+    }
+
+    @Test
+    public void testTiesInAlphabeticalOrder() {
+        TopWords words = new TopWords(2);
+        words.add("ha", 5);
+        words.add("th", 5);
+        words.add("ah", 5);
+        words.add("at", 2);
+
+        assertEquals(Arrays.asList("ah", "ha"), words.toList());
+
+        TopWords all = new TopWords(0);
+        all.add("ha", 5);
+        all.add("at", 2);
+        all.add("ah", 5);
+
+        assertEquals(Arrays.asList("ah", "ha", "at"), all.toList());
+    }
+
+    @Test
+    public void testAddAll() {
+        TopWords words = new TopWords(3);
+        words.add("a", 1);
+        words.add("ah", 5);
+
+        TopWords other = new TopWords(0);
+        other.add("at", 2);
+        other.add("hat", 6);
+
+        words.addAll(other);
+
+        assertEquals(Arrays.asList("hat", "ah", "at"), words.toList());
+    }
+
+    @Test
+    public void testReset() {
+        TopWords words = new TopWords(1);
+        words.add("ah", 5);
+        words.add("hat", 6);
+
+        words.reset(0);
+        assertTrue(words.isEmpty());
+
+        words.add("a", 1);
+        words.add("at", 2);
+        assertEquals(Arrays.asList("at", "a"), words.toList());
+    }
+
+    @Test
+    public void testShouldStop() {
+        assertFalse(new TopWords(0).shouldStop());
+
+        Deadline deadline = new Deadline(0, TimeUnit.MILLISECONDS);
+        TopWords words = new TopWords(0, deadline);
+
+        // Checked on the first call and then every CHECK_INTERVAL calls
+        assertFalse(words.shouldStop());
+        deadline.cancel();
+        for (int i = 1; i < TopWords.CHECK_INTERVAL; i++)
+            assertFalse(words.shouldStop());
+
+        assertTrue(words.shouldStop());
+        assertTrue(words.shouldStop());
+        assertTrue(deadline.isTruncated());
+
+        words.reset(0);
+        assertFalse(words.shouldStop());
+
+        words.reset(0, deadline);
+        assertTrue(words.shouldStop());
+    }
+}
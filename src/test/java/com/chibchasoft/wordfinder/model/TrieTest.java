@@ -17,8 +17,16 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static com.chibchasoft.wordfinder.util.Util.index;
 import static org.junit.Assert.assertEquals;
@@ -277,11 +285,397 @@ public class TrieTest {
         assertEquals(results.size(), 0);
     }
 
+    @Test
+    public void testChildMask() {
+        dict.add("hey");
+        dict.add("juana");
+        dict.add("ha");
+
+        assertEquals((1 << index('h')) | (1 << index('j')), dict.root.childMask);
+        assertEquals((1 << index('a')) | (1 << index('e')), dict.root.children[index('h')].childMask);
+        assertEquals(0, dict.root.children[index('h')].children[index('a')].childMask);
+    }
+
+    @Test
+    public void testLetterIndicesMask() {
+        Trie.LetterIndices letterIndices = new Trie.LetterIndices();
+        letterIndices.calculateIndices("hello");
+
+        assertEquals((1 << index('e')) | (1 << index('h')) | (1 << index('l')) | (1 << index('o')),
+                     letterIndices.getMask());
+
+        letterIndices.decrementForIndex(index('l'));
+        assertTrue(letterIndices.isPresent(index('l')));
+        assertTrue((letterIndices.getMask() & (1 << index('l'))) != 0);
+
+        letterIndices.decrementForIndex(index('l'));
+        assertFalse(letterIndices.isPresent(index('l')));
+        assertEquals(0, letterIndices.getMask() & (1 << index('l')));
+
+        letterIndices.incrementForIndex(index('l'));
+        assertTrue((letterIndices.getMask() & (1 << index('l'))) != 0);
+    }
+
+    @Test
+    public void testSearchesReuseScratch() {
+        List<String> words = Arrays.asList("he", "hell",  "hello", "how", "yell", "yellow", "supercalifragilistic");
+        words.forEach(dict::add);
+
+        assertEquals(Arrays.asList("supercalifragilistic"), dict.getWords("supercalifragilistic"));
+        assertEquals(Arrays.asList("hello", "hell", "he"), dict.getWords("hello"));
+        assertEquals(Arrays.asList("hello", "hell", "he"), dict.getWords("hello"));
+
+        Trie.Scratch scratch = Trie.SCRATCH.get();
+        assertTrue(scratch.words.isEmpty());
+        assertTrue(scratch.word.length >= "supercalifragilistic".length());
+    }
+
+    @Test
+    public void testLetterIndicesReset() {
+        Trie.LetterIndices letterIndices = new Trie.LetterIndices();
+        letterIndices.calculateIndices("hello");
+        letterIndices.reset();
+
+        assertTrue(letterIndices.isEmpty());
+        assertEquals(0, letterIndices.getMask());
+        assertFalse(letterIndices.isPresent(index('l')));
+    }
+
     @After
     public void tearDown() {
         dict.reset();
     }
 
+    @Test
+    public void testFindWordsWithLimit() {
+        List<String> words = Arrays.asList("he", "hell",  "hello", "how", "yell", "yellow");
+        words.forEach(dict::add);
+
+        assertEquals(Arrays.asList("hello", "hell"), dict.getWords("hello", 2));
+        assertEquals(Arrays.asList("hello"), dict.getWords("hello", 1));
+        assertEquals(Arrays.asList("hello", "hell", "he"), dict.getWords("hello", 10));
+        assertEquals(dict.getWords("hello"), dict.getWords("hello", 0));
+        assertEquals(0, dict.getWords("xxx", 2).size());
+    }
+
+    @Test
+    public void testMaxPoints() {
+        dict.add("he").add("hello").add("hat");
+
+        Trie.Node h = dict.root.children[index('h')];
+        Trie.Node he = h.children[index('e')];
+        Trie.Node hel = he.children[index('l')];
+        Trie.Node ha = h.children[index('a')];
+
+        // hello = 8, he = 5, hat = 6
+        assertEquals(8, dict.root.maxPoints);
+        assertEquals(8, h.maxPoints);
+        assertEquals(8, he.maxPoints);
+        assertEquals(8, hel.maxPoints);
+        assertEquals(6, ha.maxPoints);
+        assertEquals(6, ha.children[index('t')].maxPoints);
+    }
+
+    @Test
+    public void testOrderByPoints() {
+        int[] order = dict.letterOrder;
+
+        assertEquals(index('q'), order[0]);
+        assertEquals(index('z'), order[1]);
+        assertEquals(index('j'), order[2]);
+        assertEquals(index('x'), order[3]);
+        assertEquals(index('k'), order[4]);
+        assertEquals(index('u'), order[order.length - 1]);
+    }
+
+    @Test
+    public void testFindBestWords() {
+        List<String> words = Arrays.asList("a", "ah", "at", "ha", "hat", "juana", "zah", "haz", "jaz", "tzar");
+        words.forEach(dict::add);
+
+        List<String> all = dict.getWords("hatzj");
+        assertEquals(Arrays.asList("jaz", "haz", "zah"), all.subList(0, 3));
+
+        for (int limit = 1; limit <= all.size() + 1; limit++) {
+            List<String> best = dict.getWords("hatzj", limit);
+            assertEquals(Math.min(limit, all.size()), best.size());
+
+            // Words with the same score may be found in a different order
+            for (int i = 0; i < best.size(); i++)
+                assertEquals(score(all.get(i)), score(best.get(i)));
+        }
+    }
+
+    @Test
+    public void testLetterIndicesCopy() {
+        Trie.LetterIndices letterIndices = new Trie.LetterIndices();
+        letterIndices.calculateIndices("hello");
+
+        Trie.LetterIndices copy = letterIndices.copy();
+        copy.decrementForIndex(index('h'));
+
+        assertTrue(letterIndices.isPresent(index('h')));
+        assertFalse(copy.isPresent(index('h')));
+        assertEquals(5, letterIndices.total);
+        assertEquals(4, copy.total);
+        assertEquals(letterIndices.getMask() & ~(1 << index('h')), copy.getMask());
+    }
+
+    @Test
+    public void testSearchTask() {
+        List<String> words = Arrays.asList("a", "ah", "at", "ha", "hat", "juana", "zah", "haz", "jaz", "tzar", "that",
+                                           "hath", "tat", "zazz");
+        words.forEach(dict::add);
+
+        String letters = "hatzjath";
+        List<String> sequential = dict.getWords(letters);
+
+        Trie.LetterIndices letterIndices = new Trie.LetterIndices();
+        letterIndices.calculateIndices(letters);
+
+        // Split even if the pool has a single thread
+        TopWords found = ForkJoinPool.commonPool().invoke(
+            new Trie.SearchTask(dict.root, letterIndices, new char[letterIndices.total], 0, 0, dict.letterOrder));
+        assertEquals(sequential, found.toList());
+
+        letterIndices.reset();
+        letterIndices.calculateIndices(letters);
+        List<String> best = ForkJoinPool.commonPool().invoke(
+            new Trie.SearchTask(dict.root, letterIndices, new char[letterIndices.total], 0, 3, dict.letterOrder)).toList();
+        assertEquals(3, best.size());
+        for (int i = 0; i < best.size(); i++)
+            assertEquals(score(sequential.get(i)), score(best.get(i)));
+
+        dict.setParallelThreshold(1);
+        assertEquals(sequential, dict.getWords(letters));
+        assertEquals(sequential, dict.getWords(letters));
+    }
+
+    @Test
+    public void testFindWordsWithWildcards() {
+        List<String> words = Arrays.asList("hat", "ah", "ha", "th", "at", "a", "zoo", "quiz");
+        words.forEach(dict::add);
+
+        assertTrue(dict.supportsWildcards());
+
+        // The t taken by the wildcard scores no points
+        assertEquals(Arrays.asList("ah", "ha", "hat", "th", "a", "at"), dict.getWords("ha?"));
+        assertEquals(Arrays.asList("ah", "ha", "hat", "th", "a", "at"), dict.getWords("h_a"));
+        assertEquals(Arrays.asList("ah", "ha"), dict.getWords("ha?", 2));
+        assertEquals(Arrays.asList("zoo", "a"), dict.getWords("zo?"));
+        assertEquals(Arrays.asList("zoo"), dict.getWords("zo?", 1));
+        assertEquals(Arrays.asList("quiz", "zoo", "a", "ah", "at", "ha", "th"), dict.getWords("qz??"));
+        assertEquals(Arrays.asList("a"), dict.getWords("?"));
+        assertEquals(Arrays.asList("a", "ah", "at", "ha", "th"), dict.getWords("??"));
+    }
+
+    @Test
+    public void testSearchTaskWithWildcards() {
+        Arrays.asList("hat", "ah", "ha", "th", "at", "a", "zoo", "quiz", "hello", "yellow").forEach(dict::add);
+
+        for (String letters : Arrays.asList("ha?", "zo?", "qz??", "??", "hel?o")) {
+            Trie.LetterIndices letterIndices = new Trie.LetterIndices();
+            letterIndices.calculateIndices(letters);
+
+            TopWords words = new Trie.SearchTask(dict.root, letterIndices, new char[letters.length()], 0, 0,
+                                                 dict.letterOrder).invoke();
+
+            assertEquals(letters, dict.getWords(letters), words.toList());
+        }
+    }
+
+    @Test
+    public void testLetterIndicesWildcards() {
+        Trie.LetterIndices letterIndices = new Trie.LetterIndices();
+        letterIndices.calculateIndices("h?_");
+
+        assertEquals(3, letterIndices.total);
+        assertEquals(2, letterIndices.wildcards);
+        assertEquals(1 << index('h') | 1 << index('t'), letterIndices.getReachableMask(1 << index('h') | 1 << index('t')));
+
+        assertFalse(letterIndices.use(index('h'), 4));
+        assertTrue(letterIndices.use(index('h'), 4));
+        assertEquals(1, letterIndices.wildcards);
+        assertEquals(4, letterIndices.blankPoints);
+
+        letterIndices.release(index('h'), 4, true);
+        letterIndices.release(index('h'), 4, false);
+        assertEquals(3, letterIndices.total);
+        assertEquals(2, letterIndices.wildcards);
+        assertEquals(0, letterIndices.blankPoints);
+
+        letterIndices.reset();
+        letterIndices.calculateIndices("h");
+        assertEquals(1 << index('h'), letterIndices.getReachableMask(1 << index('h') | 1 << index('t')));
+    }
+
+    @Test
+    public void testWildcardsCost() {
+        Arrays.asList("hat", "ah", "ha", "th", "at", "a", "zoo", "quiz").forEach(dict::add);
+
+        byte[] letterCount = new byte[Util.LETTERS_SIZE];
+        letterCount[index('h')] = 1;
+        letterCount[index('a')] = 1;
+
+        assertTrue(dict.estimateCost(letterCount, 1) > dict.estimateCost(letterCount));
+        assertEquals(dict.estimateCost(letterCount), dict.estimateCost(letterCount, 0), 0.001);
+    }
+
+    @Test
+    public void testFindFilteredWords() {
+        Random random = new Random(2);
+        Set<String> words = new HashSet<>();
+        while (words.size() < 2000) {
+            StringBuilder word = new StringBuilder();
+            for (int l = 1 + random.nextInt(8); l > 0; l--)
+                word.append((char) ('a' + random.nextInt(12)));
+
+            words.add(word.toString());
+        }
+
+        words.forEach(dict::add);
+
+        List<WordFilter> filters = Arrays.asList(new WordFilter().setMinLength(4), new WordFilter().setMaxLength(3),
+                                                 new WordFilter().setMinLength(3).setMaxLength(5),
+                                                 new WordFilter().setContains("a"), new WordFilter().setContains("bb"),
+                                                 new WordFilter().setPrefix("ab"), new WordFilter().setSuffix("c"),
+                                                 new WordFilter().setPrefix("a").setSuffix("a").setContains("ke"),
+                                                 new WordFilter().setContains("x"), new WordFilter().setMaxLength(0));
+
+        for (String letters : Arrays.asList("abcdefgh", "aabbccdk", "abc?", "?kkl", "ab??", "a")) {
+            for (WordFilter filter : filters) {
+                // The same words, in the same order, as discarding those not meeting the conditions
+                List<String> expected = new ArrayList<>();
+                for (String word : dict.getWords(letters)) {
+                    if (filter.matches(word))
+                        expected.add(word);
+                }
+
+                assertEquals(letters + " " + filter, expected, dict.getWords(letters, filter, 0));
+
+                // The best ones have the same scores
+                List<String> best = dict.getWords(letters, filter, 3);
+                assertEquals(letters + " " + filter, Math.min(3, expected.size()), best.size());
+                for (int i = 0; i < best.size(); i++)
+                    assertEquals(score(expected.get(i), letters), score(best.get(i), letters));
+            }
+        }
+    }
+
+    @Test
+    public void testFindWordsBatch() {
+        List<String> words = Arrays.asList("he", "hell",  "hello", "how", "yell", "yellow");
+        words.forEach(dict::add);
+
+        Map<String, List<String>> batch = dict.getWordsBatch(Arrays.asList("hello", null, "yellow", "hello"), 2);
+
+        assertEquals(2, batch.size());
+        assertEquals(Arrays.asList("hello", "hell"), batch.get("hello"));
+        assertEquals(dict.getWords("yellow", 2), batch.get("yellow"));
+    }
+
+    @Test
+    public void testParallelCost() {
+        Arrays.asList("a", "ah", "at", "ha", "hat", "juana").forEach(dict::add);
+
+        byte[] letterCount = new byte[Util.LETTERS_SIZE];
+        letterCount[index('a')] = 1;
+        letterCount[index('h')] = 1;
+
+        dict.setParallelThreshold(0);
+        double serial = dict.estimateCost(letterCount);
+        assertEquals(serial, dict.estimateSerialCost(letterCount, 0), 0.001);
+
+        dict.setParallelThreshold(1);
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        assertEquals(parallelism > 1 ? serial / parallelism : serial, dict.estimateCost(letterCount), 0.001);
+    }
+
+    @Test
+    public void testDeadline() {
+        addAllWords("abcdefgh", 4);
+        List<String> all = dict.getWords("abcdefgh");
+
+        Deadline none = new Deadline(0, TimeUnit.MILLISECONDS);
+        assertEquals(all, dict.getWords("abcdefgh", null, 0, none));
+        assertFalse(none.isTruncated());
+
+        // Checked before the first node and again after TopWords.CHECK_INTERVAL nodes, when it expires
+        Deadline deadline = new ExpiringDeadline(1);
+        List<String> partial = dict.getWords("abcdefgh", null, 0, deadline);
+
+        assertTrue(deadline.isTruncated());
+        assertTrue(partial.size() > 0 && partial.size() < all.size());
+
+        // The words found are still ordered by their score
+        Set<String> found = new HashSet<>(partial);
+        assertEquals(all.stream().filter(found::contains).collect(Collectors.toList()), partial);
+
+        // The best words are found pruning the rest, within TopWords.CHECK_INTERVAL nodes
+        deadline = new ExpiringDeadline(1);
+        assertEquals(dict.getWords("abcdefgh", 5), dict.getWords("abcdefgh", null, 5, deadline));
+        assertFalse(deadline.isTruncated());
+    }
+
+    @Test
+    public void testCancelledDeadline() {
+        addAllWords("abcdefgh", 4);
+
+        Deadline deadline = new Deadline(1, TimeUnit.HOURS);
+        deadline.cancel();
+
+        assertEquals(0, dict.getWords("abcdefgh", null, 0, deadline).size());
+        assertEquals(0, dict.getWords("abcdefgh", null, 5, deadline).size());
+        assertEquals(0, dict.getWords("abcdefgh", new WordFilter().setPrefix("a"), 0, deadline).size());
+        assertTrue(deadline.isTruncated());
+
+        dict.setParallelThreshold(1);
+        assertEquals(0, dict.getWords("abcdefgh", null, 0, deadline).size());
+    }
+
+    private int score(String word) {
+        int score = 0;
+        for (char c : word.toCharArray())
+            score += dict.getLetterPoints()[index(c)];
+
+        return score;
+    }
+
+    // The score of the word made using the letters, the letters missing from them (taken by wildcards) scoring
+    // no points
+    private int score(String word, String letters) {
+        byte[] count = new byte[Util.LETTERS_SIZE];
+        for (char c : letters.toCharArray()) {
+            if (Util.validLetter(c))
+                count[index(c)]++;
+        }
+
+        int score = 0;
+        for (char c : word.toCharArray()) {
+            if (count[index(c)]-- > 0)
+                score += dict.getLetterPoints()[index(c)];
+        }
+
+        return score;
+    }
+
+    // Adds all the words of up to maxLength letters made of the letters
+    private void addAllWords(String letters, int maxLength) {
+        List<String> words = new ArrayList<>(Arrays.asList(""));
+        for (int length = 1; length <= maxLength; length++) {
+            List<String> longer = new ArrayList<>();
+            for (String word : words) {
+                if (word.length() == length - 1) {
+                    for (char c : letters.toCharArray())
+                        longer.add(word + c);
+                }
+            }
+
+            longer.forEach(dict::add);
+            words.addAll(longer);
+        }
+    }
+
     private void populateLetterPoints() {
         byte[] letterPoints = new byte[Util.LETTERS_SIZE];
         letterPoints[index('a')]=1;
@@ -319,4 +713,20 @@ public class TrieTest {
 
         dict.setLetterPoints(letterPoints);
     }
+    /**
+     * A deadline that expires once it has been checked a number of times
+     */
+    private static class ExpiringDeadline extends Deadline {
+        private int checks;
+
+        ExpiringDeadline(int checks) {
+            super(0, TimeUnit.MILLISECONDS);
+            this.checks = checks;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return checks-- <= 0;
+        }
+    }
 }
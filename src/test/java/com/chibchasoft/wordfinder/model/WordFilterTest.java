@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.chibchasoft.wordfinder.util.Util.index;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of WordFilter
+ */
+public class WordFilterTest {
+    @Test
+    public void testEmpty() {
+        WordFilter filter = new WordFilter();
+
+        assertTrue(filter.isEmpty());
+        assertTrue(filter.matches("hello"));
+        assertTrue(filter.matches(""));
+        assertFalse(filter.matches(null));
+        assertEquals(0, filter.getRequiredLength());
+
+        assertTrue(filter.setContains(null).setPrefix("").setSuffix("12").isEmpty());
+    }
+
+    @Test
+    public void testLength() {
+        WordFilter filter = new WordFilter().setMinLength(3).setMaxLength(4);
+
+        assertFalse(filter.isEmpty());
+        assertFalse(filter.matches("he"));
+        assertTrue(filter.matches("hel"));
+        assertTrue(filter.matches("hell"));
+        assertFalse(filter.matches("hello"));
+
+        // Only letters count
+        assertFalse(filter.matches("he-"));
+        assertTrue(filter.matches("Don't"));
+    }
+
+    @Test
+    public void testContains() {
+        WordFilter filter = new WordFilter().setContains("Le-l");
+
+        assertEquals("lel", filter.getContains());
+        assertTrue(filter.matches("hello"));
+        assertTrue(filter.matches("hell"));
+        assertFalse(filter.matches("help"));
+        assertFalse(filter.matches("hole"));
+        assertEquals(3, filter.getRequiredLength());
+    }
+
+    @Test
+    public void testKey() {
+        assertEquals("", new WordFilter().getKey());
+
+        WordFilter filter = new WordFilter().setMinLength(2).setContains("TA").setPrefix("h");
+
+        assertEquals("2|2147483647|at|h|", filter.getKey());
+        assertEquals(filter.getKey(), new WordFilter().setMinLength(2).setContains("a-t").setPrefix("H").getKey());
+        assertNotEquals(filter.getKey(), new WordFilter().setMinLength(2).setContains("at").setSuffix("h").getKey());
+    }
+
+    @Test
+    public void testPrefixAndSuffix() {
+        WordFilter filter = new WordFilter().setPrefix("RE").setSuffix("ed");
+
+        assertTrue(filter.matches("reused"));
+        assertTrue(filter.matches("red"));
+        assertFalse(filter.matches("bred"));
+        assertFalse(filter.matches("reuse"));
+        assertEquals(3, filter.getRequiredLength());
+
+        // The prefix and suffix may share letters, but not all of them
+        byte[] letterCount = filter.getLetterCount();
+        assertEquals(1, letterCount[index('r')]);
+        assertEquals(1, letterCount[index('e')]);
+        assertEquals(1, letterCount[index('d')]);
+    }
+
+    @Test
+    public void testFindWordsByDefault() {
+        WordFinder wordFinder = new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                return Arrays.asList("hello", "hell", "yell", "he");
+            }
+        };
+
+        WordFilter filter = new WordFilter().setContains("l");
+        assertEquals(Arrays.asList("hello", "hell", "yell"), wordFinder.getWords("x", filter, 0));
+        assertEquals(Arrays.asList("hello", "hell"), wordFinder.getWords("x", filter, 2));
+        assertEquals(Arrays.asList("hell", "yell"), wordFinder.getWords("x", new WordFilter().setMaxLength(4)
+                                                                                            .setMinLength(4), 0));
+        assertEquals(Collections.emptyList(), wordFinder.getWords("x", new WordFilter().setPrefix("x"), 0));
+        assertEquals(Arrays.asList("hello"), wordFinder.getWords("x", null, 1));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.server.vertx;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of AdmissionLimiter
+ */
+public class AdmissionLimiterTest {
+    private AdmissionLimiter limiter;
+
+    @Before
+    public void setUp() {
+        limiter = new AdmissionLimiter();
+    }
+
+    @Test
+    public void testRejectOverLimit() {
+        limiter.setLimit(2);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(2, limiter.getAdmitted());
+        assertEquals(1, limiter.getRejected());
+
+        limiter.release(System.nanoTime(), false);
+
+        assertTrue(limiter.tryAcquire());
+        assertEquals(2, limiter.getMaxInFlight());
+    }
+
+    @Test
+    public void testAdditiveIncrease() {
+        limiter.setLimit(4);
+
+        // Keeping the limit in use, each fast request answered raises it by one divided by the limit
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++)
+            assertTrue(limiter.tryAcquire());
+
+        for (int i = 0; i < 100; i++) {
+            limiter.release(start, false);
+            while (limiter.tryAcquire())
+                start = System.nanoTime();
+        }
+
+        // The square of the limit grows by about two for each request: 4 * 4 + 2 * 100
+        assertTrue(limiter.getLimit() >= 13);
+        assertTrue(limiter.getLimit() <= 15);
+        assertEquals(limiter.getLimit(), limiter.getInFlight());
+    }
+
+    @Test
+    public void testNoIncreaseWhenUnused() {
+        limiter.setLimit(10);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(System.nanoTime(), false);
+        }
+
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void testMultiplicativeDecrease() {
+        limiter.setLimit(10);
+        limiter.setLatencyThreshold(0);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++)
+            limiter.tryAcquire();
+
+        // All the slow requests of the same round decrease the limit once
+        limiter.release(start, false);
+        limiter.release(start, false);
+        assertEquals(9, limiter.getLimit());
+
+        // A request admitted after the decrease decreases it again
+        limiter.release(System.nanoTime(), true);
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    public void testFailedDecreases() {
+        limiter.setLimit(10);
+
+        limiter.tryAcquire();
+        limiter.release(System.nanoTime(), true);
+
+        assertEquals(9, limiter.getLimit());
+    }
+
+    @Test
+    public void testMinAndMaxLimit() {
+        limiter.setLimit(2);
+        limiter.setMinLimit(2);
+        limiter.setMaxLimit(2);
+        limiter.setBackoffRatio(0.1);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+            limiter.tryAcquire();
+            long start = System.nanoTime();
+            limiter.release(start, false);
+            limiter.release(start, true);
+        }
+
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void testReleaseWithoutSample() {
+        limiter.setLimit(10);
+
+        limiter.tryAcquire();
+        limiter.release();
+
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void testDisabled() {
+        limiter.setLimit(1);
+        limiter.setEnabled(false);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(0, limiter.getRejected());
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.server.vertx;
+
+import com.chibchasoft.wordfinder.model.WordFilter;
+import org.junit.Test;
+
+import static com.chibchasoft.wordfinder.util.Util.index;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test of FindWordsRequest
+ */
+public class FindWordsRequestTest {
+    @Test
+    public void testLetterCount() {
+        FindWordsRequest request = new FindWordsRequest("Hat-t?_");
+
+        assertEquals(1, request.getLetterCount()[index('h')]);
+        assertEquals(1, request.getLetterCount()[index('a')]);
+        assertEquals(2, request.getLetterCount()[index('t')]);
+        assertEquals(0, request.getLetterCount()[index('x')]);
+        assertEquals(2, request.getWildcards());
+        assertEquals("Hat-t?_", request.getLetters());
+    }
+
+    @Test
+    public void testNoLetters() {
+        FindWordsRequest request = new FindWordsRequest(null);
+
+        assertEquals(0, request.getWildcards());
+        assertNull(request.getLetters());
+    }
+
+    @Test
+    public void testOptions() {
+        FindWordsRequest request = new FindWordsRequest("hat").setLimit(-1).setFilter(new WordFilter());
+
+        assertEquals(0, request.getLimit());
+        assertNull(request.getFilter());
+        assertNull(request.getStream());
+
+        request.setLimit(5).setStream("stream").setFilter(new WordFilter().setPrefix("h"));
+
+        assertEquals(5, request.getLimit());
+        assertEquals("h", request.getFilter().getPrefix());
+        assertEquals("stream", request.getStream());
+    }
+}
@@ -12,14 +12,26 @@
  */
 package com.chibchasoft.wordfinder.server.vertx;
 
+import com.chibchasoft.wordfinder.model.Deadline;
+import com.chibchasoft.wordfinder.model.WordFilter;
 import com.chibchasoft.wordfinder.model.WordFinder;
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.test.core.VertxTestBase;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Test the FindWordsVerticle
@@ -108,4 +120,627 @@ public class FindWordsVerticleTest extends VertxTestBase {
 
         await();
     }
+
+    @Test
+    public void testFindWordsWithLimit() {
+        findWordsVerticle.setWordFinder(new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                return Arrays.asList("hello", "hell", "he");
+            }
+        });
+
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            DeliveryOptions options = new DeliveryOptions().addHeader(RestVerticle.LIMIT, "2");
+            vertx.eventBus().<Buffer>send(findWordsVerticle.getBusAddress(), "hello", options, arm -> {
+                assertTrue(arm.succeeded());
+                assertEquals(new JsonArray().add("hello").add("hell"), new JsonArray(arm.result().body()));
+                testComplete();
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testFindWordsWithFilter() {
+        findWordsVerticle.setWordFinder(new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                return Arrays.asList("hello", "hell", "yell", "he");
+            }
+        });
+
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            DeliveryOptions options = new DeliveryOptions().addHeader(RestVerticle.MIN_LENGTH, "4")
+                                                           .addHeader(RestVerticle.PREFIX, "he")
+                                                           .addHeader(RestVerticle.MAX_LENGTH, "invalid");
+            vertx.eventBus().<Buffer>send(findWordsVerticle.getBusAddress(), "hello", options, arm -> {
+                assertTrue(arm.succeeded());
+                assertEquals(new JsonArray().add("hello").add("hell"), new JsonArray(arm.result().body()));
+                testComplete();
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testNoBatchBusAddressSet() {
+        findWordsVerticle.setBatchBusAddress(null);
+
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.failed());
+            assertTrue(ar.cause().getMessage().contains("BatchBusAddress not set"));
+            testComplete();
+        });
+
+        await();
+    }
+
+    @Test
+    public void testFindWordsBatch() {
+        findWordsVerticle.setWordFinder(new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                return letters.equals("hello") ? Arrays.asList("hello", "hell", "he") : Collections.emptyList();
+            }
+        });
+
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            DeliveryOptions options = new DeliveryOptions().addHeader(RestVerticle.LIMIT, "2");
+            JsonArray racks = new JsonArray().add("hello").add("xyz").add("hello");
+            vertx.eventBus().<JsonObject>send(findWordsVerticle.getBatchBusAddress(), racks, options, arm -> {
+                assertTrue(arm.succeeded());
+                JsonObject expected = new JsonObject().put("hello", new JsonArray().add("hello").add("hell"))
+                                                      .put("xyz", new JsonArray());
+                assertEquals(expected, arm.result().body());
+                testComplete();
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testFindWordsBatchTimeout() {
+        findWordsVerticle.setWordFinder(new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                return Arrays.asList("hello", "hell", "he");
+            }
+
+            @Override
+            public List<String> getWords(String letters, WordFilter filter, int limit, Deadline deadline) {
+                // Searches until the deadline stops it
+                while (!deadline.shouldStop()) {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                return Arrays.asList("hello");
+            }
+        });
+
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            JsonArray racks = new JsonArray().add("hello").add("xyz");
+            DeliveryOptions options = new DeliveryOptions().addHeader(RestVerticle.TIMEOUT, "20");
+            vertx.eventBus().<JsonObject>send(findWordsVerticle.getBatchBusAddress(), racks, options, arm -> {
+                assertTrue(arm.failed());
+                assertEquals(504, ((ReplyException) arm.cause()).failureCode());
+
+                options.addHeader(RestVerticle.PARTIAL, "true");
+                vertx.eventBus().<JsonObject>send(findWordsVerticle.getBatchBusAddress(), racks, options, arm2 -> {
+                    assertTrue(arm2.succeeded());
+                    assertEquals("true", arm2.result().headers().get(RestVerticle.TRUNCATED));
+
+                    // The racks not searched before the deadline have no words
+                    JsonObject expected = new JsonObject().put("hello", new JsonArray().add("hello"))
+                                                          .put("xyz", new JsonArray());
+                    assertEquals(expected, arm2.result().body());
+                    testComplete();
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testFindWordsCached() {
+        AtomicInteger searches = new AtomicInteger();
+        findWordsVerticle.setWordFinder(new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                searches.incrementAndGet();
+                return Arrays.asList("hat", "ah");
+            }
+        });
+
+        ResultCache resultCache = new ResultCache().addWord("hat").addWord("ah");
+        findWordsVerticle.setResultCache(resultCache);
+
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            vertx.eventBus().<Buffer>send(findWordsVerticle.getBusAddress(), "tah", arm -> {
+                assertTrue(arm.succeeded());
+                assertEquals(new JsonArray().add("hat").add("ah"), new JsonArray(arm.result().body()));
+
+                vertx.eventBus().<Buffer>send(findWordsVerticle.getBusAddress(), "H-A-T-T", arm2 -> {
+                    assertTrue(arm2.succeeded());
+                    assertEquals(new JsonArray().add("hat").add("ah"), new JsonArray(arm2.result().body()));
+
+                    assertEquals(1, searches.get());
+                    assertEquals(1, resultCache.getHits());
+                    assertEquals(1, resultCache.getMisses());
+                    testComplete();
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testFindWordsStreamed() {
+        findWordsVerticle.setStreamChunkSize(2);
+        findWordsVerticle.setWordFinder(new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                return Arrays.asList("hello", "hell", "helo", "hoe", "he");
+            }
+        });
+
+        waitFor(2);
+
+        List<String> chunks = new ArrayList<>();
+        vertx.eventBus().<Buffer>consumer("stream.test", chunk -> {
+            chunks.add(chunk.body().toString() + "|" + chunk.headers().get(RestVerticle.LAST));
+            chunk.reply(null);
+
+            if (Boolean.parseBoolean(chunk.headers().get(RestVerticle.LAST))) {
+                assertEquals(Arrays.asList("\"hello\",\"hell\"|false", ",\"helo\",\"hoe\"|false", ",\"he\"|true"),
+                             chunks);
+                complete();
+            }
+        });
+
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            DeliveryOptions options = new DeliveryOptions().addHeader(RestVerticle.STREAM, "stream.test");
+            vertx.eventBus().<Integer>send(findWordsVerticle.getBusAddress(), "hello", options, arm -> {
+                // Replied once the words start being streamed
+                assertTrue(arm.succeeded());
+                assertEquals(5, arm.result().body().intValue());
+                complete();
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testFindNoWordsStreamed() {
+        waitFor(2);
+
+        vertx.eventBus().<Buffer>consumer("stream.test", chunk -> {
+            assertEquals(0, chunk.body().length());
+            assertEquals("true", chunk.headers().get(RestVerticle.LAST));
+            chunk.reply(null);
+            complete();
+        });
+
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            DeliveryOptions options = new DeliveryOptions().addHeader(RestVerticle.STREAM, "stream.test");
+            vertx.eventBus().<Integer>send(findWordsVerticle.getBusAddress(), "xyz", options, arm -> {
+                assertTrue(arm.succeeded());
+                assertEquals(0, arm.result().body().intValue());
+                complete();
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testStreamStopped() {
+        findWordsVerticle.setStreamChunkSize(1);
+        findWordsVerticle.setWordFinder(new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                return Arrays.asList("hello", "hell", "he");
+            }
+        });
+
+        AtomicInteger received = new AtomicInteger();
+        vertx.eventBus().<Buffer>consumer("stream.test", chunk -> {
+            received.incrementAndGet();
+            chunk.fail(500, "Connection closed");
+        });
+
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            DeliveryOptions options = new DeliveryOptions().addHeader(RestVerticle.STREAM, "stream.test");
+            vertx.eventBus().send(findWordsVerticle.getBusAddress(), "hello", options, arm -> {
+                assertTrue(arm.succeeded());
+
+                // No more chunks are sent once one is failed
+                vertx.setTimer(200, t -> {
+                    assertEquals(1, received.get());
+                    testComplete();
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testStreamSlowReader() {
+        findWordsVerticle.setStreamChunkSize(1);
+        findWordsVerticle.setWordFinder(new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                return Arrays.asList("hello", "hell", "helo", "hoe", "he");
+            }
+        });
+
+        waitFor(2);
+
+        // Each chunk is acknowledged after a while, so the stream takes longer than the timeout of the request
+        List<String> chunks = new ArrayList<>();
+        vertx.eventBus().<Buffer>consumer("stream.test", chunk -> vertx.setTimer(100, t -> {
+            chunks.add(chunk.body().toString());
+            chunk.reply(null);
+
+            if (Boolean.parseBoolean(chunk.headers().get(RestVerticle.LAST))) {
+                assertEquals(Arrays.asList("\"hello\"", ",\"hell\"", ",\"helo\"", ",\"hoe\"", ",\"he\""), chunks);
+                complete();
+            }
+        }));
+
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            DeliveryOptions options = new DeliveryOptions().addHeader(RestVerticle.STREAM, "stream.test")
+                                                           .setSendTimeout(200);
+            vertx.eventBus().<Integer>send(findWordsVerticle.getBusAddress(), "hello", options, arm -> {
+                assertTrue(arm.succeeded());
+                complete();
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testStreamTimeout() {
+        findWordsVerticle.setStreamChunkSize(1);
+        findWordsVerticle.setStreamTimeout(100);
+        findWordsVerticle.setWordFinder(new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                return Arrays.asList("hello", "hell", "he");
+            }
+        });
+
+        // The first chunk is never acknowledged, so the stream stops after the stream timeout
+        AtomicInteger received = new AtomicInteger();
+        vertx.eventBus().<Buffer>consumer("stream.test", chunk -> received.incrementAndGet());
+
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            DeliveryOptions options = new DeliveryOptions().addHeader(RestVerticle.STREAM, "stream.test");
+            vertx.eventBus().send(findWordsVerticle.getBusAddress(), "hello", options, arm -> {
+                assertTrue(arm.succeeded());
+                vertx.setTimer(300, t -> {
+                    assertEquals(1, received.get());
+                    testComplete();
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testFindWordsRequest() {
+        AtomicInteger searches = new AtomicInteger();
+        findWordsVerticle.setWordFinder(new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                searches.incrementAndGet();
+                return Arrays.asList("hello", "hell", "yell", "he");
+            }
+        });
+
+        findWordsVerticle.setResultCache(new ResultCache().addWord("hello").addWord("yell"));
+
+        FindWordsRequest request = new FindWordsRequest("hello").setLimit(1)
+                                                                .setFilter(new WordFilter().setMinLength(4));
+
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            vertx.eventBus().<FindWordsReply>send(findWordsVerticle.getBusAddress(), request, arm -> {
+                assertTrue(arm.succeeded());
+                Buffer encoded = arm.result().body().getEncoded();
+                assertEquals(new JsonArray().add("hello"), new JsonArray(encoded));
+
+                // The cached reply is sent as is, without copying it
+                vertx.eventBus().<FindWordsReply>send(findWordsVerticle.getBusAddress(), request, arm2 -> {
+                    assertTrue(arm2.succeeded());
+                    assertSame(encoded, arm2.result().body().getEncoded());
+                    assertEquals(1, searches.get());
+                    testComplete();
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testFindWordsRequestStreamed() {
+        findWordsVerticle.setWordFinder(new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                return Arrays.asList("hello", "hell", "he");
+            }
+        });
+
+        waitFor(2);
+
+        vertx.eventBus().<Buffer>consumer("stream.test", chunk -> {
+            assertEquals("\"hello\",\"hell\"", chunk.body().toString());
+            assertEquals("true", chunk.headers().get(RestVerticle.LAST));
+            chunk.reply(null);
+            complete();
+        });
+
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            FindWordsRequest request = new FindWordsRequest("hello").setLimit(2).setStream("stream.test");
+            vertx.eventBus().<Integer>send(findWordsVerticle.getBusAddress(), request, arm -> {
+                assertTrue(arm.succeeded());
+                assertEquals(2, arm.result().body().intValue());
+                complete();
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testInvalidBody() {
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            vertx.eventBus().send(findWordsVerticle.getBusAddress(), new JsonObject(), arm -> {
+                assertTrue(arm.failed());
+                assertEquals(400, ((ReplyException) arm.cause()).failureCode());
+                testComplete();
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testWorkerPool() {
+        findWordsVerticle.setWorkerPoolSize(2);
+
+        // Each search waits for the other one, so they only finish if they run in parallel
+        CountDownLatch searching = new CountDownLatch(2);
+        findWordsVerticle.setWordFinder(new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                assertTrue(Context.isOnWorkerThread());
+
+                searching.countDown();
+                try {
+                    assertTrue(searching.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+
+                return Arrays.asList(letters);
+            }
+        });
+
+        AtomicInteger replies = new AtomicInteger();
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            for (String letters : new String[] {"hat", "ten"}) {
+                vertx.eventBus().<FindWordsReply>send(findWordsVerticle.getBusAddress(), new FindWordsRequest(letters),
+                                                      arm -> {
+                    assertTrue(arm.succeeded());
+                    assertTrue(Context.isOnEventLoopThread());
+                    assertEquals(new JsonArray().add(letters), new JsonArray(arm.result().body().getEncoded()));
+
+                    if (replies.incrementAndGet() == 2)
+                        testComplete();
+                });
+            }
+        });
+
+        await();
+    }
+
+    @Test
+    public void testSearchFailed() {
+        findWordsVerticle.setWorkerPoolSize(1);
+        findWordsVerticle.setWordFinder(new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                throw new IllegalStateException("test");
+            }
+        });
+
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            vertx.eventBus().send(findWordsVerticle.getBusAddress(), new FindWordsRequest("hat"), arm -> {
+                assertTrue(arm.failed());
+                assertEquals(500, ((ReplyException) arm.cause()).failureCode());
+                testComplete();
+            });
+        });
+
+        await();
+    }
+    @Test
+    public void testDeadline() {
+        findWordsVerticle.setWordFinder(new TruncatingWordFinder());
+
+        ResultCache resultCache = new ResultCache().addWord("hat");
+        findWordsVerticle.setResultCache(resultCache);
+
+        Deadline deadline = new Deadline(0, TimeUnit.MILLISECONDS);
+        deadline.cancel();
+
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            FindWordsRequest request = new FindWordsRequest("hat").setDeadline(deadline);
+            vertx.eventBus().send(findWordsVerticle.getBusAddress(), request, arm -> {
+                assertTrue(arm.failed());
+                assertEquals(504, ((ReplyException) arm.cause()).failureCode());
+
+                FindWordsRequest partial = new FindWordsRequest("hat").setDeadline(deadline).setPartial(true);
+                vertx.eventBus().<FindWordsReply>send(findWordsVerticle.getBusAddress(), partial, arm2 -> {
+                    assertTrue(arm2.succeeded());
+                    assertTrue(arm2.result().body().isTruncated());
+                    assertEquals(new JsonArray().add("hat"), new JsonArray(arm2.result().body().getEncoded()));
+
+                    // Truncated replies are not cached
+                    assertNull(resultCache.get(resultCache.key(partial)));
+
+                    FindWordsRequest full = new FindWordsRequest("hat")
+                        .setDeadline(new Deadline(1, TimeUnit.HOURS));
+                    vertx.eventBus().<FindWordsReply>send(findWordsVerticle.getBusAddress(), full, arm3 -> {
+                        assertTrue(arm3.succeeded());
+                        assertFalse(arm3.result().body().isTruncated());
+                        assertEquals(new JsonArray().add("hat").add("ah"),
+                                     new JsonArray(arm3.result().body().getEncoded()));
+                        assertNotNull(resultCache.get(resultCache.key(full)));
+                        testComplete();
+                    });
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testDeadlineStreamed() {
+        findWordsVerticle.setWordFinder(new TruncatingWordFinder());
+
+        vertx.eventBus().<Buffer>consumer("stream.test", chunk -> fail("Truncated words streamed"));
+
+        Deadline deadline = new Deadline(0, TimeUnit.MILLISECONDS);
+        deadline.cancel();
+
+        vertx.deployVerticle(findWordsVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            FindWordsRequest request = new FindWordsRequest("hat").setDeadline(deadline).setPartial(true)
+                                                                  .setStream("stream.test");
+            vertx.eventBus().send(findWordsVerticle.getBusAddress(), request, arm -> {
+                assertTrue(arm.failed());
+                assertEquals(504, ((ReplyException) arm.cause()).failureCode());
+                testComplete();
+            });
+        });
+
+        await();
+    }
+
+    /**
+     * A WordFinder that only finds the first word once its deadline stops the search
+     */
+    private static class TruncatingWordFinder implements WordFinder {
+        @Override
+        public WordFinder add(String word) {
+            return this;
+        }
+
+        @Override
+        public List<String> getWords(String letters) {
+            return Arrays.asList("hat", "ah");
+        }
+
+        @Override
+        public List<String> getWords(String letters, WordFilter filter, int limit, Deadline deadline) {
+            return deadline != null && deadline.shouldStop() ? Arrays.asList("hat") : getWords(letters);
+        }
+    }
 }
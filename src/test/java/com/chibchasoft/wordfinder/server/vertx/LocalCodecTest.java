@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.server.vertx;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.test.core.VertxTestBase;
+import org.junit.Test;
+
+/**
+ * Test of LocalCodec
+ */
+public class LocalCodecTest extends VertxTestBase {
+    @Test
+    public void testTransform() {
+        LocalCodec<FindWordsRequest> codec = new LocalCodec<>(FindWordsRequest.class);
+        FindWordsRequest request = new FindWordsRequest("hat");
+
+        assertSame(request, codec.transform(request));
+        assertEquals(FindWordsRequest.class.getName(), codec.name());
+        assertEquals(-1, codec.systemCodecID());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testEncodeToWire() {
+        new LocalCodec<>(FindWordsRequest.class).encodeToWire(Buffer.buffer(), new FindWordsRequest("hat"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testDecodeFromWire() {
+        new LocalCodec<>(FindWordsRequest.class).decodeFromWire(0, Buffer.buffer());
+    }
+
+    @Test
+    public void testSentAsIs() {
+        LocalCodec.register(vertx.eventBus(), FindWordsRequest.class);
+        // Registering it again is ignored
+        LocalCodec.register(vertx.eventBus(), FindWordsRequest.class);
+
+        FindWordsRequest request = new FindWordsRequest("hat");
+        vertx.eventBus().<FindWordsRequest>consumer("test", msg -> {
+            assertSame(request, msg.body());
+            testComplete();
+        });
+
+        vertx.eventBus().send("test", request);
+
+        await();
+    }
+}
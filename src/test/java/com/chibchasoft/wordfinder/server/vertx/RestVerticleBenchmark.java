@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.server.vertx;
+
+import com.chibchasoft.wordfinder.model.Trie;
+import com.chibchasoft.wordfinder.util.Util;
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpVersion;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local benchmark of the requests per second served by 1, 4 and 16 instances of the {@link RestVerticle} (or any
+ * other numbers of instances), with a {@link FindWordsVerticle} searching a {@link Trie} of the words behind them.
+ * The requests ask for the best 20 words of racks of 7 letters, chosen at random (with a fixed seed, so every run
+ * sends the same requests) among 1000 racks, so most of them are answered from the {@link ResultCache} and the
+ * benchmark measures the HTTP tier. The load is generated from a separate Vertx instance, in the same process, keeping
+ * a fixed number of requests in flight.
+ *
+ * It is not a test. From the project folder, run it with:
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/classes:target/test-classes:$(cat target/classpath.txt) \
+ *      com.chibchasoft.wordfinder.server.vertx.RestVerticleBenchmark [instances] [seconds] [connections] [http2]
+ * </pre>
+ * where instances defaults to 1,4,16, seconds (measured, after as many seconds of warm up) to 10, connections (the
+ * requests in flight) to 64 and http2 (whether to send the requests multiplexed over h2c) to false. The server uses
+ * the native transport when available. Only warnings are logged, so logging every request does not skew the results.
+ */
+public class RestVerticleBenchmark {
+    private static final String WORDS = "src/main/config/english_words.txt";
+    private static final int PORT = 8099;
+
+    public static void main(String[] args) throws Exception {
+        String[] instances = (args.length > 0 ? args[0] : "1,4,16").split(",");
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        boolean http2 = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+        Configurator.setRootLevel(Level.WARN);
+
+        byte[] letterPoints = new byte[Util.LETTERS_SIZE];
+        for (int i = 0; i < letterPoints.length; i++)
+            letterPoints[i] = 1;
+
+        Trie trie = new Trie();
+        trie.setLetterPoints(letterPoints);
+        ResultCache resultCache = new ResultCache();
+        for (String word : Files.readAllLines(Paths.get(WORDS))) {
+            trie.add(word);
+            resultCache.addWord(word);
+        }
+
+        Vertx server = Vertx.vertx(new VertxOptions().setPreferNativeTransport(true));
+        Vertx load = Vertx.vertx();
+
+        System.out.println("Native transport " + (server.isNativeTransportEnabled() ? "enabled" : "disabled") +
+                           ", " + Runtime.getRuntime().availableProcessors() + " processors, " + connections +
+                           " connections, " + (http2 ? "HTTP/2" : "HTTP/1.1"));
+
+        FindWordsVerticle findWordsVerticle = new FindWordsVerticle();
+        findWordsVerticle.setWordFinder(trie);
+        findWordsVerticle.setResultCache(resultCache);
+        findWordsVerticle.setWorkerPoolSize(Runtime.getRuntime().availableProcessors());
+        deploy(server, findWordsVerticle);
+
+        List<String> racks = racks();
+
+        // Warms up the whole stack once, so the first number of instances measured is not at a disadvantage
+        measure(server, load, racks, 1, connections, 2 * seconds, http2);
+
+        for (String count : instances) {
+            long requests = measure(server, load, racks, Integer.parseInt(count.trim()), connections, seconds, http2);
+
+            System.out.println(String.format("%3s instances: %,10.0f requests/sec", count.trim(),
+                                             requests / (double) seconds));
+        }
+
+        load.close();
+        server.close();
+    }
+
+    /**
+     * Deploys the instances of the RestVerticle and sends requests for the seconds, after as many seconds of warm up
+     * @return the number of requests answered with a 200 after the warm up
+     */
+    private static long measure(Vertx server, Vertx load, List<String> racks, int instances, int connections,
+                               int seconds, boolean http2) throws Exception {
+        List<String> deploymentIds = new ArrayList<>();
+        for (int i = 0; i < instances; i++) {
+            RestVerticle restVerticle = new RestVerticle();
+            restVerticle.setServerPort(PORT);
+            deploymentIds.add(deploy(server, restVerticle));
+        }
+
+        HttpClientOptions options = new HttpClientOptions().setDefaultHost("localhost").setDefaultPort(PORT)
+                                                           .setKeepAlive(true).setMaxPoolSize(connections);
+        if (http2) {
+            options.setProtocolVersion(HttpVersion.HTTP_2).setHttp2ClearTextUpgrade(false)
+                   .setHttp2MultiplexingLimit(connections);
+        }
+
+        // The client is only used from one context, so its connections are reused
+        Context context = load.getOrCreateContext();
+        HttpClient client = load.createHttpClient(options);
+
+        run(context, client, racks, connections, seconds);
+        long requests = run(context, client, racks, connections, seconds);
+
+        client.close();
+        for (String deploymentId : deploymentIds)
+            undeploy(server, deploymentId);
+
+        return requests;
+    }
+
+    private static List<String> racks() {
+        Random random = new Random(42);
+        List<String> racks = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            StringBuilder rack = new StringBuilder();
+            for (int j = 0; j < 7; j++)
+                rack.append("eeeaaiioonrtlsudgbcmpfhvwykjxqz".charAt(random.nextInt(31)));
+            racks.add(rack.toString());
+        }
+
+        return racks;
+    }
+
+    /**
+     * Keeps the connections busy sending requests for the seconds
+     * @return the number of requests answered with a 200
+     */
+    private static long run(Context context, HttpClient client, List<String> racks, int connections, int seconds)
+        throws Exception {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        AtomicLong answered = new AtomicLong();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        AtomicLong pending = new AtomicLong(connections);
+
+        context.runOnContext(v -> {
+            Random random = new Random(7);
+            for (int i = 0; i < connections; i++)
+                send(client, racks, random, end, answered, pending, done);
+        });
+
+        done.get();
+        return answered.get();
+    }
+
+    private static void send(HttpClient client, List<String> racks, Random random, long end, AtomicLong answered,
+                             AtomicLong pending, CompletableFuture<Void> done) {
+        if (System.nanoTime() >= end) {
+            if (pending.decrementAndGet() == 0)
+                done.complete(null);
+            return;
+        }
+
+        String rack = racks.get(random.nextInt(racks.size()));
+        client.get("/words/" + rack + "?limit=20", resp -> resp.bodyHandler(body -> {
+            if (resp.statusCode() == 200)
+                answered.incrementAndGet();
+
+            send(client, racks, random, end, answered, pending, done);
+        })).exceptionHandler(t -> send(client, racks, random, end, answered, pending, done))
+           .setTimeout(TimeUnit.SECONDS.toMillis(10)).end();
+    }
+
+    private static String deploy(Vertx vertx, io.vertx.core.Verticle verticle) throws Exception {
+        CompletableFuture<String> deployed = new CompletableFuture<>();
+        vertx.deployVerticle(verticle, new DeploymentOptions(), ar -> {
+            if (ar.succeeded())
+                deployed.complete(ar.result());
+            else
+                deployed.completeExceptionally(ar.cause());
+        });
+
+        return deployed.get();
+    }
+
+    private static void undeploy(Vertx vertx, String deploymentId) throws Exception {
+        CompletableFuture<Void> undeployed = new CompletableFuture<>();
+        vertx.undeploy(deploymentId, ar -> undeployed.complete(null));
+        undeployed.get();
+    }
+}
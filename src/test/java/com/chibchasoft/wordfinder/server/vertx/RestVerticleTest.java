@@ -11,22 +11,42 @@
  * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
  */
 package com.chibchasoft.wordfinder.server.vertx;
+
+import com.chibchasoft.wordfinder.model.Deadline;
+import com.chibchasoft.wordfinder.model.WordFilter;
+import com.chibchasoft.wordfinder.model.WordFinder;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.http.HttpClient;
 
 import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpVersion;
 import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.test.core.VertxTestBase;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * Test the RestVerticle
  */
 public class RestVerticleTest extends VertxTestBase {
     private RestVerticle restVerticle = new RestVerticle();
+    private static final int STREAM_CHUNKS = 32;
+    private static final int STREAM_CHUNK_WORDS = 16 * 1024;
+
     private HttpClient client;
 
     @Before
@@ -34,11 +54,16 @@ public class RestVerticleTest extends VertxTestBase {
     }
 
     @After
-    public void after() {
+    public void after() throws InterruptedException {
         if (client != null)
             client.close();
 
-        restVerticle.stop();
+        // Undeploys every verticle, waiting for their servers to close, so the next test can bind the same port
+        CountDownLatch undeployed = new CountDownLatch(vertx.deploymentIDs().size());
+        for (String deploymentId : vertx.deploymentIDs())
+            vertx.undeploy(deploymentId, ar -> undeployed.countDown());
+
+        assertTrue(undeployed.await(10, TimeUnit.SECONDS));
     }
 
     @Test
@@ -61,6 +86,25 @@ public class RestVerticleTest extends VertxTestBase {
         await();
     }
 
+    @Test
+    public void testEncodedReply() {
+        createConsumer(restVerticle.getBusAddress(), msg -> msg.reply(new JsonArray().add("hat").toBuffer()));
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/hat", resp -> {
+                assertTrue(resp.statusCode() == 200);
+                resp.bodyHandler(buf -> {
+                    assertEquals(new JsonArray().add("hat"), new JsonArray(buf));
+                    testComplete();
+                });
+            });
+        });
+
+        await();
+    }
+
     @Test
     public void testPort8090() {
         restVerticle.setServerPort(8090);
@@ -188,6 +232,881 @@ public class RestVerticleTest extends VertxTestBase {
         await();
     }
 
+    @Test
+    public void testLimit() {
+        createConsumer(restVerticle.getBusAddress(), msg -> {
+            assertEquals(20, msg.body().getLimit());
+            msg.reply(new JsonArray());
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/x?limit=20", resp -> {
+                assertTrue(resp.statusCode() == 200);
+                testComplete();
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testNoLimit() {
+        createConsumer(restVerticle.getBusAddress(), msg -> {
+            assertEquals(0, msg.body().getLimit());
+            msg.reply(new JsonArray());
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/x", resp -> {
+                assertTrue(resp.statusCode() == 200);
+                testComplete();
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testInvalidLimit() {
+        createConsumer(restVerticle.getBusAddress(), msg -> fail("No request expected"));
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/x?limit=abc", resp -> {
+                assertTrue(resp.statusCode() == 400);
+                client.getNow("/words/x?limit=-1", resp2 -> {
+                    assertTrue(resp2.statusCode() == 400);
+                    testComplete();
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testFilter() {
+        createConsumer(restVerticle.getBusAddress(), msg -> {
+            WordFilter filter = msg.body().getFilter();
+            assertEquals(3, filter.getMinLength());
+            assertEquals(5, filter.getMaxLength());
+            assertEquals("q", filter.getContains());
+            assertEquals("re", filter.getPrefix());
+            assertEquals("ed", filter.getSuffix());
+            msg.reply(new JsonArray());
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/x?minLength=3&maxLength=5&contains=q&prefix=re&suffix=ed", resp -> {
+                assertTrue(resp.statusCode() == 200);
+                testComplete();
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testStream() {
+        createConsumer(restVerticle.getBusAddress(), msg -> {
+            String address = msg.body().getStream();
+            assertNotNull(address);
+
+            DeliveryOptions first = new DeliveryOptions().addHeader(RestVerticle.LAST, "false");
+            DeliveryOptions last = new DeliveryOptions().addHeader(RestVerticle.LAST, "true");
+            vertx.eventBus().send(address, Buffer.buffer("\"hat\",\"ah\""), first, ar1 -> {
+                assertTrue(ar1.succeeded());
+                vertx.eventBus().send(address, Buffer.buffer(",\"ha\""), last, ar2 -> {
+                    assertTrue(ar2.succeeded());
+                    msg.reply(3);
+                });
+            });
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/hat?stream=true", resp -> {
+                assertTrue(resp.statusCode() == 200);
+                assertEquals("chunked", resp.getHeader("transfer-encoding"));
+                resp.bodyHandler(buf -> {
+                    assertEquals(new JsonArray().add("hat").add("ah").add("ha"), new JsonArray(buf));
+                    testComplete();
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testStreamPausedClient() {
+        restVerticle.setStreamTimeout(1000);
+
+        // The request is replied right away and the chunks are only requested as the client reads them
+        createConsumer(restVerticle.getBusAddress(), msg -> {
+            msg.reply(STREAM_CHUNKS);
+            sendChunks(msg.body().getStream(), 0, ar -> assertTrue(ar.succeeded()));
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/hat?stream=true", resp -> {
+                assertEquals(200, resp.statusCode());
+
+                // Paused twice, for longer in total than the stream timeout
+                resp.pause();
+                vertx.setTimer(600, t1 -> {
+                    resp.resume();
+                    vertx.setTimer(100, t2 -> {
+                        resp.pause();
+                        vertx.setTimer(600, t3 -> resp.resume());
+                    });
+                });
+
+                resp.bodyHandler(buf -> {
+                    assertEquals(STREAM_CHUNKS * STREAM_CHUNK_WORDS, new JsonArray(buf).size());
+                    testComplete();
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testStreamStalledClient() {
+        restVerticle.setStreamTimeout(200);
+
+        AtomicReference<FindWordsRequest> request = new AtomicReference<>();
+        createConsumer(restVerticle.getBusAddress(), msg -> {
+            request.set(msg.body());
+            msg.reply(STREAM_CHUNKS);
+
+            // The chunk held while the client does not read is failed once the connection is closed
+            sendChunks(msg.body().getStream(), 0, ar -> {
+                assertTrue(ar.failed());
+                assertTrue(request.get().getDeadline().isCancelled());
+                testComplete();
+            });
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/hat?stream=true", HttpClientResponse::pause);
+        });
+
+        await();
+    }
+
+    @Test
+    public void testStreamClosedByClient() {
+        AtomicReference<FindWordsRequest> request = new AtomicReference<>();
+        createConsumer(restVerticle.getBusAddress(), msg -> {
+            request.set(msg.body());
+            msg.reply(STREAM_CHUNKS);
+
+            sendChunks(msg.body().getStream(), 0, ar -> {
+                assertTrue(ar.failed());
+                assertTrue(request.get().getDeadline().isCancelled());
+                testComplete();
+            });
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/hat?stream=true", resp -> {
+                resp.pause();
+                vertx.setTimer(200, t -> {
+                    client.close();
+                    client = null;
+                });
+            });
+        });
+
+        await();
+    }
+
+    /**
+     * Sends chunks of words, each one once the previous one is replied, like FindWordsVerticle does. The chunks are
+     * large enough to fill the write queue of the response while the client is paused
+     */
+    private void sendChunks(String address, int chunk, Handler<AsyncResult<Message<Object>>> lastHandler) {
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < STREAM_CHUNK_WORDS; i++)
+            words.append(chunk > 0 || i > 0 ? "," : "").append("\"abcdefghijklmnopqrstuvwxyz\"");
+
+        boolean last = chunk == STREAM_CHUNKS - 1;
+        DeliveryOptions options = new DeliveryOptions().addHeader(RestVerticle.LAST, String.valueOf(last));
+        vertx.eventBus().send(address, Buffer.buffer(words.toString()), options, ar -> {
+            if (last || ar.failed())
+                lastHandler.handle(ar);
+            else
+                sendChunks(address, chunk + 1, lastHandler);
+        });
+    }
+
+    @Test
+    public void testStreamByDefault() {
+        restVerticle.setStreamByDefault(true);
+
+        createConsumer(restVerticle.getBusAddress(), msg -> {
+            assertNotNull(msg.body().getStream());
+            msg.fail(1, "test");
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+
+            // The status was sent before the failure, so the response is cut short
+            client.getNow("/words/hat", resp -> {
+                assertTrue(resp.statusCode() == 200);
+                assertEquals("chunked", resp.getHeader("transfer-encoding"));
+                resp.exceptionHandler(t -> testComplete());
+                resp.endHandler(v -> fail("Response not expected to end"));
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testFindWordsReply() {
+        createConsumer(restVerticle.getBusAddress(),
+                       msg -> msg.reply(new FindWordsReply(Arrays.asList("hat", "ah"))));
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/hat", resp -> {
+                assertTrue(resp.statusCode() == 200);
+                resp.bodyHandler(buf -> {
+                    assertEquals(new JsonArray().add("hat").add("ah"), new JsonArray(buf));
+                    testComplete();
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testDirectNoWordFinder() {
+        restVerticle.setDirect(true);
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.failed());
+            assertTrue(ar.cause().getMessage().contains("WordFinder not set"));
+            testComplete();
+        });
+
+        await();
+    }
+
+    @Test
+    public void testDirect() {
+        AtomicInteger searches = new AtomicInteger();
+        restVerticle.setDirect(true);
+        restVerticle.setResultCache(new ResultCache().addWord("hat"));
+        restVerticle.setWordFinder(new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                searches.incrementAndGet();
+                return Arrays.asList("hat", "ah", "ha");
+            }
+        });
+
+        createConsumer(restVerticle.getBusAddress(), msg -> fail("No request expected"));
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/hat?limit=2", resp -> {
+                assertTrue(resp.statusCode() == 200);
+                resp.bodyHandler(buf -> {
+                    assertEquals(new JsonArray().add("hat").add("ah"), new JsonArray(buf));
+
+                    // The cached reply is written again, unchanged
+                    client.getNow("/words/tha?limit=2", resp2 -> {
+                        assertTrue(resp2.statusCode() == 200);
+                        resp2.bodyHandler(buf2 -> {
+                            assertEquals(buf, buf2);
+                            assertEquals(1, searches.get());
+                            testComplete();
+                        });
+                    });
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testDirectStream() {
+        restVerticle.setDirect(true);
+        restVerticle.setStreamChunkSize(2);
+        restVerticle.setWordFinder(new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                return Arrays.asList("hat", "ah", "ha");
+            }
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/hat?stream=true", resp -> {
+                assertTrue(resp.statusCode() == 200);
+                assertEquals("chunked", resp.getHeader("transfer-encoding"));
+                resp.bodyHandler(buf -> {
+                    assertEquals(new JsonArray().add("hat").add("ah").add("ha"), new JsonArray(buf));
+                    testComplete();
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testDirectFailure() {
+        restVerticle.setDirect(true);
+        restVerticle.setWordFinder(new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                throw new IllegalStateException("test");
+            }
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/hat", resp -> {
+                assertTrue(resp.statusCode() == 500);
+                testComplete();
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testInstancesSharePort() {
+        // Each instance sends its requests to its own address, to tell which one served each request
+        RestVerticle other = new RestVerticle();
+        other.setBusAddress("otherFindWords");
+
+        AtomicInteger served = new AtomicInteger();
+        AtomicInteger otherServed = new AtomicInteger();
+        createConsumer(restVerticle.getBusAddress(), msg -> {
+            served.incrementAndGet();
+            msg.reply(new JsonArray().add("hat"));
+        });
+        createConsumer(other.getBusAddress(), msg -> {
+            otherServed.incrementAndGet();
+            msg.reply(new JsonArray().add("hat"));
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            vertx.deployVerticle(other, ar2 -> {
+                assertTrue(ar2.succeeded());
+                // A connection per request, which are distributed among the instances
+                client = vertx.createHttpClient(new HttpClientOptions().setKeepAlive(false)
+                                                                       .setDefaultHost(restVerticle.getServerHost())
+                                                                       .setDefaultPort(restVerticle.getServerPort()));
+                getUntilBothServe(8, served, otherServed);
+            });
+        });
+
+        await();
+    }
+
+    private void getUntilBothServe(int requests, AtomicInteger served, AtomicInteger otherServed) {
+        client.getNow("/words/hat", resp -> {
+            assertEquals(200, resp.statusCode());
+            if (served.get() > 0 && otherServed.get() > 0)
+                testComplete();
+            else if (requests > 1)
+                getUntilBothServe(requests - 1, served, otherServed);
+            else
+                fail("Requests served by one instance only: " + served + " and " + otherServed);
+        });
+    }
+
+    @Test
+    public void testHttp2ClearText() {
+        createConsumer(restVerticle.getBusAddress(), msg -> msg.reply(new JsonArray().add("hat")));
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            // With prior knowledge, without upgrading from HTTP/1.1
+            client = vertx.createHttpClient(new HttpClientOptions().setProtocolVersion(HttpVersion.HTTP_2)
+                                                                   .setHttp2ClearTextUpgrade(false)
+                                                                   .setDefaultHost(restVerticle.getServerHost())
+                                                                   .setDefaultPort(restVerticle.getServerPort()));
+            client.getNow("/words/hat", resp -> {
+                assertTrue(resp.statusCode() == 200);
+                assertEquals(HttpVersion.HTTP_2, resp.version());
+                resp.bodyHandler(buf -> {
+                    assertEquals(new JsonArray().add("hat"), new JsonArray(buf));
+                    testComplete();
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testCompressionThreshold() {
+        restVerticle.setServerOptions("{\"compressionSupported\": true, \"tcpKeepAlive\": true}");
+        restVerticle.setCompressionThreshold(64);
+
+        JsonArray many = new JsonArray();
+        for (int i = 0; i < 100; i++)
+            many.add("hat");
+
+        createConsumer(restVerticle.getBusAddress(),
+                       msg -> msg.reply(msg.body().getLetters().equals("many") ? many : new JsonArray().add("hat")));
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.get("/words/many", resp -> {
+                assertTrue(resp.statusCode() == 200);
+                assertEquals("gzip", resp.getHeader("content-encoding"));
+
+                client.get("/words/hat", resp2 -> {
+                    assertTrue(resp2.statusCode() == 200);
+                    assertTrue(!"gzip".equals(resp2.getHeader("content-encoding")));
+                    resp2.bodyHandler(buf -> {
+                        assertEquals(new JsonArray().add("hat"), new JsonArray(buf));
+                        testComplete();
+                    });
+                }).putHeader("accept-encoding", "gzip").end();
+            }).putHeader("accept-encoding", "gzip").end();
+        });
+
+        await();
+    }
+
+    @Test
+    public void testInvalidServerOptions() {
+        restVerticle.setServerOptions("{invalid");
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.failed());
+            assertTrue(ar.cause().getMessage().contains("Invalid server options"));
+            testComplete();
+        });
+
+        await();
+    }
+
+    @Test
+    public void testAdmissionLimit() {
+        AdmissionLimiter limiter = new AdmissionLimiter();
+        limiter.setLimit(1);
+        limiter.setRetryAfter(2);
+        restVerticle.setAdmissionLimiter(limiter);
+
+        // The first request is only replied once the second one is rejected
+        createConsumer(restVerticle.getBusAddress(), msg ->
+            client.getNow("/words/ten", resp -> {
+                assertEquals(503, resp.statusCode());
+                assertEquals("2", resp.getHeader("Retry-After"));
+                assertEquals(1, limiter.getRejected());
+                assertEquals(1, limiter.getInFlight());
+
+                msg.reply(new JsonArray().add("hat"));
+            }));
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/hat", resp -> {
+                assertEquals(200, resp.statusCode());
+                assertEquals(0, limiter.getInFlight());
+                testComplete();
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testAdmissionLimitBatch() {
+        AdmissionLimiter limiter = new AdmissionLimiter();
+        limiter.setLimit(0);
+        restVerticle.setAdmissionLimiter(limiter);
+
+        vertx.eventBus().consumer(restVerticle.getBatchBusAddress(), msg -> fail("No request expected"));
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.post("/words/batch", resp -> {
+                assertEquals(503, resp.statusCode());
+                assertEquals("1", resp.getHeader("Retry-After"));
+                testComplete();
+            }).end(new JsonArray().add("hat").encode());
+        });
+
+        await();
+    }
+
+    @Test
+    public void testTimeout() {
+        restVerticle.setSearchTimeout(50);
+
+        // The timeout requested can not be longer than the search timeout
+        createConsumer(restVerticle.getBusAddress(), msg -> {
+            assertTrue(msg.body().getDeadline().getRemaining(TimeUnit.MILLISECONDS) <= 50);
+            assertFalse(msg.body().isPartial());
+            msg.fail(504, "test");
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/hat?timeout=5000", resp -> {
+                assertEquals(504, resp.statusCode());
+                testComplete();
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testNoSearchTimeout() {
+        restVerticle.setSearchTimeout(0);
+
+        createConsumer(restVerticle.getBusAddress(), msg -> {
+            long remaining = msg.body().getDeadline().getRemaining(TimeUnit.MILLISECONDS);
+            assertTrue(msg.body().getLetters().equals("hat") ? remaining == Long.MAX_VALUE : remaining <= 100);
+            msg.reply(new JsonArray());
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/hat", resp -> {
+                assertEquals(200, resp.statusCode());
+                client.getNow("/words/ten?timeout=100", resp2 -> {
+                    assertEquals(200, resp2.statusCode());
+                    testComplete();
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testInvalidTimeout() {
+        createConsumer(restVerticle.getBusAddress(), msg -> fail("No request expected"));
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/x?timeout=abc", resp -> {
+                assertEquals(400, resp.statusCode());
+                client.getNow("/words/x?timeout=-1", resp2 -> {
+                    assertEquals(400, resp2.statusCode());
+                    testComplete();
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testPartial() {
+        createConsumer(restVerticle.getBusAddress(), msg -> {
+            assertTrue(msg.body().isPartial());
+            msg.reply(new FindWordsReply(Arrays.asList("hat"), true));
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/hat?partial=true", resp -> {
+                assertEquals(200, resp.statusCode());
+                assertEquals("true", resp.getHeader(RestVerticle.TRUNCATED));
+                resp.bodyHandler(buf -> {
+                    assertEquals(new JsonArray().add("hat"), new JsonArray(buf));
+                    testComplete();
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testCancelledWhenClosed() {
+        AtomicReference<FindWordsRequest> request = new AtomicReference<>();
+        createConsumer(restVerticle.getBusAddress(), msg -> {
+            request.set(msg.body());
+            client.close();
+            client = null;
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/hat", resp -> fail("No response expected"));
+        });
+
+        waitUntil(() -> request.get() != null && request.get().getDeadline().isCancelled());
+    }
+
+    @Test
+    public void testDirectTimeout() {
+        restVerticle.setDirect(true);
+        restVerticle.setWordFinder(new WordFinder() {
+            @Override
+            public WordFinder add(String word) {
+                return this;
+            }
+
+            @Override
+            public List<String> getWords(String letters) {
+                return Arrays.asList("hat", "ah");
+            }
+
+            @Override
+            public List<String> getWords(String letters, WordFilter filter, int limit, Deadline deadline) {
+                while (!deadline.shouldStop()) {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+                return Arrays.asList("hat");
+            }
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/hat?timeout=10", resp -> {
+                assertEquals(504, resp.statusCode());
+                client.getNow("/words/hat?timeout=10&partial=true", resp2 -> {
+                    assertEquals(200, resp2.statusCode());
+                    assertEquals("true", resp2.getHeader(RestVerticle.TRUNCATED));
+                    resp2.bodyHandler(buf -> {
+                        assertEquals(new JsonArray().add("hat"), new JsonArray(buf));
+
+                        // The words are found before streaming them, so they can be marked too
+                        client.getNow("/words/hat?timeout=10&partial=true&stream=true", resp3 -> {
+                            assertEquals(200, resp3.statusCode());
+                            assertEquals("true", resp3.getHeader(RestVerticle.TRUNCATED));
+                            resp3.bodyHandler(buf3 -> {
+                                assertEquals(new JsonArray().add("hat"), new JsonArray(buf3));
+                                testComplete();
+                            });
+                        });
+                    });
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testInvalidFilter() {
+        createConsumer(restVerticle.getBusAddress(), msg -> fail("No request expected"));
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/x?minLength=abc", resp -> {
+                assertTrue(resp.statusCode() == 400);
+                client.getNow("/words/x?maxLength=-1", resp2 -> {
+                    assertTrue(resp2.statusCode() == 400);
+                    testComplete();
+                });
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testWildcards() {
+        createConsumer(restVerticle.getBusAddress(), msg -> {
+            assertEquals("ha?_", msg.body().getLetters());
+            assertEquals(2, msg.body().getWildcards());
+            msg.reply(new JsonArray());
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.getNow("/words/ha%3F_", resp -> {
+                assertTrue(resp.statusCode() == 200);
+                testComplete();
+            });
+        });
+
+        await();
+    }
+
+    @Test
+    public void testBatch() {
+        vertx.eventBus().<JsonArray>consumer(restVerticle.getBatchBusAddress(), msg -> {
+            assertEquals(new JsonArray().add("hat").add("ah"), msg.body());
+            assertEquals("2", msg.headers().get(RestVerticle.LIMIT));
+            assertEquals(String.valueOf(restVerticle.getSearchTimeout()), msg.headers().get(RestVerticle.TIMEOUT));
+            assertEquals("false", msg.headers().get(RestVerticle.PARTIAL));
+            msg.reply(new JsonObject().put("hat", new JsonArray().add("hat")).put("ah", new JsonArray()));
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.post("/words/batch?limit=2", resp -> {
+                assertTrue(resp.statusCode() == 200);
+                resp.bodyHandler(buf -> {
+                    JsonObject jsonObject = new JsonObject(buf);
+                    assertEquals(new JsonArray().add("hat"), jsonObject.getJsonArray("hat"));
+                    assertTrue(jsonObject.getJsonArray("ah").isEmpty());
+                    testComplete();
+                });
+            }).end("[\"hat\", \"ah\"]");
+        });
+
+        await();
+    }
+
+    @Test
+    public void testInvalidBatch() {
+        vertx.eventBus().consumer(restVerticle.getBatchBusAddress(), msg -> fail("No request expected"));
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.post("/words/batch", resp -> {
+                assertTrue(resp.statusCode() == 400);
+                client.post("/words/batch", resp2 -> {
+                    assertTrue(resp2.statusCode() == 400);
+                    client.post("/words/batch?limit=abc", resp3 -> {
+                        assertTrue(resp3.statusCode() == 400);
+                        testComplete();
+                    }).end("[\"hat\"]");
+                }).end("[\"hat\", 1]");
+            }).end("hat");
+        });
+
+        await();
+    }
+
+    @Test
+    public void testBatchTooLarge() {
+        restVerticle.setBatchMaxSize(2);
+
+        vertx.eventBus().consumer(restVerticle.getBatchBusAddress(), msg -> fail("No request expected"));
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.post("/words/batch", resp -> {
+                assertTrue(resp.statusCode() == 413);
+                testComplete();
+            }).end("[\"hat\", \"ah\", \"at\"]");
+        });
+
+        await();
+    }
+
+    @Test
+    public void testBatchRackTooLarge() {
+        restVerticle.setBatchMaxRackLength(5);
+        restVerticle.setBatchMaxRackWildcards(1);
+
+        vertx.eventBus().consumer(restVerticle.getBatchBusAddress(), msg -> fail("No request expected"));
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.post("/words/batch", resp -> {
+                assertEquals(413, resp.statusCode());
+                client.post("/words/batch", resp2 -> {
+                    assertEquals(413, resp2.statusCode());
+                    testComplete();
+                }).end("[\"hat\", \"h?_\"]");
+            }).end("[\"hat\", \"hatred\"]");
+        });
+
+        await();
+    }
+
+    @Test
+    public void testBatchTimeout() {
+        restVerticle.setSearchTimeout(50);
+
+        vertx.eventBus().<JsonArray>consumer(restVerticle.getBatchBusAddress(), msg -> {
+            assertEquals("50", msg.headers().get(RestVerticle.TIMEOUT));
+            if (Boolean.parseBoolean(msg.headers().get(RestVerticle.PARTIAL)))
+                msg.reply(new JsonObject().put("hat", new JsonArray().add("hat")).put("ah", new JsonArray()),
+                          new DeliveryOptions().addHeader(RestVerticle.TRUNCATED, "true"));
+            else
+                msg.fail(504, "test");
+        });
+
+        vertx.deployVerticle(restVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            client = createHttpCient(restVerticle.getServerHost(), restVerticle.getServerPort());
+            client.post("/words/batch?timeout=100", resp -> {
+                assertEquals(504, resp.statusCode());
+                client.post("/words/batch?partial=true", resp2 -> {
+                    assertEquals(200, resp2.statusCode());
+                    assertEquals("true", resp2.getHeader(RestVerticle.TRUNCATED));
+                    resp2.bodyHandler(buf -> {
+                        assertEquals(new JsonArray().add("hat"), new JsonObject(buf).getJsonArray("hat"));
+                        testComplete();
+                    });
+                }).end("[\"hat\", \"ah\"]");
+            }).end("[\"hat\", \"ah\"]");
+        });
+
+        await();
+    }
+
     private HttpClient createHttpCient(String host, int port) {
         HttpClientOptions httpClientOptions = new HttpClientOptions();
         httpClientOptions.setDefaultPort(port);
@@ -195,7 +1114,7 @@ public class RestVerticleTest extends VertxTestBase {
         return vertx.createHttpClient(httpClientOptions);
     }
 
-    private void createConsumer(String address, Handler<Message<String>> handler) {
+    private void createConsumer(String address, Handler<Message<FindWordsRequest>> handler) {
         vertx.eventBus().consumer(address, handler);
     }
 }
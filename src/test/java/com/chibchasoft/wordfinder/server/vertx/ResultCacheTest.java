@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.server.vertx;
+
+import com.chibchasoft.wordfinder.model.WordFilter;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test the ResultCache
+ */
+public class ResultCacheTest {
+    @Test
+    public void testKey() {
+        ResultCache cache = new ResultCache().addWord("hat").addWord("eerie");
+
+        assertEquals(cache.key("tah", null, 0), cache.key("HAT", null, 0));
+        assertEquals(cache.key("tah", null, 0), cache.key("h-a-t", null, 0));
+        assertEquals(cache.key("tah", null, -1), cache.key("h-a-t", null, 0));
+        assertNotEquals(cache.key("tah", null, 0), cache.key("ta", null, 0));
+        assertNotEquals(cache.key("tah", null, 0), cache.key("tah", null, 5));
+
+        // No word has more than three e's, more than one h or t, or any x
+        assertEquals("eeeht|0", cache.key("eeeeeeethhtt", null, 0));
+        assertEquals(cache.key("eeeeeee", null, 0), cache.key("eeeeeeeeee", null, 0));
+        assertEquals(cache.key("hat", null, 0), cache.key("hatx", null, 0));
+
+        // Wildcards are clamped to the length of the longest word
+        assertEquals("?????|0", cache.key("_??????", null, 0));
+
+        WordFilter filter = new WordFilter().setContains("TA").setMinLength(2);
+        assertEquals(cache.key("hat", filter, 0), cache.key("hat", new WordFilter().setContains("at").setMinLength(2), 0));
+        assertNotEquals(cache.key("hat", filter, 0), cache.key("hat", null, 0));
+        assertEquals(cache.key("hat", new WordFilter(), 0), cache.key("hat", null, 0));
+    }
+
+    @Test
+    public void testKeyWithoutWords() {
+        ResultCache cache = new ResultCache();
+
+        assertEquals("eeee|0", cache.key("eeee", null, 0));
+        assertEquals("??|0", cache.key("??", null, 0));
+        assertEquals("|0", cache.key(null, null, 0));
+    }
+
+    @Test
+    public void testGetAndPut() {
+        ResultCache cache = new ResultCache();
+        Buffer reply = Buffer.buffer("[\"hat\"]");
+
+        assertNull(cache.get("aht|0"));
+
+        cache.put("aht|0", reply);
+
+        assertSame(reply, cache.get("aht|0"));
+        assertEquals(1, cache.getSize());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(ResultCache.ENTRY_OVERHEAD + 2 * 5 + reply.length(), cache.getBytes());
+
+        // Replacing a reply does not count its size twice
+        cache.put("aht|0", reply);
+        assertEquals(ResultCache.ENTRY_OVERHEAD + 2 * 5 + reply.length(), cache.getBytes());
+    }
+
+    @Test
+    public void testEviction() {
+        Buffer reply = Buffer.buffer("[\"hat\"]");
+        long size = ResultCache.ENTRY_OVERHEAD + 2 * 5 + reply.length();
+
+        ResultCache cache = new ResultCache();
+        cache.setMaxBytes(2 * size);
+
+        cache.put("aht|0", reply);
+        cache.put("aht|1", reply);
+
+        // Using the first one makes the second one the least recently used
+        cache.get("aht|0");
+
+        cache.put("aht|2", reply);
+
+        assertEquals(2, cache.getSize());
+        assertEquals(2 * size, cache.getBytes());
+        assertEquals(1, cache.getEvictions());
+        assertSame(reply, cache.get("aht|0"));
+        assertNull(cache.get("aht|1"));
+        assertSame(reply, cache.get("aht|2"));
+    }
+
+    @Test
+    public void testNoCaching() {
+        ResultCache cache = new ResultCache();
+        cache.setMaxBytes(0);
+
+        cache.put("aht|0", Buffer.buffer("[\"hat\"]"));
+
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getEvictions());
+        assertNull(cache.get("aht|0"));
+    }
+
+    @Test
+    public void testAddWordClears() {
+        ResultCache cache = new ResultCache().addWord("hat");
+        cache.put(cache.key("hat", null, 0), Buffer.buffer("[\"hat\"]"));
+
+        cache.addWord("that");
+
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getBytes());
+        assertEquals("ahtt|0", cache.key("thatt", null, 0));
+    }
+}
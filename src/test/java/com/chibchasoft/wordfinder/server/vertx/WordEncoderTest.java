@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.wordfinder.server.vertx;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the WordEncoder
+ */
+public class WordEncoderTest {
+    @Test
+    public void testEncode() {
+        List<String> words = Arrays.asList("hat", "ah", "o'clock");
+
+        assertEquals("[\"hat\",\"ah\",\"o'clock\"]", WordEncoder.encode(words).toString());
+        assertEquals(new JsonArray(words).toBuffer(), WordEncoder.encode(words));
+        assertEquals("[]", WordEncoder.encode(Collections.emptyList()).toString());
+    }
+
+    @Test
+    public void testEncodeEscaped() {
+        assertTrue(WordEncoder.isPlain("o'clock"));
+        assertFalse(WordEncoder.isPlain("say \"hi\""));
+        assertFalse(WordEncoder.isPlain("\u00f1and\u00fa"));
+
+        // The words with characters JSON has to escape are encoded like a JsonArray does
+        List<String> words = Arrays.asList("hat", "say \"hi\"", "\u00f1and\u00fa", "a\\b", "tab\t", "at");
+        Buffer encoded = WordEncoder.encode(words);
+
+        assertEquals(new JsonArray(words).toBuffer(), encoded);
+        assertEquals(words, new JsonArray(encoded).getList());
+    }
+
+    @Test
+    public void testEncodeChunk() {
+        List<String> words = Arrays.asList("hat", "ah", "at", "\u00e1");
+
+        assertEquals("\"hat\",\"ah\"", WordEncoder.encodeChunk(words, 0, 2).toString());
+        assertEquals(",\"at\",\"\u00e1\"", WordEncoder.encodeChunk(words, 2, 4).toString());
+        assertEquals("", WordEncoder.encodeChunk(words, 4, 4).toString());
+
+        Buffer chunks = Buffer.buffer("[");
+        chunks.appendBuffer(WordEncoder.encodeChunk(words, 0, 2));
+        chunks.appendBuffer(WordEncoder.encodeChunk(words, 2, 4));
+        chunks.appendBuffer(WordEncoder.encodeChunk(words, 4, 4));
+        chunks.appendString("]");
+
+        assertEquals(WordEncoder.encode(words), chunks);
+    }
+}
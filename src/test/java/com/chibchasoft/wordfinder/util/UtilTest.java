@@ -15,8 +15,16 @@ package com.chibchasoft.wordfinder.util;
 import com.chibchasoft.wordfinder.model.Pair;
 import org.junit.Test;
 
+import static com.chibchasoft.wordfinder.util.Util.SIGNATURE_SIZE;
+import static com.chibchasoft.wordfinder.util.Util.countWildcards;
+import static com.chibchasoft.wordfinder.util.Util.deficit;
+import static com.chibchasoft.wordfinder.util.Util.fitsIn;
 import static com.chibchasoft.wordfinder.util.Util.getLettersCount;
 import static com.chibchasoft.wordfinder.util.Util.index;
+import static com.chibchasoft.wordfinder.util.Util.isWildcard;
+import static com.chibchasoft.wordfinder.util.Util.letterMask;
+import static com.chibchasoft.wordfinder.util.Util.packLettersCount;
+import static com.chibchasoft.wordfinder.util.Util.sortedLetters;
 import static com.chibchasoft.wordfinder.util.Util.validLetter;
 import static org.junit.Assert.*;
 
@@ -119,6 +127,125 @@ public class UtilTest {
         assertTrue(2 == letterCount.getSecond());
     }
 
+    @Test
+    public void testLetterMask() {
+        assertEquals(0, letterMask(getLettersCount("").getFirst()));
+        assertEquals((1 << index('e')) | (1 << index('h')) | (1 << index('l')),
+                     letterMask(getLettersCount("hell").getFirst()));
+        assertEquals(1 << index('z'), letterMask(getLettersCount("zz").getFirst()));
+    }
+
+    @Test
+    public void testPackLettersCount() {
+        long[] signature = new long[SIGNATURE_SIZE];
+
+        assertTrue(packLettersCount(getLettersCount("hell").getFirst(), signature));
+        assertEquals((1L << 4 * 4) | (1L << 7 * 4) | (2L << 11 * 4), signature[0]);
+        assertEquals(0L, signature[1]);
+
+        assertTrue(packLettersCount(getLettersCount("zz").getFirst(), signature));
+        assertEquals(0L, signature[0]);
+        assertEquals(2L << (25 - 16) * 4, signature[1]);
+    }
+
+    @Test
+    public void testPackLettersCountClamped() {
+        long[] signature = new long[SIGNATURE_SIZE];
+
+        assertFalse(packLettersCount(getLettersCount("eeeeeeeeee").getFirst(), signature));
+        assertEquals((long) Util.SIGNATURE_MAX_COUNT << 4 * 4, signature[0]);
+    }
+
+    @Test
+    public void testPackPrimitiveLettersCount() {
+        long[] expected = new long[SIGNATURE_SIZE];
+        long[] signature = new long[SIGNATURE_SIZE];
+
+        byte[] letterCount = new byte[Util.LETTERS_SIZE];
+        letterCount[index('e')] = 1;
+        letterCount[index('h')] = 1;
+        letterCount[index('l')] = 2;
+        letterCount[index('z')] = 9;
+
+        assertFalse(packLettersCount(letterCount, signature));
+        packLettersCount(getLettersCount("hellzzzzzzzzz").getFirst(), expected);
+        assertArrayEquals(expected, signature);
+    }
+
+    @Test
+    public void testFitsInSignature() {
+        assertTrue(signatureFitsIn("hell", "hello"));
+        assertTrue(signatureFitsIn("hello", "hello"));
+        assertTrue(signatureFitsIn("zoo", "ozoz"));
+        assertFalse(signatureFitsIn("hello", "helo"));
+        assertFalse(signatureFitsIn("zz", "z"));
+        assertFalse(signatureFitsIn("hat", "ha"));
+        assertTrue(signatureFitsIn("eeeeeee", "eeeeeeeeee"));
+    }
+
+    @Test
+    public void testFitsInLettersCount() {
+        assertTrue(fitsIn(getLettersCount("hell").getFirst(), getLettersCount("hello").getFirst()));
+        assertFalse(fitsIn(getLettersCount("hello").getFirst(), getLettersCount("helo").getFirst()));
+        assertFalse(fitsIn(getLettersCount("hat").getFirst(), getLettersCount("ha").getFirst()));
+    }
+
+    @Test
+    public void testWildcards() {
+        assertTrue(isWildcard('?'));
+        assertTrue(isWildcard('_'));
+        assertFalse(isWildcard('a'));
+        assertFalse(isWildcard('*'));
+
+        assertEquals(0, countWildcards("hello"));
+        assertEquals(2, countWildcards("he?l_o"));
+    }
+
+    @Test
+    public void testSortedLetters() {
+        byte[] letterCount = new byte[Util.LETTERS_SIZE];
+        letterCount[index('t')] = 1;
+        letterCount[index('h')] = 2;
+        letterCount[index('a')] = 1;
+
+        assertEquals("ahht", sortedLetters(letterCount, 0));
+        assertEquals("ahht??", sortedLetters(letterCount, 2));
+        assertEquals("", sortedLetters(new byte[Util.LETTERS_SIZE], 0));
+    }
+
+    @Test
+    public void testDeficit() {
+        String[][] cases = {{"hell", "hello"}, {"hello", "helo"}, {"hat", "ha"}, {"zz", ""}, {"zoo", "o"},
+                            {"quizzes", "quiz"}, {"eeeeeee", "e"}, {"abcdefghijklmnopqrstuvwxyz", "aeiou"}};
+        int[] expected = {0, 1, 1, 2, 2, 3, 6, 21};
+
+        for (int i = 0; i < cases.length; i++) {
+            String word = cases[i][0];
+            String letters = cases[i][1];
+            assertEquals(word, expected[i], deficit(getLettersCount(word).getFirst(),
+                                                   getLettersCount(letters).getFirst()));
+            assertEquals(word, expected[i], signatureDeficit(word, letters));
+        }
+    }
+
+    private int signatureDeficit(String word, String letters) {
+        long[] wordSignature = new long[SIGNATURE_SIZE];
+        long[] lettersSignature = new long[SIGNATURE_SIZE];
+        packLettersCount(getLettersCount(word).getFirst(), wordSignature);
+        packLettersCount(getLettersCount(letters).getFirst(), lettersSignature);
+
+        return deficit(wordSignature[0], wordSignature[1], lettersSignature[0], lettersSignature[1]);
+    }
+
+    private boolean signatureFitsIn(String word, String letters) {
+        long[] wordSignature = new long[SIGNATURE_SIZE];
+        long[] lettersSignature = new long[SIGNATURE_SIZE];
+        packLettersCount(getLettersCount(word).getFirst(), wordSignature);
+        packLettersCount(getLettersCount(letters).getFirst(), lettersSignature);
+
+        return fitsIn(wordSignature[0], wordSignature[1], lettersSignature[0], lettersSignature[1]);
+    }
+
     private void assertAllNotNull(Byte[] array, int... index) {
         assertNotNull(array);
 